@@ -0,0 +1,266 @@
+package com.koushik.fileconverter.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.Document;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Generates the benchmark input files on first use. Content is seeded, so every
+ * run measures the same bytes; files are kept in {@code benchmark.corpus.dir}
+ * (default {@code target/benchmark-corpus}) and reused by later runs.
+ */
+public final class BenchmarkCorpus {
+
+    private static final Path DIR = Path.of(System.getProperty("benchmark.corpus.dir", "target/benchmark-corpus"));
+
+    private static final String[] WORDS = {
+            "document", "conversion", "quarterly", "report", "the", "of", "and", "figure", "results",
+            "analysis", "revenue", "summary", "table", "section", "appendix", "page", "data", "review"
+    };
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * A text PDF with the given number of pages.
+     */
+    public static File pdf(int pages) {
+        return file("text-" + pages + "p.pdf", target -> writePdf(target, pages));
+    }
+
+    /**
+     * A slide deck PDF with the given number of pages. Every page shows the
+     * same background photo and logo, embedded anew on each page the way many
+     * generators do, under a line of text.
+     */
+    public static File slidesPdf(int pages) {
+        return file("slides-" + pages + "p.pdf", target -> writeSlidesPdf(target, pages));
+    }
+
+    /**
+     * A DOCX of a few paragraphs followed by the given number of 1024x768 JPEG pictures.
+     */
+    public static File docx(int images) {
+        return file("pictures-" + images + ".docx", target -> writeDocx(target, images));
+    }
+
+    /**
+     * A DOCX of the given number of text paragraphs of varying length, with a
+     * small table every hundred paragraphs.
+     */
+    public static File textDocx(int paragraphs) {
+        return file("text-" + paragraphs + ".docx", target -> writeTextDocx(target, paragraphs));
+    }
+
+    /**
+     * A photo-like image of roughly the given number of megapixels, in 4:3.
+     *
+     * @param format "jpg" or "png"
+     */
+    public static File image(int megapixels, String format) {
+        return file("photo-" + megapixels + "mp." + format, target -> {
+            int height = (int) Math.round(Math.sqrt(megapixels * 1_000_000 * 3.0 / 4));
+            int width = height * 4 / 3;
+            if (!ImageIO.write(photo(width, height, megapixels), format, target.toFile())) {
+                throw new IOException("No image writer for " + format);
+            }
+        });
+    }
+
+    /**
+     * A photo-like JPEG of the given size, in memory, like a picture embedded in a document.
+     */
+    public static byte[] picture(int width, int height) {
+        try {
+            return jpeg(photo(width, height, width));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static File file(String name, Generator generator) {
+        Path target = DIR.resolve(name);
+        if (Files.exists(target)) {
+            return target.toFile();
+        }
+        try {
+            Files.createDirectories(DIR);
+            Path partial = DIR.resolve(name + ".partial");
+            Files.deleteIfExists(partial);
+            generator.generate(partial);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target.toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to generate " + name, e);
+        }
+    }
+
+    private static void writePdf(Path target, int pages) throws IOException {
+        Random random = new Random(pages);
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    // A shaded header block, so rendering has more than text to rasterize
+                    content.setNonStrokingColor(0.2f + random.nextFloat() * 0.6f, 0.4f, 0.7f);
+                    content.addRect(50, 760, 495, 40);
+                    content.fill();
+
+                    content.setNonStrokingColor(0f, 0f, 0f);
+                    content.beginText();
+                    content.setFont(font, 11);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 740);
+                    for (int line = 0; line < 48; line++) {
+                        content.showText(sentence(random, 12));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(target.toFile());
+        }
+    }
+
+    private static void writeSlidesPdf(Path target, int pages) throws IOException {
+        Random random = new Random(pages);
+        byte[] background = jpeg(photo(1024, 768, 1));
+        BufferedImage logo = photo(200, 100, 2);
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+            PDRectangle slide = new PDRectangle(720, 540);
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(slide);
+                document.addPage(page);
+                PDImageXObject pageBackground = JPEGFactory.createFromByteArray(document, background);
+                PDImageXObject pageLogo = LosslessFactory.createFromImage(document, logo);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.drawImage(pageBackground, 0, 0, slide.getWidth(), slide.getHeight());
+                    content.drawImage(pageLogo, 600, 480, 100, 50);
+                    content.beginText();
+                    content.setFont(font, 24);
+                    content.newLineAtOffset(40, 420);
+                    content.showText(sentence(random, 5));
+                    content.endText();
+                }
+            }
+            document.save(target.toFile());
+        }
+    }
+
+    private static void writeDocx(Path target, int images) throws IOException {
+        Random random = new Random(images);
+        try (XWPFDocument document = new XWPFDocument();
+             OutputStream out = Files.newOutputStream(target)) {
+            for (int i = 0; i < 20; i++) {
+                document.createParagraph().createRun().setText(sentence(random, 40));
+            }
+            for (int i = 0; i < images; i++) {
+                byte[] picture = jpeg(photo(1024, 768, i));
+                XWPFRun run = document.createParagraph().createRun();
+                try {
+                    run.addPicture(new ByteArrayInputStream(picture), Document.PICTURE_TYPE_JPEG,
+                            "picture" + i + ".jpg", Units.toEMU(400), Units.toEMU(300));
+                } catch (InvalidFormatException e) {
+                    throw new IOException(e);
+                }
+                document.createParagraph().createRun().setText(sentence(random, 25));
+            }
+            document.write(out);
+        }
+    }
+
+    private static void writeTextDocx(Path target, int paragraphs) throws IOException {
+        Random random = new Random(paragraphs);
+        try (XWPFDocument document = new XWPFDocument();
+             OutputStream out = Files.newOutputStream(target)) {
+            for (int i = 0; i < paragraphs; i++) {
+                document.createParagraph().createRun().setText(sentence(random, 5 + random.nextInt(150)));
+                if (i % 100 == 99) {
+                    XWPFTable table = document.createTable(3, 3);
+                    table.getRow(0).getCell(0).setText(sentence(random, 4));
+                    table.getRow(2).getCell(2).setText(sentence(random, 12));
+                }
+            }
+            document.write(out);
+        }
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.append('.').toString();
+    }
+
+    /**
+     * Smooth gradients with sensor-like noise, which compresses roughly like a
+     * real photograph rather than like flat synthetic colour.
+     */
+    private static BufferedImage photo(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(seed);
+        double fx = 2 * Math.PI / width * (1 + random.nextInt(3));
+        double fy = 2 * Math.PI / height * (1 + random.nextInt(3));
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            double sy = Math.sin(y * fy);
+            for (int x = 0; x < width; x++) {
+                double base = 128 + 90 * Math.sin(x * fx) * sy;
+                int noise = random.nextInt(17) - 8;
+                pixels[i++] = (byte) clamp(base * 0.6 + x * 100.0 / width + noise);
+                pixels[i++] = (byte) clamp(base * 0.8 + noise);
+                pixels[i++] = (byte) clamp(base + y * 60.0 / height + noise);
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, value));
+    }
+
+    private static byte[] jpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Generator {
+        void generate(Path target) throws IOException;
+    }
+}
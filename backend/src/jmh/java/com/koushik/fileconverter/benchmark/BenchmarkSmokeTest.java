@@ -0,0 +1,122 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.constant.PdfCompressionMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every benchmark operation once on its smallest input, so a broken
+ * setup or corpus shows up in {@code mvn -Pbenchmark test} rather than
+ * minutes into a JMH run.
+ */
+class BenchmarkSmokeTest {
+
+    @Test
+    void pdfCompressor() {
+        for (PdfCompressionMode mode : List.of(PdfCompressionMode.AUTO, PdfCompressionMode.RASTERIZE)) {
+            for (String corpus : new String[] {"text", "slides"}) {
+                PdfCompressorBenchmark benchmark = new PdfCompressorBenchmark();
+                benchmark.pages = 1;
+                benchmark.corpus = corpus;
+                benchmark.level = CompressionLevel.MEDIUM;
+                benchmark.mode = mode;
+                benchmark.setUp();
+                try {
+                    assertThat(benchmark.compress()).as("%s %s", mode, corpus).isPositive();
+                } finally {
+                    benchmark.tearDown();
+                }
+            }
+        }
+    }
+
+    @Test
+    void pdfToDocxConverter() {
+        PdfToDocxConverterBenchmark benchmark = new PdfToDocxConverterBenchmark();
+        benchmark.pages = 1;
+        benchmark.setUp();
+        try {
+            assertThat(benchmark.convert()).isPositive();
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    @Test
+    void docxCompressor() {
+        DocxCompressorBenchmark benchmark = new DocxCompressorBenchmark();
+        benchmark.images = 20;
+        benchmark.level = CompressionLevel.MEDIUM;
+        benchmark.setUp();
+        try {
+            assertThat(benchmark.compress()).isPositive();
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    @Test
+    void docxToPdfConverter() {
+        DocxToPdfConverterBenchmark benchmark = new DocxToPdfConverterBenchmark();
+        benchmark.paragraphs = 100;
+        benchmark.setUp();
+        try {
+            assertThat(benchmark.convert()).isPositive();
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    @Test
+    void imageCompressor() {
+        for (String format : new String[] {"jpg", "png"}) {
+            ImageCompressorBenchmark benchmark = new ImageCompressorBenchmark();
+            benchmark.megapixels = 1;
+            benchmark.format = format;
+            benchmark.level = CompressionLevel.MEDIUM;
+            benchmark.setUp();
+            try {
+                assertThat(benchmark.compress()).as(format).isPositive();
+                assertThat(benchmark.compressToSize()).as(format).isPositive();
+            } finally {
+                benchmark.tearDown();
+            }
+        }
+    }
+
+    @Test
+    void imageFormatConverter() {
+        for (String format : new String[] {"jpg", "png"}) {
+            ImageFormatConverterBenchmark benchmark = new ImageFormatConverterBenchmark();
+            benchmark.megapixels = 1;
+            benchmark.format = format;
+            benchmark.setUp();
+            try {
+                assertThat(benchmark.convert()).as(format).isPositive();
+            } finally {
+                benchmark.tearDown();
+            }
+        }
+    }
+
+    @Test
+    void imageCodec() throws IOException {
+        ImageCodecBenchmark benchmark = new ImageCodecBenchmark();
+        benchmark.edge = 64;
+        benchmark.setUp();
+        try {
+            // The three ways of encoding the same picture at the same quality agree
+            int registryLookup = benchmark.registryLookup();
+            assertThat(registryLookup).isPositive();
+            assertThat(benchmark.pooled()).isEqualTo(registryLookup);
+            assertThat(benchmark.pooledBuffers()).isEqualTo(registryLookup);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+}
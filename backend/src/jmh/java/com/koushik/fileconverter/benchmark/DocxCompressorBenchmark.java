@@ -0,0 +1,47 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.strategy.compressor.DocxCompressor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+
+@State(Scope.Benchmark)
+public class DocxCompressorBenchmark extends StrategyBenchmark {
+
+    @Param({"0", "20", "200"})
+    public int images;
+
+    @Param({"HIGH", "MEDIUM", "LOW"})
+    public CompressionLevel level;
+
+    private Strategies strategies;
+    private DocxCompressor compressor;
+    private File source;
+    private File target;
+
+    @Setup
+    public void setUp() {
+        strategies = new Strategies();
+        compressor = strategies.docxCompressor();
+        source = BenchmarkCorpus.docx(images);
+        target = Strategies.targetFile("docx");
+    }
+
+    @Benchmark
+    public long compress() {
+        compressor.compress(source, target, level, Strategies.NO_PROGRESS, Strategies.NOT_CANCELLED);
+        return target.length();
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategies.close();
+        target.delete();
+    }
+}
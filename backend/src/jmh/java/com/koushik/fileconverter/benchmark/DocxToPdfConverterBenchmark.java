@@ -0,0 +1,43 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.strategy.converter.DocxToPdfConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+
+@State(Scope.Benchmark)
+public class DocxToPdfConverterBenchmark extends StrategyBenchmark {
+
+    @Param({"100", "2000", "20000"})
+    public int paragraphs;
+
+    private Strategies strategies;
+    private DocxToPdfConverter converter;
+    private File source;
+    private File target;
+
+    @Setup
+    public void setUp() {
+        strategies = new Strategies();
+        converter = strategies.docxToPdfConverter();
+        source = BenchmarkCorpus.textDocx(paragraphs);
+        target = Strategies.targetFile("pdf");
+    }
+
+    @Benchmark
+    public long convert() {
+        converter.convert(source, target, Strategies.NO_PROGRESS, Strategies.NOT_CANCELLED);
+        return target.length();
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategies.close();
+        target.delete();
+    }
+}
@@ -0,0 +1,123 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.PooledBytes;
+import com.koushik.fileconverter.strategy.image.BufferImageOutputStream;
+import com.koushik.fileconverter.strategy.image.ByteArrayImageInputStream;
+import com.koushik.fileconverter.strategy.image.ImageCodecPool;
+import com.koushik.fileconverter.strategy.image.PooledImageReader;
+import com.koushik.fileconverter.strategy.image.PooledImageWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes and re-encodes one embedded picture, the per-picture work of DOCX
+ * compression, with a registry lookup per call as before, with pooled
+ * codecs, and with pooled codecs reading and writing pooled buffers in place.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-Djava.awt.headless=true"})
+public class ImageCodecBenchmark {
+
+    private static final float QUALITY = 0.5f;
+
+    @Param({"64", "256", "1024"})
+    public int edge;
+
+    private Strategies strategies;
+    private ImageCodecPool codecPool;
+    private BufferPool bufferPool;
+    private byte[] picture;
+
+    @Setup
+    public void setUp() {
+        strategies = new Strategies();
+        codecPool = strategies.codecPool();
+        bufferPool = strategies.bufferPool();
+        picture = BenchmarkCorpus.picture(edge, edge * 3 / 4);
+    }
+
+    @Benchmark
+    public int registryLookup() throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(picture));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(compressed)) {
+            writer.setOutput(ios);
+            JPEGImageWriteParam param = new JPEGImageWriteParam(null);
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return compressed.size();
+    }
+
+    @Benchmark
+    public int pooled() throws IOException {
+        BufferedImage image;
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(picture));
+             PooledImageReader reader = codecPool.reader(input)) {
+            image = reader.reader().read(0);
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (PooledImageWriter pooled = codecPool.writer("jpeg");
+             ImageOutputStream ios = new MemoryCacheImageOutputStream(compressed)) {
+            pooled.writer().setOutput(ios);
+            pooled.writer().write(null, new IIOImage(image, null, null), pooled.param(QUALITY));
+        }
+        return compressed.size();
+    }
+
+    @Benchmark
+    public int pooledBuffers() throws IOException {
+        BufferedImage image;
+        try (ImageInputStream input = new ByteArrayImageInputStream(picture, 0, picture.length);
+             PooledImageReader reader = codecPool.reader(input)) {
+            image = reader.reader().read(0);
+        }
+        try (PooledBytes compressed = bufferPool.allocate(picture.length);
+             PooledImageWriter pooled = codecPool.writer("jpeg");
+             ImageOutputStream ios = new BufferImageOutputStream(compressed)) {
+            pooled.writer().setOutput(ios);
+            pooled.writer().write(null, new IIOImage(image, null, null), pooled.param(QUALITY));
+            return compressed.length();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategies.close();
+    }
+}
@@ -0,0 +1,61 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.strategy.compressor.ImageCompressor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+
+@State(Scope.Benchmark)
+public class ImageCompressorBenchmark extends StrategyBenchmark {
+
+    @Param({"1", "12", "48"})
+    public int megapixels;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    @Param({"HIGH", "MEDIUM", "LOW"})
+    public CompressionLevel level;
+
+    private Strategies strategies;
+    private ImageCompressor compressor;
+    private File source;
+    private File target;
+
+    @Setup
+    public void setUp() {
+        strategies = new Strategies();
+        compressor = strategies.imageCompressor();
+        source = BenchmarkCorpus.image(megapixels, format);
+        target = Strategies.targetFile(format);
+    }
+
+    @Benchmark
+    public long compress() {
+        compressor.compress(source, target, level, Strategies.NO_PROGRESS, Strategies.NOT_CANCELLED);
+        return target.length();
+    }
+
+    /**
+     * Searches for the quality that brings the image to a tenth of its size;
+     * {@code level} does not apply.
+     */
+    @Benchmark
+    public long compressToSize() {
+        compressor.compressToSize(source, target, source.length() / 10, Strategies.NO_PROGRESS,
+                Strategies.NOT_CANCELLED);
+        return target.length();
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategies.close();
+        target.delete();
+    }
+}
@@ -0,0 +1,49 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.strategy.converter.ImageFormatConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+
+@State(Scope.Benchmark)
+public class ImageFormatConverterBenchmark extends StrategyBenchmark {
+
+    @Param({"1", "12", "48"})
+    public int megapixels;
+
+    /**
+     * Source format; the image is converted to the other one.
+     */
+    @Param({"jpg", "png"})
+    public String format;
+
+    private Strategies strategies;
+    private ImageFormatConverter converter;
+    private File source;
+    private File target;
+
+    @Setup
+    public void setUp() {
+        strategies = new Strategies();
+        converter = strategies.imageFormatConverter();
+        source = BenchmarkCorpus.image(megapixels, format);
+        target = Strategies.targetFile(format.equals("jpg") ? "png" : "jpg");
+    }
+
+    @Benchmark
+    public long convert() {
+        converter.convert(source, target, Strategies.NO_PROGRESS, Strategies.NOT_CANCELLED);
+        return target.length();
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategies.close();
+        target.delete();
+    }
+}
@@ -0,0 +1,55 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.constant.PdfCompressionMode;
+import com.koushik.fileconverter.strategy.compressor.PdfCompressor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+
+@State(Scope.Benchmark)
+public class PdfCompressorBenchmark extends StrategyBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int pages;
+
+    @Param({"text", "slides"})
+    public String corpus;
+
+    @Param({"HIGH", "MEDIUM", "LOW"})
+    public CompressionLevel level;
+
+    @Param({"AUTO", "RASTERIZE"})
+    public PdfCompressionMode mode;
+
+    private Strategies strategies;
+    private PdfCompressor compressor;
+    private File source;
+    private File target;
+
+    @Setup
+    public void setUp() {
+        strategies = new Strategies();
+        strategies.pdfProperties().setCompressionMode(mode);
+        compressor = strategies.pdfCompressor();
+        source = "slides".equals(corpus) ? BenchmarkCorpus.slidesPdf(pages) : BenchmarkCorpus.pdf(pages);
+        target = Strategies.targetFile("pdf");
+    }
+
+    @Benchmark
+    public long compress() {
+        compressor.compress(source, target, level, Strategies.NO_PROGRESS, Strategies.NOT_CANCELLED);
+        return target.length();
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategies.close();
+        target.delete();
+    }
+}
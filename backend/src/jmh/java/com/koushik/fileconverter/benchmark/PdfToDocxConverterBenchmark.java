@@ -0,0 +1,43 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.strategy.converter.PdfToDocxConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+
+@State(Scope.Benchmark)
+public class PdfToDocxConverterBenchmark extends StrategyBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int pages;
+
+    private Strategies strategies;
+    private PdfToDocxConverter converter;
+    private File source;
+    private File target;
+
+    @Setup
+    public void setUp() {
+        strategies = new Strategies();
+        converter = strategies.pdfToDocxConverter();
+        source = BenchmarkCorpus.pdf(pages);
+        target = Strategies.targetFile("docx");
+    }
+
+    @Benchmark
+    public long convert() {
+        converter.convert(source, target, Strategies.NO_PROGRESS, Strategies.NOT_CANCELLED);
+        return target.length();
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategies.close();
+        target.delete();
+    }
+}
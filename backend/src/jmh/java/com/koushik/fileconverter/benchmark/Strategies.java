@@ -0,0 +1,106 @@
+package com.koushik.fileconverter.benchmark;
+
+import com.koushik.fileconverter.config.BufferPoolProperties;
+import com.koushik.fileconverter.config.DocxProcessingProperties;
+import com.koushik.fileconverter.config.FontProperties;
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import com.koushik.fileconverter.config.PdfProcessingProperties;
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.FanOutExecutor;
+import com.koushik.fileconverter.strategy.compressor.DocxCompressor;
+import com.koushik.fileconverter.strategy.compressor.ImageCompressor;
+import com.koushik.fileconverter.strategy.compressor.PdfCompressor;
+import com.koushik.fileconverter.strategy.converter.DocxToPdfConverter;
+import com.koushik.fileconverter.strategy.converter.ImageFormatConverter;
+import com.koushik.fileconverter.strategy.converter.PdfToDocxConverter;
+import com.koushik.fileconverter.strategy.image.ImageCodecPool;
+import com.koushik.fileconverter.strategy.image.ImageDecoder;
+import com.koushik.fileconverter.strategy.image.JpegEncoder;
+import com.koushik.fileconverter.strategy.image.QualitySearch;
+import com.koushik.fileconverter.strategy.pdf.FontCache;
+import com.koushik.fileconverter.strategy.pdf.PdfDocumentLoader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Wires the strategies the way the application context does, with default
+ * properties, so benchmarks run without starting Spring. Close it in the
+ * trial tear-down to stop the shared pools.
+ */
+final class Strategies implements AutoCloseable {
+
+    static final Consumer<Integer> NO_PROGRESS = progress -> {
+    };
+
+    static final CancellationToken NOT_CANCELLED = new CancellationToken();
+
+    private final FanOutExecutor fanOutExecutor = new FanOutExecutor(new JobExecutorProperties());
+    private final PdfProcessingProperties pdfProperties = new PdfProcessingProperties();
+    private final PdfDocumentLoader pdfDocumentLoader = new PdfDocumentLoader(pdfProperties);
+    private final ImageProcessingProperties imageProperties = new ImageProcessingProperties();
+    private final ImageCodecPool codecPool = new ImageCodecPool(imageProperties);
+    private final ImageDecoder imageDecoder = new ImageDecoder(imageProperties, codecPool);
+    private final BufferPool bufferPool = new BufferPool(new BufferPoolProperties(), new SimpleMeterRegistry());
+    private final JpegEncoder jpegEncoder = new JpegEncoder(codecPool, bufferPool);
+    private final QualitySearch qualitySearch = new QualitySearch(imageProperties, jpegEncoder);
+    private final FontCache fontCache = new FontCache(new FontProperties());
+
+    PdfProcessingProperties pdfProperties() {
+        return pdfProperties;
+    }
+
+    ImageCodecPool codecPool() {
+        return codecPool;
+    }
+
+    BufferPool bufferPool() {
+        return bufferPool;
+    }
+
+    PdfCompressor pdfCompressor() {
+        return new PdfCompressor(pdfProperties, fanOutExecutor, pdfDocumentLoader, jpegEncoder, bufferPool,
+                qualitySearch);
+    }
+
+    DocxCompressor docxCompressor() {
+        return new DocxCompressor(new DocxProcessingProperties(), fanOutExecutor, codecPool, bufferPool,
+                jpegEncoder);
+    }
+
+    ImageCompressor imageCompressor() {
+        return new ImageCompressor(imageDecoder, codecPool, qualitySearch);
+    }
+
+    ImageFormatConverter imageFormatConverter() {
+        return new ImageFormatConverter(imageDecoder, codecPool);
+    }
+
+    DocxToPdfConverter docxToPdfConverter() {
+        return new DocxToPdfConverter(pdfDocumentLoader, fontCache);
+    }
+
+    PdfToDocxConverter pdfToDocxConverter() {
+        return new PdfToDocxConverter(pdfProperties, fanOutExecutor, pdfDocumentLoader);
+    }
+
+    static File targetFile(String extension) {
+        try {
+            File target = File.createTempFile("benchmark-", "." + extension);
+            target.deleteOnExit();
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        fanOutExecutor.shutdown();
+    }
+}
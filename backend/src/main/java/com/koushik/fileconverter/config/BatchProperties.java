@@ -0,0 +1,21 @@
+package com.koushik.fileconverter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "processing.batch")
+public class BatchProperties {
+
+    /**
+     * Files a single batch may contain, counting the entries of uploaded ZIPs.
+     */
+    private int maxFiles = 500;
+
+    /**
+     * Total size of the files extracted from the ZIPs of one batch. Guards
+     * against archives that expand far beyond their upload size.
+     */
+    private DataSize maxExtractedSize = DataSize.ofMegabytes(500);
+}
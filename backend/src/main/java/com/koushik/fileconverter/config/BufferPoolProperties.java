@@ -0,0 +1,20 @@
+package com.koushik.fileconverter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "processing.buffers")
+public class BufferPoolProperties {
+
+    /**
+     * Total size of idle buffers kept for reuse.
+     */
+    private DataSize maxRetained = DataSize.ofMegabytes(64);
+
+    /**
+     * Largest buffer that is pooled; bigger ones are allocated and dropped.
+     */
+    private DataSize maxBufferSize = DataSize.ofMegabytes(16);
+}
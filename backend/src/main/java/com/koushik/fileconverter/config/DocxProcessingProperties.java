@@ -0,0 +1,36 @@
+package com.koushik.fileconverter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "processing.docx")
+public class DocxProcessingProperties {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Pictures smaller than this are left as they are when compressing.
+     */
+    private DataSize minPictureSize = DataSize.ofKilobytes(16);
+
+    /**
+     * Pictures of a single document being recompressed concurrently or waiting
+     * to be written back. Bounds the decoded and encoded images a job holds.
+     */
+    private int maxPicturesInFlight = 2 * CPUS;
+
+    /**
+     * Compress by rewriting the DOCX package entry by entry, copying everything
+     * but the pictures as raw compressed bytes, instead of loading it with POI.
+     * POI is still used for packages the raw path cannot handle.
+     */
+    private boolean rawPackageRewrite = true;
+
+    /**
+     * Deflate level (1-9) to re-compress XML parts with when rewriting the raw
+     * package, or -1 to copy them unchanged.
+     */
+    private int xmlDeflateLevel = -1;
+}
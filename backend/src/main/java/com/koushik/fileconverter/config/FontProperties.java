@@ -0,0 +1,22 @@
+package com.koushik.fileconverter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "processing.fonts")
+public class FontProperties {
+
+    /**
+     * Embed a subset of a TrueType font for the text of generated PDFs. When
+     * off, or when no TrueType font can be found, the standard Times-Roman is
+     * referenced without embedding, which only covers Western European text.
+     */
+    private boolean embedTextFont = true;
+
+    /**
+     * TrueType font file for the text of generated PDFs. When empty, the system
+     * font that PDFBox substitutes for Times-Roman is used.
+     */
+    private String textFont = "";
+}
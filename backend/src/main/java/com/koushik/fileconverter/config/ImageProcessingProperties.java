@@ -0,0 +1,38 @@
+package com.koushik.fileconverter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "processing.image")
+public class ImageProcessingProperties {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Heap one image job may use for decoded pixels when the output can be
+     * written incrementally (PNG); larger images are decoded in strips. JPEG
+     * output needs the whole image and is only held to this if
+     * {@code subsampleOversized} is set.
+     */
+    private DataSize decodeBudget = DataSize.ofMegabytes(64);
+
+    /**
+     * Subsample images whose JPEG output would exceed the decode budget, so
+     * they fit it, and note that in the job result. Off by default: such
+     * images are decoded at full resolution and wait for memory admission.
+     */
+    private boolean subsampleOversized = false;
+
+    /**
+     * Idle image readers and writers kept for reuse, per format.
+     */
+    private int codecPoolSize = 2 * CPUS;
+
+    /**
+     * Full encodes tried when compressing to a target size, not counting the
+     * downscaled probe encodes.
+     */
+    private int targetSizeTrials = 6;
+}
@@ -0,0 +1,46 @@
+package com.koushik.fileconverter.config;
+
+import com.koushik.fileconverter.constant.JobKind;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "processing.executor")
+public class JobExecutorProperties {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private Pool heavy = new Pool(Math.max(1, CPUS / 2), 50);
+    private Pool light = new Pool(CPUS, 200);
+
+    /**
+     * Threads shared by all jobs for work they split across cores (see FanOutExecutor).
+     */
+    private int fanOutThreads = CPUS;
+
+    /**
+     * How strongly file size delays a job: a job is ranked as if it had been
+     * submitted one second later for every this-many bytes of input. Small files
+     * overtake big ones, but a big file is never starved indefinitely.
+     */
+    private long priorityBytesPerSecond = 1024 * 1024;
+
+    /**
+     * Lower bound for the Retry-After header sent when a queue is full.
+     */
+    private long minRetryAfterSeconds = 5;
+
+    public Pool getPool(JobKind kind) {
+        return kind == JobKind.HEAVY ? heavy : light;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pool {
+        private int threads;
+        private int queueCapacity;
+    }
+}
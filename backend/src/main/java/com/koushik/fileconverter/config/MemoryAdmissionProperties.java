@@ -0,0 +1,29 @@
+package com.koushik.fileconverter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "processing.memory")
+public class MemoryAdmissionProperties {
+
+    /**
+     * Heap shared by all running jobs, as estimated before they start. Defaults
+     * to {@link #heapFraction} of the maximum heap.
+     */
+    private DataSize budget;
+
+    private double heapFraction = 0.6;
+
+    /**
+     * How long a queued job may wait for its memory before it fails as busy.
+     */
+    private Duration maxWait = Duration.ofMinutes(10);
+
+    public long getBudgetBytes() {
+        return budget != null ? budget.toBytes() : (long) (Runtime.getRuntime().maxMemory() * heapFraction);
+    }
+}
@@ -0,0 +1,90 @@
+package com.koushik.fileconverter.config;
+
+import com.koushik.fileconverter.constant.PdfCompressionMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "processing.pdf")
+public class PdfProcessingProperties {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * How PDFs are compressed: optimized in place, rasterized page by page,
+     * or whichever suits each document.
+     */
+    private PdfCompressionMode compressionMode = PdfCompressionMode.AUTO;
+
+    /**
+     * Pages sampled to choose a compression mode.
+     */
+    private int modeSamplePages = 8;
+
+    /**
+     * Documents without text whose sampled pages average more drawing
+     * instructions than this are rasterized rather than optimized.
+     */
+    private DataSize rasterizeContentThreshold = DataSize.ofKilobytes(256);
+
+    /**
+     * Highest resolution pictures keep when a PDF is optimized, taking the
+     * page as the largest size a picture is shown at.
+     */
+    private float maxImageDpi = 150;
+
+    /**
+     * Resolution pages are rasterized at when compressing.
+     */
+    private float renderDpi = 72;
+
+    /**
+     * Pages of a single document rendered concurrently. Each worker opens its own
+     * handle on the source file because PDFBox documents are not thread-safe.
+     */
+    private int renderParallelism = CPUS;
+
+    /**
+     * Pages rendered ahead of the one being assembled. Bounds the encoded pages
+     * a job holds in memory while waiting for an earlier, slower page.
+     */
+    private int maxPagesInFlight = 2 * CPUS;
+
+    /**
+     * Page ranges of a single document whose text is extracted concurrently,
+     * each by a worker with its own handle on the source file.
+     */
+    private int textParallelism = CPUS;
+
+    /**
+     * Documents with fewer pages are extracted in one pass on the job thread.
+     */
+    private int parallelTextThreshold = 64;
+
+    /**
+     * Pages in each range handed to a text extraction worker.
+     */
+    private int textChunkPages = 16;
+
+    /**
+     * PDFs up to this size keep their stream buffers entirely on the heap.
+     * Larger ones use a mixed cache that spills to scratch files.
+     */
+    private DataSize memoryOnlyThreshold = DataSize.ofMegabytes(8);
+
+    /**
+     * Heap each document's mixed stream cache may use before spilling.
+     */
+    private DataSize maxMainMemoryPerDocument = DataSize.ofMegabytes(16);
+
+    /**
+     * Scratch file space each document's stream cache may use.
+     */
+    private DataSize maxScratchPerDocument = DataSize.ofGigabytes(2);
+
+    /**
+     * Directory for scratch files.
+     */
+    private String scratchDir = System.getProperty("java.io.tmpdir") + "/file-converter/scratch";
+}
@@ -0,0 +1,73 @@
+package com.koushik.fileconverter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "processing.progress")
+public class ProgressTrackingProperties {
+
+    /**
+     * Jobs whose state is kept at most. Beyond that finished jobs are evicted
+     * first, oldest first, then the least recently updated unfinished ones.
+     */
+    private int maxJobs = 10_000;
+
+    /**
+     * How long the state of a completed or failed job stays queryable. Matches
+     * the hourly cleanup of processed files by default.
+     */
+    private Duration terminalTtl = Duration.ofHours(1);
+
+    /**
+     * How long an unfinished job may go without an update before its state,
+     * and any subscriber still waiting on it, is dropped.
+     */
+    private Duration staleTtl = Duration.ofHours(6);
+
+    /**
+     * Progress events sent per job and second at most. Faster updates are
+     * coalesced and only the latest value is sent.
+     */
+    private int maxUpdatesPerSecond = 4;
+
+    /**
+     * Events buffered per subscriber. A subscriber that falls this far behind
+     * is disconnected and has to reconnect, which replays the current state.
+     */
+    private int subscriberBufferSize = 16;
+
+    /**
+     * Platform threads writing events to subscribers. Sends are not run on
+     * virtual threads: the emitter writes while holding its monitor, which
+     * would pin the carrier for as long as a client stalls.
+     */
+    private int senderThreads = 4;
+
+    /**
+     * How long one event may take to send before the subscriber is dropped
+     * and its sender thread interrupted. A socket write the container does
+     * not let be interrupted ends at its own write timeout instead.
+     */
+    private Duration sendTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Cancel a job once every client that subscribed to its progress has
+     * disconnected and none has come back within {@code abandonGracePeriod}.
+     * Jobs nobody ever subscribed to are left running.
+     */
+    private boolean cancelAbandonedJobs = true;
+
+    /**
+     * How long a job may go without subscribers before it counts as abandoned,
+     * so a page reload does not cancel it.
+     */
+    private Duration abandonGracePeriod = Duration.ofSeconds(30);
+
+    /**
+     * Interval of the background sweep that expires job state and closes orphaned subscriptions.
+     */
+    private Duration sweepInterval = Duration.ofMinutes(1);
+}
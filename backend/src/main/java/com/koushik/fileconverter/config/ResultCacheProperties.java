@@ -0,0 +1,23 @@
+package com.koushik.fileconverter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "processing.cache")
+public class ResultCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Directory holding cached results. Keep it on the same filesystem as the
+     * processed directory so hits can be served as hard links.
+     */
+    private String dir = System.getProperty("java.io.tmpdir") + "/file-converter/cache";
+
+    /**
+     * Disk space the cache may use before least recently used results are evicted.
+     */
+    private DataSize maxSize = DataSize.ofGigabytes(1);
+}
@@ -1,5 +1,7 @@
 package com.koushik.fileconverter.config;
 
+import com.koushik.fileconverter.service.BatchProcessingService;
+import com.koushik.fileconverter.service.ProgressTrackingService;
 import com.koushik.fileconverter.service.StorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +16,8 @@ import org.springframework.scheduling.annotation.Scheduled;
 public class SchedulingConfig {
 
     private final StorageService storageService;
+    private final ProgressTrackingService progressTrackingService;
+    private final BatchProcessingService batchProcessingService;
 
     /**
      * Run cleanup job every hour to remove old files
@@ -35,4 +39,14 @@ public class SchedulingConfig {
         storageService.cleanupOldFiles();
         log.info("Completed initial cleanup of old files");
     }
+
+    /**
+     * Expire tracked job states and close orphaned progress subscriptions
+     */
+    @Scheduled(fixedDelayString = "${processing.progress.sweep-interval:PT1M}",
+            initialDelayString = "${processing.progress.sweep-interval:PT1M}")
+    public void sweepJobStates() {
+        progressTrackingService.sweep();
+        batchProcessingService.sweep();
+    }
 }
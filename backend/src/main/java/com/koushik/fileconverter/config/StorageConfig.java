@@ -1,7 +1,7 @@
 package com.koushik.fileconverter.config;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import java.io.File;
 
@@ -14,10 +14,18 @@ public class StorageConfig {
     @Value("${file.processed-dir:${java.io.tmpdir}/file-converter/processed}")
     private String processedDir;
 
-    @Bean
+    /**
+     * Where the servlet container spools multipart uploads. Keeping it on the same
+     * filesystem as {@link #uploadDir} lets uploads be moved into place instead of copied.
+     */
+    @Value("${file.incoming-dir:${java.io.tmpdir}/file-converter/incoming}")
+    private String incomingDir;
+
+    @PostConstruct
     public void createStorageDirectories() {
         createDirectoryIfNotExists(uploadDir);
         createDirectoryIfNotExists(processedDir);
+        createDirectoryIfNotExists(incomingDir);
     }
 
     private void createDirectoryIfNotExists(String path) {
@@ -34,4 +42,8 @@ public class StorageConfig {
     public String getProcessedDir() {
         return processedDir;
     }
+
+    public String getIncomingDir() {
+        return incomingDir;
+    }
 }
@@ -7,13 +7,20 @@ public final class ApiConstants {
     public static final String COMPRESS_ENDPOINT = API_BASE_PATH + "/compress";
     public static final String PROGRESS_ENDPOINT = API_BASE_PATH + "/progress/{jobId}";
     public static final String DOWNLOAD_ENDPOINT = API_BASE_PATH + "/download/{fileId}";
+    public static final String JOB_DOWNLOAD_ENDPOINT = API_BASE_PATH + "/download/{jobId}/{fileName}";
+    public static final String BATCH_CONVERT_ENDPOINT = API_BASE_PATH + "/batch/convert";
+    public static final String BATCH_COMPRESS_ENDPOINT = API_BASE_PATH + "/batch/compress";
+    public static final String BATCH_DOWNLOAD_ENDPOINT = API_BASE_PATH + "/batch/{jobId}/download";
 
     // Request Parameters
     public static final String TARGET_FORMAT_PARAM = "targetFormat";
     public static final String COMPRESSION_LEVEL_PARAM = "compressionLevel";
+    public static final String TARGET_BYTES_PARAM = "targetBytes";
     public static final String FILE_PARAM = "file";
+    public static final String FILES_PARAM = "files";
     public static final String JOB_ID_PARAM = "jobId";
     public static final String FILE_ID_PARAM = "fileId";
+    public static final String FILE_NAME_PARAM = "fileName";
 
     // Error Messages
     public static final String ERROR_FILE_NOT_FOUND = "File not found";
@@ -32,6 +39,7 @@ public final class ApiConstants {
     // Cache Control
     public static final String CACHE_CONTROL_HEADER = "Cache-Control";
     public static final String NO_CACHE_VALUE = "no-cache, no-store, must-revalidate";
+    public static final String REVALIDATE_CACHE_VALUE = "private, no-cache";
 
     private ApiConstants() {
         // Private constructor to prevent instantiation
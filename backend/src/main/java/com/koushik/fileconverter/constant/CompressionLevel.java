@@ -13,6 +13,13 @@ public enum CompressionLevel {
     private final int value;
     private final float compressionRatio;
 
+    /**
+     * The level for a requested quality from 0 to 100; without one, {@link #MEDIUM}.
+     */
+    public static CompressionLevel fromQuality(Integer quality) {
+        return quality == null ? MEDIUM : fromValue(quality);
+    }
+
     public static CompressionLevel fromValue(int value) {
         if (value <= 25) return HIGH;
         if (value <= 50) return MEDIUM;
@@ -4,6 +4,8 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 
+import java.util.Optional;
+
 @Getter
 @RequiredArgsConstructor
 public enum FileFormat {
@@ -23,4 +25,43 @@ public enum FileFormat {
         }
         throw new IllegalArgumentException("Unsupported file format: " + extension);
     }
+
+    public static FileFormat fromFilename(String filename) {
+        return fromExtension(filename.substring(filename.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * Detects the format from the leading bytes of a file's content.
+     *
+     * @param header The first bytes of the file (at least 8 for reliable detection)
+     * @param length The number of valid bytes in {@code header}
+     * @return the detected format, or empty if the signature is not recognised
+     */
+    public static Optional<FileFormat> sniff(byte[] header, int length) {
+        if (startsWith(header, length, 0x25, 0x50, 0x44, 0x46)) {          // %PDF
+            return Optional.of(PDF);
+        }
+        if (startsWith(header, length, 0x50, 0x4B, 0x03, 0x04)) {          // PK.. (OOXML is a ZIP package)
+            return Optional.of(DOCX);
+        }
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return Optional.of(JPG);
+        }
+        if (startsWith(header, length, 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return Optional.of(PNG);
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
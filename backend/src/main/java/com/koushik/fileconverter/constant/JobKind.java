@@ -0,0 +1,22 @@
+package com.koushik.fileconverter.constant;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum JobKind {
+    /** PDF rasterization and POI document work. */
+    HEAVY("heavy"),
+    /** Image transcodes and recompression. */
+    LIGHT("light");
+
+    private final String tag;
+
+    public static JobKind forFormat(FileFormat sourceFormat) {
+        return switch (sourceFormat) {
+            case JPG, PNG -> LIGHT;
+            case PDF, DOCX -> HEAVY;
+        };
+    }
+}
@@ -0,0 +1,10 @@
+package com.koushik.fileconverter.constant;
+
+public enum PdfCompressionMode {
+    /** Picks one of the other modes for each document from a sample of its pages. */
+    AUTO,
+    /** Rewrites the document, keeping text and vector graphics and re-encoding only its pictures. */
+    OPTIMIZE,
+    /** Replaces every page with a JPEG of it. */
+    RASTERIZE
+}
@@ -3,26 +3,33 @@ package com.koushik.fileconverter.controller;
 import com.koushik.fileconverter.constant.FileFormat;
 import com.koushik.fileconverter.dto.request.CompressionRequestDTO;
 import com.koushik.fileconverter.dto.request.ConversionRequestDTO;
+import com.koushik.fileconverter.dto.response.BatchResponseDTO;
 import com.koushik.fileconverter.dto.response.FileResponseDTO;
 import com.koushik.fileconverter.dto.response.ProgressResponseDTO;
 import com.koushik.fileconverter.exception.StorageException;
+import com.koushik.fileconverter.service.BatchProcessingService;
+import com.koushik.fileconverter.service.DownloadService;
 import com.koushik.fileconverter.service.FileCompressionService;
 import com.koushik.fileconverter.service.FileConversionService;
+import com.koushik.fileconverter.service.JobCancellationService;
 import com.koushik.fileconverter.service.ProgressTrackingService;
 import com.koushik.fileconverter.service.StorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import static com.koushik.fileconverter.constant.ApiConstants.*;
 
@@ -36,6 +43,9 @@ public class FileProcessingController {
     private final FileCompressionService compressionService;
     private final ProgressTrackingService progressTrackingService;
     private final StorageService storageService;
+    private final DownloadService downloadService;
+    private final BatchProcessingService batchProcessingService;
+    private final JobCancellationService jobCancellationService;
 
     @PostMapping(value = "/convert", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<FileResponseDTO> convertFile(
@@ -54,40 +64,79 @@ public class FileProcessingController {
     @PostMapping(value = "/compress", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<FileResponseDTO> compressFile(
             @RequestParam(FILE_PARAM) MultipartFile file,
-            @RequestParam(value = COMPRESSION_LEVEL_PARAM, defaultValue = "50") Integer compressionLevel) {
+            @RequestParam(value = COMPRESSION_LEVEL_PARAM, defaultValue = "50") Integer compressionLevel,
+            @RequestParam(value = TARGET_BYTES_PARAM, required = false) Long targetBytes) {
         
         CompressionRequestDTO request = CompressionRequestDTO.builder()
                 .file(file)
                 .compressionLevel(compressionLevel)
+                .targetBytes(targetBytes)
                 .build();
         
         FileResponseDTO response = compressionService.compressFile(request);
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping(value = "/batch/convert", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BatchResponseDTO> convertBatch(
+            @RequestParam(FILES_PARAM) List<MultipartFile> files,
+            @RequestParam(TARGET_FORMAT_PARAM) String targetFormat) {
+
+        BatchResponseDTO response = batchProcessingService.convertBatch(files, targetFormat);
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping(value = "/batch/compress", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BatchResponseDTO> compressBatch(
+            @RequestParam(FILES_PARAM) List<MultipartFile> files,
+            @RequestParam(value = COMPRESSION_LEVEL_PARAM, defaultValue = "50") Integer compressionLevel) {
+
+        BatchResponseDTO response = batchProcessingService.compressBatch(files, compressionLevel);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/batch/{jobId}/download")
+    public ResponseEntity<StreamingResponseBody> downloadBatch(@PathVariable(JOB_ID_PARAM) String jobId) {
+        if (!batchProcessingService.exists(jobId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String contentDisposition = String.format("attachment; filename=\"batch-%s.zip\"", jobId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
+                .header(CACHE_CONTROL_HEADER, NO_CACHE_VALUE)
+                .body(out -> batchProcessingService.writeResults(jobId, out));
+    }
+
     @GetMapping("/progress/{jobId}")
     public SseEmitter trackProgress(@PathVariable(JOB_ID_PARAM) String jobId) {
         return progressTrackingService.subscribeToProgress(jobId);
     }
 
     @GetMapping("/download/{fileId}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable(FILE_ID_PARAM) String fileId) {
-        try {
-            File file = storageService.getProcessedFile(fileId);
-            Resource resource = new UrlResource(file.toURI());
+    public void downloadFile(@PathVariable(FILE_ID_PARAM) String fileId,
+                             HttpServletRequest request, HttpServletResponse response) {
+        serveProcessedFile(fileId, fileId, request, response);
+    }
 
-            String contentType = determineContentType(file.getName());
-            String contentDisposition = String.format("attachment; filename=\"%s\"", fileId);
+    @GetMapping("/download/{jobId}/{fileName}")
+    public void downloadJobFile(@PathVariable(JOB_ID_PARAM) String jobId, @PathVariable(FILE_NAME_PARAM) String fileName,
+                                HttpServletRequest request, HttpServletResponse response) {
+        serveProcessedFile(jobId + "/" + fileName, fileName, request, response);
+    }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
-                    .header(CACHE_CONTROL_HEADER, NO_CACHE_VALUE)
-                    .body(resource);
+    private void serveProcessedFile(String fileId, String downloadName,
+                                    HttpServletRequest request, HttpServletResponse response) {
+        try {
+            File file = storageService.getProcessedFile(fileId);
+            downloadService.serve(file, downloadName, determineContentType(file.getName()), request, response);
 
         } catch (StorageException | IOException e) {
             log.error("Error downloading file: {}", fileId, e);
-            return ResponseEntity.notFound().build();
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
         }
     }
 
@@ -99,6 +148,22 @@ public class FileProcessingController {
             ResponseEntity.notFound().build();
     }
 
+    /**
+     * Cancels a queued or running job or batch. Answers 409 with the job's
+     * state if it has already finished.
+     */
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<ProgressResponseDTO> cancelJob(@PathVariable(JOB_ID_PARAM) String jobId) {
+        boolean cancelled = jobCancellationService.cancel(jobId);
+        ProgressResponseDTO progress = progressTrackingService.getProgress(jobId);
+        if (progress == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return cancelled ?
+            ResponseEntity.accepted().body(progress) :
+            ResponseEntity.status(HttpStatus.CONFLICT).body(progress);
+    }
+
     private String determineContentType(String filename) {
         String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
         try {
@@ -14,6 +14,12 @@ import org.springframework.web.multipart.MultipartFile;
 public class CompressionRequestDTO {
     private MultipartFile file;
     private Integer compressionLevel;
+    // Largest size the result may have; when set it decides the quality instead of the level
+    private Long targetBytes;
+
+    public Integer getCompressionLevelValue() {
+        return compressionLevel;
+    }
 
     public CompressionLevel getCompressionLevel() {
         return CompressionLevel.fromQuality(this.compressionLevel);
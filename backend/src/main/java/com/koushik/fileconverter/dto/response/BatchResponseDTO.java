@@ -0,0 +1,18 @@
+package com.koushik.fileconverter.dto.response;
+
+import com.koushik.fileconverter.dto.response.FileResponseDTO.ProcessingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResponseDTO {
+    private String jobId;
+    private int fileCount;
+    private String downloadUrl;
+    private ProcessingStatus status;
+}
@@ -22,6 +22,7 @@ public class FileResponseDTO {
         QUEUED,
         PROCESSING,
         COMPLETED,
-        FAILED
+        FAILED,
+        CANCELLED
     }
 }
@@ -8,6 +8,10 @@ public class FileConverterException extends RuntimeException {
     private final HttpStatus status;
     private final String details;
 
+    public FileConverterException(HttpStatus status, String message) {
+        this(status, message, (String) null);
+    }
+
     public FileConverterException(HttpStatus status, String message, String details) {
         super(message);
         this.status = status;
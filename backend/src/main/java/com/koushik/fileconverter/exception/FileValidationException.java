@@ -19,10 +19,24 @@ public class FileValidationException extends FileConverterException {
         return new FileValidationException("Invalid or unsupported file format: " + format);
     }
 
+    public static FileValidationException contentMismatch(String fileName, String declaredFormat) {
+        return new FileValidationException(
+            "File content does not match its extension",
+            String.format("%s is not a valid %s file", fileName, declaredFormat)
+        );
+    }
+
     public static FileValidationException fileTooLarge(long size, long maxSize) {
         return new FileValidationException(
             "File size exceeds maximum limit",
             String.format("File size: %d bytes, Maximum allowed: %d bytes", size, maxSize)
         );
     }
+
+    public static FileValidationException exceedsMemoryBudget(long estimatedBytes, long budgetBytes) {
+        return new FileValidationException(
+            "File is too large to process",
+            String.format("Estimated memory: %d bytes, Available: %d bytes", estimatedBytes, budgetBytes)
+        );
+    }
 }
@@ -3,16 +3,16 @@ package com.koushik.fileconverter.exception;
 import com.koushik.fileconverter.dto.response.ErrorResponseDTO;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
-import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 @Slf4j
 @RestControllerAdvice
-public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+public class GlobalExceptionHandler {
 
     @ExceptionHandler(FileConverterException.class)
     public ResponseEntity<ErrorResponseDTO> handleFileConverterException(
@@ -20,23 +20,36 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
             HttpServletRequest request) {
         log.error("FileConverterException: {}", ex.getMessage(), ex);
         ErrorResponseDTO errorResponse = ErrorResponseDTO.of(
-                ex.getStatus(),
+                ex.getStatus().name(),
                 ex.getMessage(),
-                request.getRequestURI(),
                 ex.getDetails()
         );
         return new ResponseEntity<>(errorResponse, ex.getStatus());
     }
 
+    @ExceptionHandler(JobRejectedException.class)
+    public ResponseEntity<ErrorResponseDTO> handleJobRejectedException(
+            JobRejectedException ex,
+            HttpServletRequest request) {
+        log.warn("JobRejectedException: {} ({})", ex.getMessage(), request.getRequestURI());
+        ErrorResponseDTO errorResponse = ErrorResponseDTO.of(
+                HttpStatus.TOO_MANY_REQUESTS.name(),
+                ex.getMessage(),
+                ex.getDetails()
+        );
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     @ExceptionHandler(MaxUploadSizeExceededException.class)
     public ResponseEntity<ErrorResponseDTO> handleMaxUploadSizeExceededException(
             MaxUploadSizeExceededException ex,
             HttpServletRequest request) {
         log.error("MaxUploadSizeExceededException: {}", ex.getMessage(), ex);
         ErrorResponseDTO errorResponse = ErrorResponseDTO.of(
-                HttpStatus.BAD_REQUEST,
+                HttpStatus.BAD_REQUEST.name(),
                 "File size exceeds the maximum allowed limit",
-                request.getRequestURI(),
                 ex.getMessage()
         );
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
@@ -48,9 +61,8 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
             HttpServletRequest request) {
         log.error("Unexpected error: {}", ex.getMessage(), ex);
         ErrorResponseDTO errorResponse = ErrorResponseDTO.of(
-                HttpStatus.INTERNAL_SERVER_ERROR,
+                HttpStatus.INTERNAL_SERVER_ERROR.name(),
                 "An unexpected error occurred",
-                request.getRequestURI(),
                 ex.getMessage()
         );
         return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
@@ -0,0 +1,36 @@
+package com.koushik.fileconverter.exception;
+
+import com.koushik.fileconverter.constant.JobKind;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.io.Serial;
+
+@Getter
+public class JobRejectedException extends FileConverterException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public JobRejectedException(String message, String details, long retryAfterSeconds) {
+        super(HttpStatus.TOO_MANY_REQUESTS, message, details);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public static JobRejectedException queueFull(JobKind kind, int capacity, long retryAfterSeconds) {
+        return new JobRejectedException(
+            "Server is busy, please retry later",
+            String.format("The %s job queue is full (%d jobs waiting)", kind.getTag(), capacity),
+            retryAfterSeconds
+        );
+    }
+
+    public static JobRejectedException memoryBusy(long waitedSeconds) {
+        return new JobRejectedException(
+            "Server is busy, please retry later",
+            String.format("Not enough memory became available within %d seconds", waitedSeconds),
+            waitedSeconds
+        );
+    }
+}
@@ -0,0 +1,563 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.BatchProperties;
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.constant.FileFormat;
+import com.koushik.fileconverter.constant.JobKind;
+import com.koushik.fileconverter.dto.response.BatchResponseDTO;
+import com.koushik.fileconverter.dto.response.FileResponseDTO.ProcessingStatus;
+import com.koushik.fileconverter.exception.FileConverterException;
+import com.koushik.fileconverter.exception.FileValidationException;
+import com.koushik.fileconverter.exception.JobRejectedException;
+import com.koushik.fileconverter.strategy.compressor.CompressionStrategy;
+import com.koushik.fileconverter.strategy.converter.ConversionStrategy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static com.koushik.fileconverter.constant.ApiConstants.MAX_FILE_SIZE;
+
+/**
+ * Converts or compresses many files under a single job id. Uploaded ZIPs are
+ * expanded into their entries. Files are spread over a few lanes on the worker
+ * pool, each lane processing files one after another, and the results can be
+ * downloaded as a ZIP that is written entry by entry as files finish.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchProcessingService {
+
+    private static final String ERRORS_ENTRY = "errors.txt";
+
+    private final BatchProperties properties;
+    private final JobExecutorProperties executorProperties;
+    private final FileConversionService conversionService;
+    private final FileCompressionService compressionService;
+    private final StorageService storageService;
+    private final ProgressTrackingService progressTrackingService;
+    private final ValidationService validationService;
+    private final JobExecutionService jobExecutionService;
+    private final ResultCacheService resultCacheService;
+    private final MemoryEstimator memoryEstimator;
+    private final MemoryAdmissionService memoryAdmissionService;
+    private final JobCancellationService jobCancellationService;
+
+    private final Map<String, BatchJob> batches = new ConcurrentHashMap<>();
+
+    public BatchResponseDTO convertBatch(List<MultipartFile> files, String targetFormat) {
+        validationService.validateBatchRequest(files, properties.getMaxFiles());
+        validationService.validateTargetFormat(targetFormat);
+        FileFormat format = FileFormat.fromExtension(targetFormat);
+
+        return startBatch(files, "conversion", storedFile -> {
+            ConversionStrategy converter = conversionService.findConverter(storedFile.format(), format);
+            return new Operation(
+                    conversionService.generateTargetFilename(storedFile.file().getName(), format),
+                    resultCacheService.conversionKey(storedFile.sha256(), format, converter),
+                    admissibleEstimate(memoryEstimator.estimateConversion(storedFile)),
+                    (source, target, progress, cancellation) -> converter.convert(source, target, progress, cancellation));
+        });
+    }
+
+    public BatchResponseDTO compressBatch(List<MultipartFile> files, Integer compressionLevel) {
+        validationService.validateBatchRequest(files, properties.getMaxFiles());
+        validationService.validateCompressionLevel(compressionLevel);
+        CompressionLevel level = CompressionLevel.fromValue(compressionLevel);
+
+        return startBatch(files, "compression", storedFile -> {
+            CompressionStrategy compressor = compressionService.findCompressor(storedFile.format().getExtension());
+            return new Operation(
+                    compressionService.generateCompressedFilename(storedFile.file().getName()),
+                    resultCacheService.compressionKey(storedFile.sha256(), level, compressor),
+                    admissibleEstimate(memoryEstimator.estimateCompression(storedFile)),
+                    (source, target, progress, cancellation) ->
+                            compressor.compress(source, target, level, progress, cancellation));
+        });
+    }
+
+    public boolean exists(String jobId) {
+        return batches.containsKey(jobId);
+    }
+
+    /**
+     * Writes the results of a batch as a ZIP, in the order the files finish.
+     * Blocks until the last file is done, so a download started early streams
+     * results as they become available. Failed files are listed in errors.txt.
+     */
+    public void writeResults(String jobId, OutputStream out) throws IOException {
+        BatchJob batch = batches.get(jobId);
+        if (batch == null) {
+            throw FileValidationException.fileNotFound(jobId);
+        }
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try {
+            for (int i = 0; ; i++) {
+                BatchResult result = batch.awaitResult(i);
+                if (result == null) {
+                    break;
+                }
+                // The results are already compressed formats, so store them as-is
+                ZipEntry entry = new ZipEntry(result.name());
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(result.size());
+                entry.setCompressedSize(result.size());
+                entry.setCrc(result.crc());
+                zip.putNextEntry(entry);
+                Files.copy(result.file().toPath(), zip);
+                zip.closeEntry();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for batch " + jobId);
+        }
+
+        List<String> failures = batch.failures();
+        if (!failures.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(ERRORS_ENTRY));
+            zip.write((String.join("\n", failures) + "\n").getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Forgets batches whose job state has expired.
+     */
+    public void sweep() {
+        batches.keySet().removeIf(jobId -> progressTrackingService.getProgress(jobId) == null);
+    }
+
+    private BatchResponseDTO startBatch(List<MultipartFile> files, String operationName, OperationFactory factory) {
+        String jobId = UUID.randomUUID().toString();
+        log.info("Starting batch {}. JobId: {}, Parts: {}", operationName, jobId, files.size());
+
+        BatchJob batch = new BatchJob(jobId);
+        List<BatchItem> items = collectItems(batch, files, factory);
+        if (items.isEmpty() && batch.failures().isEmpty()) {
+            throw new FileValidationException("At least one file is required.");
+        }
+        batch.start(items);
+        batches.put(jobId, batch);
+        progressTrackingService.markAsQueued(jobId);
+        batch.cancellation = jobCancellationService.register(jobId);
+        batch.cancellation.onCancel(batch::abort);
+
+        try {
+            submitLanes(batch, items);
+        } catch (JobRejectedException e) {
+            jobCancellationService.finish(jobId);
+            batch.abort();
+            batches.remove(jobId);
+            items.forEach(item -> storageService.discard(item.source().file()));
+            progressTrackingService.markAsFailed(jobId, e.getMessage());
+            throw e;
+        }
+        if (items.isEmpty()) {
+            batch.finishIfDone();
+        }
+
+        return BatchResponseDTO.builder()
+                .jobId(jobId)
+                .fileCount(items.size() + batch.failures().size())
+                .downloadUrl("/api/v1/batch/" + jobId + "/download")
+                .status(ProcessingStatus.QUEUED)
+                .build();
+    }
+
+    /**
+     * Stores every uploaded file, and every entry of uploaded ZIPs, under the
+     * batch's own directory. Files that cannot be processed are recorded as
+     * failures of the batch rather than failing the request.
+     */
+    private List<BatchItem> collectItems(BatchJob batch, List<MultipartFile> files, OperationFactory factory) {
+        List<BatchItem> items = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+        long extractedBudget = properties.getMaxExtractedSize().toBytes();
+        try {
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    continue;
+                }
+                String filename = file.getOriginalFilename();
+                if (filename.toLowerCase().endsWith(".zip")) {
+                    extractedBudget -= extractArchive(batch, file, factory, items, usedNames, extractedBudget);
+                    continue;
+                }
+                checkFileCount(items, batch);
+                String name = uniqueName(baseName(filename), usedNames);
+                addItem(batch, items, name, factory, () -> storageService.storeOriginalFile(file, batch.jobId + "/" + name));
+            }
+            return items;
+        } catch (RuntimeException e) {
+            items.forEach(item -> storageService.discard(item.source().file()));
+            throw e;
+        }
+    }
+
+    private long extractArchive(BatchJob batch, MultipartFile archive, OperationFactory factory,
+                                List<BatchItem> items, Set<String> usedNames, long budget) {
+        try (CountingInputStream zip = new CountingInputStream(new ZipInputStream(archive.getInputStream()))) {
+            ZipEntry entry;
+            while ((entry = zip.nextEntry()) != null) {
+                String entryName = baseName(entry.getName());
+                if (entry.isDirectory() || entryName.isEmpty() || entryName.startsWith(".")
+                        || entry.getName().startsWith("__MACOSX/")) {
+                    continue;
+                }
+                // Everything read counts, including entries rejected part way through
+                long remaining = budget - zip.count;
+                if (remaining <= 0) {
+                    throw new FileValidationException("Extracted files exceed the batch size limit.",
+                            String.format("Maximum allowed: %d bytes", properties.getMaxExtractedSize().toBytes()));
+                }
+                checkFileCount(items, batch);
+                String name = uniqueName(entryName, usedNames);
+                long limit = Math.min(MAX_FILE_SIZE, remaining);
+                addItem(batch, items, name, factory,
+                        () -> storageService.storeOriginalFile(zip, batch.jobId + "/" + name, limit));
+            }
+            return zip.count;
+        } catch (IOException e) {
+            log.warn("Failed to read archive {} of batch {}", archive.getOriginalFilename(), batch.jobId, e);
+            batch.recordFailure(archive.getOriginalFilename(), "Not a readable ZIP archive");
+            return 0;
+        }
+    }
+
+    private void addItem(BatchJob batch, List<BatchItem> items, String name, OperationFactory factory,
+                         StoreAction store) {
+        try {
+            FileFormat.fromFilename(name);
+        } catch (IllegalArgumentException e) {
+            batch.recordFailure(name, "Unsupported file format");
+            return;
+        }
+        StoredFile storedFile = null;
+        try {
+            storedFile = store.store();
+            items.add(new BatchItem(items.size(), name, storedFile, factory.create(storedFile)));
+        } catch (FileConverterException e) {
+            if (storedFile != null) {
+                storageService.discard(storedFile.file());
+            }
+            batch.recordFailure(name, e.getMessage());
+        }
+    }
+
+    private long admissibleEstimate(long memoryEstimate) {
+        // Files that could never fit the memory budget fail on their own, not the batch
+        memoryAdmissionService.checkAdmissible(memoryEstimate);
+        return memoryEstimate;
+    }
+
+    private void checkFileCount(List<BatchItem> items, BatchJob batch) {
+        if (items.size() + batch.failures().size() >= properties.getMaxFiles()) {
+            throw new FileValidationException("Too many files in batch.",
+                    String.format("Maximum allowed: %d", properties.getMaxFiles()));
+        }
+    }
+
+    /**
+     * Queues a few lanes per kind of work, sized to that kind's worker pool,
+     * so a large batch cannot flood the queue and each lane just takes the
+     * next file when it is done with one.
+     */
+    private void submitLanes(BatchJob batch, List<BatchItem> items) {
+        Map<JobKind, Queue<BatchItem>> byKind = new EnumMap<>(JobKind.class);
+        Map<JobKind, Long> bytesByKind = new EnumMap<>(JobKind.class);
+        for (BatchItem item : items) {
+            JobKind kind = JobKind.forFormat(item.source().format());
+            byKind.computeIfAbsent(kind, k -> new ConcurrentLinkedQueue<>()).add(item);
+            bytesByKind.merge(kind, item.source().size(), Long::sum);
+        }
+        byKind.forEach((kind, queue) -> {
+            int lanes = Math.max(1, Math.min(queue.size(), executorProperties.getPool(kind).getThreads()));
+            long bytesPerLane = bytesByKind.get(kind) / lanes;
+            for (int i = 0; i < lanes; i++) {
+                jobExecutionService.submit(batch.jobId, kind, bytesPerLane, () -> runLane(batch, queue));
+            }
+        });
+    }
+
+    private void runLane(BatchJob batch, Queue<BatchItem> queue) {
+        BatchItem item;
+        while (!batch.isAborted() && (item = queue.poll()) != null) {
+            process(batch, item);
+        }
+        if (batch.cancellation.isCancelled()) {
+            // Files no lane has started on yet
+            while ((item = queue.poll()) != null) {
+                storageService.discard(item.source().file());
+            }
+        }
+    }
+
+    private void process(BatchJob batch, BatchItem item) {
+        Operation operation = item.operation();
+        String targetFilename = batch.jobId + "/" + operation.targetFilename();
+        File sourceFile = item.source().file();
+        File targetFile = null;
+        try {
+            Optional<File> cachedResult = resultCacheService.lookup(operation.cacheKey(), targetFilename);
+            if (cachedResult.isPresent()) {
+                targetFile = cachedResult.get();
+            } else {
+                targetFile = storageService.createProcessedFile(targetFilename);
+                MemoryAdmissionService.Reservation reservation =
+                        memoryAdmissionService.reserve(batch.jobId, operation.memoryEstimate(), batch.cancellation);
+                try {
+                    operation.task().run(sourceFile, targetFile,
+                            progress -> batch.updateProgress(item.index(), progress), batch.cancellation);
+                } finally {
+                    reservation.close();
+                }
+                // Notes are kept per batch, so once there are any no item can tell it has none
+                if (batch.cancellation.notes() == null) {
+                    resultCacheService.store(operation.cacheKey(), targetFile);
+                }
+            }
+            batch.recordResult(item.index(), new BatchResult(operation.targetFilename(), targetFile,
+                    targetFile.length(), crc32(targetFile)));
+        } catch (Exception e) {
+            if (targetFile != null) {
+                storageService.discard(targetFile);
+            }
+            if (batch.cancellation.isCancelled()) {
+                log.info("Batch item {} cancelled. JobId: {}", item.name(), batch.jobId);
+                return;
+            }
+            log.error("Batch item {} failed. JobId: {}", item.name(), batch.jobId, e);
+            batch.recordFailure(item.index(), item.name(), e.getMessage());
+        } finally {
+            storageService.discard(sourceFile);
+        }
+    }
+
+    private static long crc32(File file) throws IOException {
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(file.toPath()), new CRC32())) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return ((CheckedInputStream) in).getChecksum().getValue();
+        }
+    }
+
+    private static String baseName(String path) {
+        return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+    }
+
+    private static String uniqueName(String name, Set<String> usedNames) {
+        String candidate = name;
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int n = 1; !usedNames.add(candidate.toLowerCase()); n++) {
+            candidate = stem + "-" + n + extension;
+        }
+        return candidate;
+    }
+
+    /**
+     * Counts the bytes extracted from an archive across all of its entries.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(ZipInputStream in) {
+            super(in);
+        }
+
+        private ZipEntry nextEntry() throws IOException {
+            return ((ZipInputStream) in).getNextEntry();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    @FunctionalInterface
+    private interface OperationFactory {
+        Operation create(StoredFile storedFile);
+    }
+
+    @FunctionalInterface
+    private interface StoreAction {
+        StoredFile store();
+    }
+
+    @FunctionalInterface
+    private interface ProcessingTask {
+        void run(File source, File target, Consumer<Integer> progressCallback, CancellationToken cancellation);
+    }
+
+    private record Operation(String targetFilename, String cacheKey, long memoryEstimate, ProcessingTask task) {
+    }
+
+    private record BatchItem(int index, String name, StoredFile source, Operation operation) {
+    }
+
+    private record BatchResult(String name, File file, long size, long crc) {
+    }
+
+    /**
+     * Progress and results of one batch. Results are kept in completion order
+     * and handed to downloads as they arrive.
+     */
+    private final class BatchJob {
+        private final String jobId;
+        private final List<BatchResult> results = new ArrayList<>();
+        private final List<String> failures = new ArrayList<>();
+        private final AtomicLong progressSum = new AtomicLong();
+        private AtomicIntegerArray itemProgress = new AtomicIntegerArray(0);
+        private int total;
+        private int done;
+        private boolean finished;
+        private volatile boolean aborted;
+        private CancellationToken cancellation;
+
+        private BatchJob(String jobId) {
+            this.jobId = jobId;
+        }
+
+        private synchronized void start(List<BatchItem> items) {
+            itemProgress = new AtomicIntegerArray(items.size());
+            // Files rejected while collecting count as finished
+            total = items.size() + failures.size();
+            done = failures.size();
+            progressSum.set(100L * failures.size());
+        }
+
+        private void updateProgress(int index, int progress) {
+            int previous = itemProgress.getAndSet(index, progress);
+            long sum = progressSum.addAndGet(progress - previous);
+            progressTrackingService.updateProgress(jobId, (int) (sum / Math.max(1, total)));
+        }
+
+        private void recordResult(int index, BatchResult result) {
+            synchronized (this) {
+                updateProgress(index, 100);
+                results.add(result);
+                done++;
+                notifyAll();
+            }
+            finishIfDone();
+        }
+
+        private void recordFailure(int index, String name, String reason) {
+            synchronized (this) {
+                updateProgress(index, 100);
+                recordFailure(name, reason);
+                done++;
+                notifyAll();
+            }
+            finishIfDone();
+        }
+
+        private synchronized void recordFailure(String name, String reason) {
+            failures.add(name + ": " + reason);
+        }
+
+        /**
+         * Called outside the batch's lock: cancelling the token aborts the
+         * batch while holding the token's lock, so the two are never nested
+         * the other way round.
+         */
+        private void finishIfDone() {
+            int count;
+            int succeeded;
+            int failed;
+            synchronized (this) {
+                if (done < total || finished) {
+                    return;
+                }
+                finished = true;
+                count = total;
+                succeeded = results.size();
+                failed = failures.size();
+            }
+            if (!jobCancellationService.finish(jobId)) {
+                return;
+            }
+            String notes = cancellation.notes();
+            if (succeeded == 0) {
+                progressTrackingService.markAsFailed(jobId, "None of the " + count + " files could be processed");
+            } else if (failed > 0) {
+                String message = failed + " of " + count + " files failed, see " + ERRORS_ENTRY;
+                progressTrackingService.markAsCompleted(jobId, notes != null ? message + "; " + notes : message);
+            } else {
+                progressTrackingService.markAsCompleted(jobId, notes);
+            }
+            log.info("Batch completed. JobId: {}, Succeeded: {}, Failed: {}", jobId, succeeded, failed);
+        }
+
+        /**
+         * @return the result at {@code index}, or null once the batch is done and has no more results
+         */
+        private synchronized BatchResult awaitResult(int index) throws InterruptedException {
+            while (index >= results.size() && done < total && !aborted) {
+                wait();
+            }
+            return index < results.size() ? results.get(index) : null;
+        }
+
+        private synchronized List<String> failures() {
+            return List.copyOf(failures);
+        }
+
+        private boolean isAborted() {
+            return aborted;
+        }
+
+        private synchronized void abort() {
+            aborted = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.BufferPoolProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Reusable byte arrays for in-memory encoding, in power-of-two size classes,
+ * so image-heavy jobs stop allocating and discarding a buffer, and the copies
+ * made while it grows, for every picture. Idle buffers are retained up to a
+ * total size; anything beyond that, or larger than the biggest class, is left
+ * to the garbage collector, as is a buffer that is never released, e.g. when
+ * a job fails part way.
+ */
+@Component
+public class BufferPool {
+
+    private static final int MIN_CLASS_SHIFT = 13; // 8 KB
+
+    private final int maxClassShift;
+    private final long maxRetained;
+    // Indexed by size class, from MIN_CLASS_SHIFT
+    private final List<Queue<byte[]>> idle;
+    private final AtomicLong retained = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public BufferPool(BufferPoolProperties properties, MeterRegistry meterRegistry) {
+        long maxBufferSize = Math.min(properties.getMaxBufferSize().toBytes(), 1 << 30);
+        this.maxClassShift = Math.max(MIN_CLASS_SHIFT, 63 - Long.numberOfLeadingZeros(maxBufferSize));
+        this.maxRetained = properties.getMaxRetained().toBytes();
+        this.idle = Stream.<Queue<byte[]>>generate(ConcurrentLinkedQueue::new)
+                .limit(maxClassShift - MIN_CLASS_SHIFT + 1)
+                .toList();
+
+        Gauge.builder("processing.buffers.retained", retained, AtomicLong::get)
+                .description("Idle pooled buffers")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.hits = acquiredCounter(meterRegistry, "hit");
+        this.misses = acquiredCounter(meterRegistry, "miss");
+    }
+
+    private static Counter acquiredCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("processing.buffers.acquired")
+                .description("Buffers handed out, reused from the pool or newly allocated")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns a buffer of at least {@code minCapacity} bytes. Its contents are
+     * undefined. Hand it back with {@link #release} when done.
+     */
+    public byte[] acquire(int minCapacity) {
+        int shift = classShift(minCapacity);
+        if (shift > maxClassShift) {
+            misses.increment();
+            return new byte[minCapacity];
+        }
+        byte[] buffer = idle.get(shift - MIN_CLASS_SHIFT).poll();
+        if (buffer != null) {
+            retained.addAndGet(-buffer.length);
+            hits.increment();
+            return buffer;
+        }
+        misses.increment();
+        return new byte[1 << shift];
+    }
+
+    public void release(byte[] buffer) {
+        int length = buffer.length;
+        if (Integer.bitCount(length) != 1 || length < 1 << MIN_CLASS_SHIFT || length > 1 << maxClassShift) {
+            return;
+        }
+        if (retained.addAndGet(length) > maxRetained) {
+            retained.addAndGet(-length);
+            return;
+        }
+        idle.get(Integer.numberOfTrailingZeros(length) - MIN_CLASS_SHIFT).offer(buffer);
+    }
+
+    /**
+     * An empty, growable buffer backed by this pool.
+     */
+    public PooledBytes allocate(int initialCapacity) {
+        return new PooledBytes(this, initialCapacity);
+    }
+
+    private static int classShift(int capacity) {
+        return Math.max(MIN_CLASS_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity) - 1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.koushik.fileconverter.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cancellation state of one job, checked by strategies between pages and
+ * pictures. A token is cancelled at most once and only while the job is still
+ * active; once the job has finished, cancelling it has no effect. Strategies
+ * also leave notes on it about anything the result lost, which the job
+ * reports when it completes.
+ */
+public final class CancellationToken {
+
+    private enum State { ACTIVE, CANCELLED, FINISHED }
+
+    private volatile State state = State.ACTIVE;
+    private final List<Runnable> listeners = new ArrayList<>();
+    private final List<String> notes = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return true if this call cancelled the job, false if it had already
+     * been cancelled or had finished
+     */
+    public synchronized boolean cancel() {
+        if (state != State.ACTIVE) {
+            return false;
+        }
+        state = State.CANCELLED;
+        // Run under the lock, so a listener never fires after its registration is closed;
+        // from a copy, as a listener may close registrations itself
+        List<Runnable> cancelled = new ArrayList<>(listeners);
+        listeners.clear();
+        cancelled.forEach(Runnable::run);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    /**
+     * @throws CancellationException if the job has been cancelled
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Job was cancelled");
+        }
+    }
+
+    /**
+     * Records something the client should know about the result, such as an
+     * image that was downscaled.
+     */
+    public void addNote(String note) {
+        notes.add(note);
+    }
+
+    /**
+     * @return the notes left on the job as one message, or null if there are none
+     */
+    public String notes() {
+        return notes.isEmpty() ? null : String.join("; ", notes);
+    }
+
+    /**
+     * Marks the job as finished, after which it can no longer be cancelled.
+     *
+     * @return false if it was cancelled first
+     */
+    synchronized boolean finish() {
+        if (state == State.ACTIVE) {
+            state = State.FINISHED;
+        }
+        return state == State.FINISHED;
+    }
+
+    /**
+     * Runs {@code action} on the cancelling thread if the job is cancelled
+     * before the returned registration is closed, or right away if it already
+     * is. Used to interrupt blocking waits.
+     */
+    synchronized Registration onCancel(Runnable action) {
+        if (state == State.CANCELLED) {
+            action.run();
+            return () -> {
+            };
+        }
+        listeners.add(action);
+        return () -> {
+            synchronized (this) {
+                listeners.remove(action);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,261 @@
+package com.koushik.fileconverter.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.koushik.fileconverter.constant.ApiConstants.CACHE_CONTROL_HEADER;
+import static com.koushik.fileconverter.constant.ApiConstants.REVALIDATE_CACHE_VALUE;
+
+/**
+ * Serves processed files straight from disk. Supports conditional requests
+ * against a strong, content-derived ETag and single or multiple byte ranges,
+ * so interrupted downloads can be resumed and repeat fetches are answered
+ * with 304. File bodies are handed to the container's sendfile support when
+ * available and otherwise copied with {@link FileChannel#transferTo}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DownloadService {
+
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private final StorageService storageService;
+
+    /**
+     * Writes {@code file} to the response, honouring conditional and range headers.
+     *
+     * @param file The file to serve
+     * @param downloadName The file name offered to the client
+     * @param contentType The media type of the file
+     */
+    public void serve(File file, String downloadName, String contentType,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified() / 1000 * 1000;
+        String etag = "\"" + storageService.getContentHash(file) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(CACHE_CONTROL_HEADER, REVALIDATE_CACHE_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                String.format("attachment; filename=\"%s\"", downloadName));
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<HttpRange> ranges = requestedRanges(request, etag, lastModified);
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            sendBody(file, 0, length, request, response);
+            return;
+        }
+
+        List<long[]> segments = toSegments(ranges, length);
+        if (segments.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (segments.size() == 1) {
+            long start = segments.get(0)[0];
+            long end = segments.get(0)[1];
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+            response.setContentLengthLong(end - start + 1);
+            sendBody(file, start, end + 1, request, response);
+        } else {
+            sendMultipart(file, contentType, segments, length, request, response);
+        }
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence and uses the weak comparison
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * Returns the ranges to serve, or an empty list if the whole file should be
+     * sent because there is no usable Range header or If-Range does not match.
+     */
+    private List<HttpRange> requestedRanges(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return List.of();
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            // If-Range requires a strong match, or an exact date
+            boolean matches = ifRange.startsWith("\"")
+                    ? ifRange.trim().equals(etag)
+                    : dateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
+            if (!matches) {
+                return List.of();
+            }
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed Range header: {}", rangeHeader);
+            return List.of();
+        }
+    }
+
+    /**
+     * Resolves ranges against the file length, dropping unsatisfiable ones and
+     * merging overlapping or adjacent ones. Each segment is {start, end} inclusive.
+     */
+    private static List<long[]> toSegments(List<HttpRange> ranges, long length) {
+        List<long[]> segments = new ArrayList<>();
+        for (HttpRange range : ranges) {
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (length > 0 && start < length && start <= end) {
+                segments.add(new long[] {start, end});
+            }
+        }
+        segments.sort(Comparator.comparingLong(segment -> segment[0]));
+
+        List<long[]> merged = new ArrayList<>();
+        for (long[] segment : segments) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && segment[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], segment[1]);
+            } else {
+                merged.add(segment);
+            }
+        }
+        return merged;
+    }
+
+    private void sendMultipart(File file, String contentType, List<long[]> segments, long length,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>(segments.size());
+        long contentLength = 0;
+        for (long[] segment : segments) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(segment[0], segment[1], length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + segment[1] - segment[0] + 1;
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (isHead(request)) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (int i = 0; i < segments.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(channel, segments.get(i)[0], segments.get(i)[1] + 1, target);
+            }
+        }
+        out.write(closing);
+        out.flush();
+    }
+
+    /**
+     * Sends bytes {@code [start, end)} of the file as the whole response body.
+     */
+    private void sendBody(File file, long start, long end, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        if (isHead(request) || start == end) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            // Tomcat writes the file with sendfile once the request returns
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            transfer(channel, start, end, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void transfer(FileChannel channel, long start, long end, WritableByteChannel target)
+            throws IOException {
+        long position = start;
+        while (position < end) {
+            long written = channel.transferTo(position, end - position, target);
+            if (written <= 0 && position >= channel.size()) {
+                throw new IOException("File truncated while being served");
+            }
+            position += written;
+        }
+    }
+
+    private static String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isHead(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+}
@@ -0,0 +1,41 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shared pool for work a single job splits across cores, such as rendering the
+ * pages of one PDF. Kept apart from the job pools in {@link JobExecutionService}
+ * so a job waiting on its own subtasks can never starve them of threads.
+ */
+@Component
+public class FanOutExecutor {
+
+    private final ExecutorService executor;
+
+    public FanOutExecutor(JobExecutorProperties properties) {
+        this.executor = Executors.newFixedThreadPool(
+                Math.max(1, properties.getFanOutThreads()),
+                new CustomizableThreadFactory("job-fanout-"));
+    }
+
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -2,10 +2,13 @@ package com.koushik.fileconverter.service;
 
 import com.koushik.fileconverter.constant.CompressionLevel;
 import com.koushik.fileconverter.constant.FileFormat;
+import com.koushik.fileconverter.constant.JobKind;
 import com.koushik.fileconverter.dto.request.CompressionRequestDTO;
 import com.koushik.fileconverter.dto.response.FileResponseDTO;
 import com.koushik.fileconverter.dto.response.FileResponseDTO.ProcessingStatus;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.exception.FileValidationException;
+import com.koushik.fileconverter.exception.JobRejectedException;
 import com.koushik.fileconverter.strategy.compressor.CompressionStrategy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,8 +16,9 @@ import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -25,6 +29,11 @@ public class FileCompressionService {
     private final StorageService storageService;
     private final ProgressTrackingService progressTrackingService;
     private final ValidationService validationService;
+    private final JobExecutionService jobExecutionService;
+    private final ResultCacheService resultCacheService;
+    private final MemoryEstimator memoryEstimator;
+    private final MemoryAdmissionService memoryAdmissionService;
+    private final JobCancellationService jobCancellationService;
 
     public FileResponseDTO compressFile(CompressionRequestDTO request) {
         String jobId = UUID.randomUUID().toString();
@@ -38,36 +47,107 @@ public class FileCompressionService {
             validationService.validateCompressionRequest(request);
 
             // Store original file
-            File sourceFile = storageService.storeOriginalFile(request.getFile());
-            String extension = FileFormat.fromExtension(sourceFilename).getExtension();
+            // Under a directory of the job's own, so uploads of the same name never collide
+            StoredFile storedFile = storageService.storeOriginalFile(request.getFile(),
+                    jobId + "/" + sourceFilename);
+            File sourceFile = storedFile.file();
+            FileFormat sourceFormat = storedFile.format();
+            String extension = sourceFormat.getExtension();
 
             // Find appropriate compressor
             CompressionStrategy compressor = findCompressor(extension);
             CompressionLevel level = request.getCompressionLevel();
+            Long targetBytes = request.getTargetBytes();
+            if (targetBytes != null && !compressor.supportsTargetSize()) {
+                storageService.discard(sourceFile.getParentFile());
+                throw new FileValidationException("Compression to a target size is not supported for " + extension);
+            }
 
             // Generate output filename
             String targetFilename = generateCompressedFilename(sourceFilename);
-            File targetFile = storageService.createProcessedFile(targetFilename);
-
-            // Start async compression
-            CompletableFuture.runAsync(() -> {
-                try {
-                    compressor.compress(sourceFile, targetFile, level,
-                        progress -> progressTrackingService.updateProgress(jobId, progress));
-                    
-                    log.info("File compression completed successfully. JobId: {}", jobId);
-                } catch (Exception e) {
-                    log.error("File compression failed. JobId: {}", jobId, e);
-                    progressTrackingService.markAsFailed(jobId, e.getMessage());
-                }
-            });
+            String fileId = jobId + "/" + targetFilename;
+
+            // Serve repeated uploads straight from the result cache
+            String cacheKey = targetBytes != null
+                    ? resultCacheService.compressionKey(storedFile.sha256(), targetBytes, compressor)
+                    : resultCacheService.compressionKey(storedFile.sha256(), level, compressor);
+            Optional<File> cachedResult = resultCacheService.lookup(cacheKey, fileId);
+            if (cachedResult.isPresent()) {
+                storageService.discard(sourceFile.getParentFile());
+                progressTrackingService.markAsCompleted(jobId);
+                log.info("File compression served from cache. JobId: {}", jobId);
+
+                return FileResponseDTO.builder()
+                        .jobId(jobId)
+                        .fileName(targetFilename)
+                        .fileId(fileId)
+                        .downloadUrl("/api/v1/download/" + fileId)
+                        .fileSize(cachedResult.get().length())
+                        .status(ProcessingStatus.COMPLETED)
+                        .build();
+            }
+
+            File targetFile = storageService.createProcessedFile(fileId);
+
+            long memoryEstimate = memoryEstimator.estimateCompression(storedFile);
+
+            // Queue compression on the worker pool for this kind of file once its estimated
+            // memory is free, so workers never sit waiting for memory
+            progressTrackingService.markAsQueued(jobId);
+            CancellationToken cancellation = jobCancellationService.register(jobId);
+            try {
+                MemoryAdmissionService.Admission admission =
+                        memoryAdmissionService.admit(jobId, memoryEstimate, cancellation);
+                submit(jobId, sourceFormat, storedFile.size(), admission, () -> {
+                    try {
+                        MemoryAdmissionService.Reservation reservation = admission.reservation();
+                        try {
+                            Consumer<Integer> progressCallback =
+                                    progress -> progressTrackingService.updateProgress(jobId, progress);
+                            if (targetBytes != null) {
+                                compressor.compressToSize(sourceFile, targetFile, targetBytes, progressCallback,
+                                        cancellation);
+                            } else {
+                                compressor.compress(sourceFile, targetFile, level, progressCallback, cancellation);
+                            }
+                        } finally {
+                            reservation.close();
+                        }
+
+                        if (jobCancellationService.finish(jobId)) {
+                            String notes = cancellation.notes();
+                            // A cache hit could not repeat the notes, e.g. that the image was downscaled
+                            if (notes == null) {
+                                resultCacheService.store(cacheKey, targetFile);
+                            }
+                            progressTrackingService.markAsCompleted(jobId, notes);
+                            log.info("File compression completed successfully. JobId: {}", jobId);
+                            return;
+                        }
+                    } catch (Exception e) {
+                        if (jobCancellationService.finish(jobId)) {
+                            log.error("File compression failed. JobId: {}", jobId, e);
+                            progressTrackingService.markAsFailed(jobId, e.getMessage());
+                            return;
+                        }
+                    }
+                    // Cancelled: whatever was written is incomplete
+                    log.info("File compression cancelled. JobId: {}", jobId);
+                    storageService.discard(targetFile.getParentFile());
+                });
+            } catch (JobRejectedException | FileValidationException e) {
+                jobCancellationService.finish(jobId);
+                storageService.discard(sourceFile.getParentFile(), targetFile.getParentFile());
+                progressTrackingService.markAsFailed(jobId, e.getMessage());
+                throw e;
+            }
 
             return FileResponseDTO.builder()
                     .jobId(jobId)
                     .fileName(targetFilename)
-                    .fileId(targetFilename)
-                    .downloadUrl("/api/v1/download/" + targetFilename)
-                    .status(ProcessingStatus.PROCESSING)
+                    .fileId(fileId)
+                    .downloadUrl("/api/v1/download/" + fileId)
+                    .status(ProcessingStatus.QUEUED)
                     .build();
 
         } catch (Exception e) {
@@ -76,7 +156,21 @@ public class FileCompressionService {
         }
     }
 
-    private CompressionStrategy findCompressor(String extension) {
+    /**
+     * Queues a job for a worker once its memory admission is decided, giving
+     * the admission back if the queue is full.
+     */
+    private void submit(String jobId, FileFormat sourceFormat, long sizeBytes,
+                        MemoryAdmissionService.Admission admission, Runnable task) {
+        try {
+            jobExecutionService.submit(jobId, JobKind.forFormat(sourceFormat), sizeBytes, admission.decided(), task);
+        } catch (JobRejectedException e) {
+            admission.withdraw();
+            throw e;
+        }
+    }
+
+    CompressionStrategy findCompressor(String extension) {
         return compressionStrategies.stream()
                 .filter(strategy -> strategy.supports(extension))
                 .findFirst()
@@ -86,7 +180,7 @@ public class FileCompressionService {
                 });
     }
 
-    private String generateCompressedFilename(String sourceFilename) {
+    String generateCompressedFilename(String sourceFilename) {
         String baseName = sourceFilename.substring(0, sourceFilename.lastIndexOf('.'));
         String extension = sourceFilename.substring(sourceFilename.lastIndexOf('.'));
         return baseName + "_compressed" + extension;
@@ -1,10 +1,13 @@
 package com.koushik.fileconverter.service;
 
 import com.koushik.fileconverter.constant.FileFormat;
+import com.koushik.fileconverter.constant.JobKind;
 import com.koushik.fileconverter.dto.request.ConversionRequestDTO;
 import com.koushik.fileconverter.dto.response.FileResponseDTO;
 import com.koushik.fileconverter.dto.response.FileResponseDTO.ProcessingStatus;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.exception.FileValidationException;
+import com.koushik.fileconverter.exception.JobRejectedException;
 import com.koushik.fileconverter.strategy.converter.ConversionStrategy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,8 +15,8 @@ import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -24,6 +27,11 @@ public class FileConversionService {
     private final StorageService storageService;
     private final ProgressTrackingService progressTrackingService;
     private final ValidationService validationService;
+    private final JobExecutionService jobExecutionService;
+    private final ResultCacheService resultCacheService;
+    private final MemoryEstimator memoryEstimator;
+    private final MemoryAdmissionService memoryAdmissionService;
+    private final JobCancellationService jobCancellationService;
 
     public FileResponseDTO convertFile(ConversionRequestDTO request) {
         String jobId = UUID.randomUUID().toString();
@@ -38,35 +46,92 @@ public class FileConversionService {
             validationService.validateConversionRequest(request);
 
             // Store original file
-            File sourceFile = storageService.storeOriginalFile(request.getFile());
-            FileFormat sourceFormat = FileFormat.fromExtension(sourceFilename);
+            // Under a directory of the job's own, so uploads of the same name never collide
+            StoredFile storedFile = storageService.storeOriginalFile(request.getFile(),
+                    jobId + "/" + sourceFilename);
+            File sourceFile = storedFile.file();
+            FileFormat sourceFormat = storedFile.format();
             
             // Find appropriate converter
             ConversionStrategy converter = findConverter(sourceFormat, targetFormat);
 
             // Generate output filename
             String targetFilename = generateTargetFilename(sourceFilename, targetFormat);
-            File targetFile = storageService.createProcessedFile(targetFilename);
-
-            // Start async conversion
-            CompletableFuture.runAsync(() -> {
-                try {
-                    converter.convert(sourceFile, targetFile, 
-                        progress -> progressTrackingService.updateProgress(jobId, progress));
-                    
-                    log.info("File conversion completed successfully. JobId: {}", jobId);
-                } catch (Exception e) {
-                    log.error("File conversion failed. JobId: {}", jobId, e);
-                    progressTrackingService.markAsFailed(jobId, e.getMessage());
-                }
-            });
+            String fileId = jobId + "/" + targetFilename;
+
+            // Serve repeated uploads straight from the result cache
+            String cacheKey = resultCacheService.conversionKey(storedFile.sha256(), targetFormat, converter);
+            Optional<File> cachedResult = resultCacheService.lookup(cacheKey, fileId);
+            if (cachedResult.isPresent()) {
+                storageService.discard(sourceFile.getParentFile());
+                progressTrackingService.markAsCompleted(jobId);
+                log.info("File conversion served from cache. JobId: {}", jobId);
+
+                return FileResponseDTO.builder()
+                        .jobId(jobId)
+                        .fileName(targetFilename)
+                        .fileId(fileId)
+                        .downloadUrl("/api/v1/download/" + fileId)
+                        .fileSize(cachedResult.get().length())
+                        .status(ProcessingStatus.COMPLETED)
+                        .build();
+            }
+
+            File targetFile = storageService.createProcessedFile(fileId);
+
+            long memoryEstimate = memoryEstimator.estimateConversion(storedFile);
+
+            // Queue conversion on the worker pool for this kind of file once its estimated
+            // memory is free, so workers never sit waiting for memory
+            progressTrackingService.markAsQueued(jobId);
+            CancellationToken cancellation = jobCancellationService.register(jobId);
+            try {
+                MemoryAdmissionService.Admission admission =
+                        memoryAdmissionService.admit(jobId, memoryEstimate, cancellation);
+                submit(jobId, sourceFormat, storedFile.size(), admission, () -> {
+                    try {
+                        MemoryAdmissionService.Reservation reservation = admission.reservation();
+                        try {
+                            converter.convert(sourceFile, targetFile,
+                                progress -> progressTrackingService.updateProgress(jobId, progress), cancellation);
+                        } finally {
+                            reservation.close();
+                        }
+
+                        if (jobCancellationService.finish(jobId)) {
+                            String notes = cancellation.notes();
+                            // A cache hit could not repeat the notes, e.g. that the image was downscaled
+                            if (notes == null) {
+                                resultCacheService.store(cacheKey, targetFile);
+                            }
+                            progressTrackingService.markAsCompleted(jobId, notes);
+                            log.info("File conversion completed successfully. JobId: {}", jobId);
+                            return;
+                        }
+                    } catch (Exception e) {
+                        if (jobCancellationService.finish(jobId)) {
+                            log.error("File conversion failed. JobId: {}", jobId, e);
+                            progressTrackingService.markAsFailed(jobId, e.getMessage());
+                            return;
+                        }
+                    }
+                    // Cancelled: whatever was written is incomplete
+                    log.info("File conversion cancelled. JobId: {}", jobId);
+                    storageService.discard(targetFile.getParentFile());
+                });
+            } catch (JobRejectedException | FileValidationException e) {
+                jobCancellationService.finish(jobId);
+                storageService.discard(sourceFile.getParentFile(), targetFile.getParentFile());
+                progressTrackingService.markAsFailed(jobId, e.getMessage());
+                throw e;
+            }
 
             return FileResponseDTO.builder()
                     .jobId(jobId)
                     .fileName(targetFilename)
-                    .fileId(targetFilename)
-                    .downloadUrl("/api/v1/download/" + targetFilename)
-                    .status(ProcessingStatus.PROCESSING)
+                    .fileId(fileId)
+                    .downloadUrl("/api/v1/download/" + fileId)
+                    .status(ProcessingStatus.QUEUED)
                     .build();
 
         } catch (Exception e) {
@@ -75,7 +140,21 @@ public class FileConversionService {
         }
     }
 
-    private ConversionStrategy findConverter(FileFormat sourceFormat, FileFormat targetFormat) {
+    /**
+     * Queues a job for a worker once its memory admission is decided, giving
+     * the admission back if the queue is full.
+     */
+    private void submit(String jobId, FileFormat sourceFormat, long sizeBytes,
+                        MemoryAdmissionService.Admission admission, Runnable task) {
+        try {
+            jobExecutionService.submit(jobId, JobKind.forFormat(sourceFormat), sizeBytes, admission.decided(), task);
+        } catch (JobRejectedException e) {
+            admission.withdraw();
+            throw e;
+        }
+    }
+
+    ConversionStrategy findConverter(FileFormat sourceFormat, FileFormat targetFormat) {
         return conversionStrategies.stream()
                 .filter(strategy -> strategy.supports(sourceFormat, targetFormat))
                 .findFirst()
@@ -86,7 +165,7 @@ public class FileConversionService {
                 });
     }
 
-    private String generateTargetFilename(String sourceFilename, FileFormat targetFormat) {
+    String generateTargetFilename(String sourceFilename, FileFormat targetFormat) {
         String baseName = sourceFilename.substring(0, sourceFilename.lastIndexOf('.'));
         return baseName + "_converted." + targetFormat.getExtension();
     }
@@ -0,0 +1,78 @@
+package com.koushik.fileconverter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cancellation tokens of queued and running jobs. A job is cancelled on
+ * request, or when every client following its progress has gone away, and is
+ * reported as cancelled right away; its worker stops at the next page or
+ * picture and removes what it had written.
+ */
+@Slf4j
+@Service
+public class JobCancellationService {
+
+    private final ProgressTrackingService progressTrackingService;
+    private final Map<String, CancellationToken> tokens = new ConcurrentHashMap<>();
+
+    private final Counter cancelledOnRequest;
+    private final Counter cancelledAbandoned;
+
+    public JobCancellationService(ProgressTrackingService progressTrackingService, MeterRegistry meterRegistry) {
+        this.progressTrackingService = progressTrackingService;
+        this.cancelledOnRequest = cancelledCounter(meterRegistry, "request");
+        this.cancelledAbandoned = cancelledCounter(meterRegistry, "abandoned");
+        progressTrackingService.onAbandoned(jobId -> cancel(jobId, cancelledAbandoned));
+    }
+
+    private static Counter cancelledCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("processing.jobs.cancelled")
+                .description("Jobs cancelled before they finished")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts tracking a job. Call {@link #finish} when it ends, however it ends.
+     */
+    public CancellationToken register(String jobId) {
+        CancellationToken token = new CancellationToken();
+        tokens.put(jobId, token);
+        return token;
+    }
+
+    /**
+     * Stops tracking a job; from now on it can no longer be cancelled.
+     *
+     * @return false if the job was cancelled first, in which case its result
+     * must be discarded
+     */
+    public boolean finish(String jobId) {
+        CancellationToken token = tokens.remove(jobId);
+        return token == null || token.finish();
+    }
+
+    /**
+     * @return false if the job is unknown or has already finished or been cancelled
+     */
+    public boolean cancel(String jobId) {
+        return cancel(jobId, cancelledOnRequest);
+    }
+
+    private boolean cancel(String jobId, Counter reason) {
+        CancellationToken token = tokens.get(jobId);
+        if (token == null || !token.cancel()) {
+            return false;
+        }
+        reason.increment();
+        progressTrackingService.markAsCancelled(jobId);
+        log.info("Cancelled job {}", jobId);
+        return true;
+    }
+}
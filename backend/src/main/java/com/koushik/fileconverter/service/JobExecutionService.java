@@ -0,0 +1,185 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import com.koushik.fileconverter.constant.JobKind;
+import com.koushik.fileconverter.exception.JobRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs conversion and compression jobs on dedicated, bounded worker pools so
+ * that processing never lands on the shared ForkJoinPool common pool.
+ */
+@Slf4j
+@Service
+public class JobExecutionService {
+
+    private final JobExecutorProperties properties;
+    private final Map<JobKind, WorkerPool> pools = new EnumMap<>(JobKind.class);
+    private final AtomicLong sequence = new AtomicLong();
+
+    public JobExecutionService(JobExecutorProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        for (JobKind kind : JobKind.values()) {
+            pools.put(kind, new WorkerPool(kind, properties.getPool(kind), meterRegistry));
+        }
+    }
+
+    /**
+     * Queues a job on the pool for its kind. Smaller inputs are scheduled first.
+     *
+     * @param jobId The job identifier, used for logging
+     * @param kind The kind of work, which selects the worker pool
+     * @param sizeBytes The input size used to prioritise the job
+     * @param task The work to run
+     * @throws JobRejectedException if the queue for this kind is full
+     */
+    public void submit(String jobId, JobKind kind, long sizeBytes, Runnable task) {
+        submit(jobId, kind, sizeBytes, CompletableFuture.completedFuture(null), task);
+    }
+
+    /**
+     * Same as {@link #submit(String, JobKind, long, Runnable)}, but the job only
+     * reaches a worker once {@code ready} completes, e.g. once its memory is
+     * reserved, so no worker waits for it. It takes a queue slot right away.
+     *
+     * @throws JobRejectedException if the queue for this kind is full
+     */
+    public void submit(String jobId, JobKind kind, long sizeBytes, CompletionStage<?> ready, Runnable task) {
+        WorkerPool pool = pools.get(kind);
+        if (!pool.tryReserveSlot()) {
+            pool.rejected.increment();
+            log.warn("Rejecting job {}: {} queue is full", jobId, kind.getTag());
+            throw JobRejectedException.queueFull(kind, pool.capacity, pool.estimateRetryAfterSeconds());
+        }
+
+        long rank = System.currentTimeMillis()
+                + sizeBytes * 1000 / Math.max(1, properties.getPriorityBytesPerSecond());
+        PrioritizedJob job = new PrioritizedJob(jobId, rank, sequence.getAndIncrement(), pool, task);
+        ready.whenComplete((result, failure) -> {
+            try {
+                pool.executor.execute(job);
+            } catch (RejectedExecutionException e) {
+                pool.queued.decrementAndGet();
+                log.warn("Dropping {} job {}: workers are shut down", kind.getTag(), jobId);
+            }
+        });
+        log.debug("Queued {} job {} ({} bytes), queue depth: {}", kind.getTag(), jobId, sizeBytes, pool.queued.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(pool -> pool.executor.shutdownNow());
+    }
+
+    private final class WorkerPool {
+        private final JobKind kind;
+        private final int capacity;
+        private final ThreadPoolExecutor executor;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Timer waitTimer;
+        private final Timer runTimer;
+        private final Counter rejected;
+
+        private WorkerPool(JobKind kind, JobExecutorProperties.Pool config, MeterRegistry meterRegistry) {
+            this.kind = kind;
+            this.capacity = config.getQueueCapacity();
+            int threads = Math.max(1, config.getThreads());
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<>(), new CustomizableThreadFactory("job-" + kind.getTag() + "-"));
+
+            String tag = kind.getTag();
+            Gauge.builder("processing.jobs.queued", queued, AtomicInteger::get)
+                    .description("Jobs waiting for a worker")
+                    .tag("kind", tag)
+                    .register(meterRegistry);
+            Gauge.builder("processing.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+                    .description("Jobs currently running")
+                    .tag("kind", tag)
+                    .register(meterRegistry);
+            this.waitTimer = Timer.builder("processing.jobs.wait")
+                    .description("Time jobs spend queued before a worker picks them up")
+                    .tag("kind", tag)
+                    .register(meterRegistry);
+            this.runTimer = Timer.builder("processing.jobs.run")
+                    .description("Time jobs spend running on a worker")
+                    .tag("kind", tag)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("processing.jobs.rejected")
+                    .description("Jobs rejected because the queue was full")
+                    .tag("kind", tag)
+                    .register(meterRegistry);
+        }
+
+        private boolean tryReserveSlot() {
+            int current;
+            do {
+                current = queued.get();
+                if (current >= capacity) {
+                    return false;
+                }
+            } while (!queued.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private long estimateRetryAfterSeconds() {
+            double meanRunSeconds = runTimer.mean(TimeUnit.SECONDS);
+            long drainSeconds = (long) Math.ceil(meanRunSeconds * queued.get() / executor.getMaximumPoolSize());
+            return Math.max(properties.getMinRetryAfterSeconds(), drainSeconds);
+        }
+    }
+
+    private static final class PrioritizedJob implements Runnable, Comparable<PrioritizedJob> {
+        private final String jobId;
+        private final long rank;
+        private final long sequence;
+        private final WorkerPool pool;
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        private PrioritizedJob(String jobId, long rank, long sequence, WorkerPool pool, Runnable task) {
+            this.jobId = jobId;
+            this.rank = rank;
+            this.sequence = sequence;
+            this.pool = pool;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            pool.queued.decrementAndGet();
+            long startedAt = System.nanoTime();
+            pool.waitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Unhandled error in {} job {}", pool.kind.getTag(), jobId, e);
+            } finally {
+                pool.runTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedJob other) {
+            int byRank = Long.compare(rank, other.rank);
+            return byRank != 0 ? byRank : Long.compare(sequence, other.sequence);
+        }
+    }
+}
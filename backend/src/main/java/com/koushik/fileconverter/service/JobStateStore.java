@@ -0,0 +1,149 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.ProgressTrackingProperties;
+import com.koushik.fileconverter.dto.response.FileResponseDTO.ProcessingStatus;
+import com.koushik.fileconverter.dto.response.ProgressResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Latest known state of each job, bounded in both size and age. Finished jobs
+ * expire after {@code terminalTtl}, unfinished ones after {@code staleTtl}
+ * without an update, and the oldest entries are evicted once {@code maxJobs}
+ * is exceeded.
+ */
+@Slf4j
+@Component
+public class JobStateStore {
+
+    // Evict down to this fraction of maxJobs, so overflow is handled in batches
+    private static final double LOW_WATER_MARK = 0.9;
+
+    private static final Comparator<Entry> EVICTION_ORDER = Comparator
+            .comparing((Entry entry) -> !entry.isTerminal())
+            .thenComparingLong(Entry::updatedAt);
+
+    private final ProgressTrackingProperties properties;
+    private final Map<String, Entry> jobs = new ConcurrentHashMap<>();
+
+    private final Counter expired;
+    private final Counter overflowed;
+
+    public JobStateStore(ProgressTrackingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.expired = Counter.builder("processing.progress.evictions")
+                .description("Job states dropped from the progress store")
+                .tag("reason", "expired")
+                .register(meterRegistry);
+        this.overflowed = Counter.builder("processing.progress.evictions")
+                .description("Job states dropped from the progress store")
+                .tag("reason", "overflow")
+                .register(meterRegistry);
+        Gauge.builder("processing.progress.jobs", jobs, Map::size)
+                .description("Jobs whose progress is currently tracked")
+                .register(meterRegistry);
+    }
+
+    public ProgressResponseDTO get(String jobId) {
+        Entry entry = jobs.get(jobId);
+        return entry != null ? entry.state() : null;
+    }
+
+    public boolean contains(String jobId) {
+        return jobs.containsKey(jobId);
+    }
+
+    public void put(String jobId, ProgressResponseDTO state) {
+        Entry previous = jobs.put(jobId, new Entry(state, System.currentTimeMillis()));
+        if (previous == null && jobs.size() > properties.getMaxJobs()) {
+            evictOverflow();
+        }
+    }
+
+    /**
+     * Stores {@code state} unless the job has already finished. Checked and
+     * stored atomically, so a progress update racing the job's completion
+     * cannot replace its final state.
+     *
+     * @return true if the state was stored
+     */
+    public boolean putIfUnfinished(String jobId, ProgressResponseDTO state) {
+        long now = System.currentTimeMillis();
+        AtomicBoolean stored = new AtomicBoolean();
+        AtomicBoolean added = new AtomicBoolean();
+        jobs.compute(jobId, (id, previous) -> {
+            if (previous != null && previous.isTerminal()) {
+                return previous;
+            }
+            stored.set(true);
+            added.set(previous == null);
+            return new Entry(state, now);
+        });
+        if (added.get() && jobs.size() > properties.getMaxJobs()) {
+            evictOverflow();
+        }
+        return stored.get();
+    }
+
+    /**
+     * Drops expired job states.
+     */
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long terminalCutoff = now - properties.getTerminalTtl().toMillis();
+        long staleCutoff = now - properties.getStaleTtl().toMillis();
+        int removed = 0;
+        for (Map.Entry<String, Entry> job : jobs.entrySet()) {
+            Entry entry = job.getValue();
+            long cutoff = entry.isTerminal() ? terminalCutoff : staleCutoff;
+            if (entry.updatedAt() < cutoff && jobs.remove(job.getKey(), entry)) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            expired.increment(removed);
+            log.debug("Expired {} job states, {} remaining", removed, jobs.size());
+        }
+    }
+
+    public int size() {
+        return jobs.size();
+    }
+
+    private synchronized void evictOverflow() {
+        int target = (int) (properties.getMaxJobs() * LOW_WATER_MARK);
+        if (jobs.size() <= properties.getMaxJobs()) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> candidates = new ArrayList<>(jobs.entrySet());
+        candidates.sort(Map.Entry.comparingByValue(EVICTION_ORDER));
+        int removed = 0;
+        for (Map.Entry<String, Entry> job : candidates) {
+            if (jobs.size() <= target) {
+                break;
+            }
+            if (jobs.remove(job.getKey(), job.getValue())) {
+                removed++;
+            }
+        }
+        overflowed.increment(removed);
+        log.warn("Progress store exceeded {} jobs, evicted {}", properties.getMaxJobs(), removed);
+    }
+
+    private record Entry(ProgressResponseDTO state, long updatedAt) {
+        private boolean isTerminal() {
+            return state.getStatus() == ProcessingStatus.COMPLETED || state.getStatus() == ProcessingStatus.FAILED
+                    || state.getStatus() == ProcessingStatus.CANCELLED;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.MemoryAdmissionProperties;
+import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.exception.FileValidationException;
+import com.koushik.fileconverter.exception.JobRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the estimated memory of admitted jobs within a global budget. A job
+ * asks for its estimate before it is queued for a worker and is granted it,
+ * in arrival order, once enough of the budget is free, so no worker sits
+ * waiting for memory; jobs that could never fit are rejected up front.
+ */
+@Slf4j
+@Service
+public class MemoryAdmissionService {
+
+    private final long budgetBytes;
+    private final int budgetKb;
+    private final long maxWaitNanos;
+    private final ScheduledThreadPoolExecutor timeouts;
+
+    // Guards availableKb and waiting
+    private final Object lock = new Object();
+    private int availableKb;
+    private final Deque<Admission> waiting = new ArrayDeque<>();
+    // Copies of the above for the gauges, updated under the lock
+    private final AtomicInteger reservedKb = new AtomicInteger();
+    private final AtomicInteger waitingJobs = new AtomicInteger();
+
+    private final DistributionSummary estimates;
+    private final Timer waitTimer;
+    private final Counter rejectedTooLarge;
+    private final Counter rejectedTimeout;
+
+    public MemoryAdmissionService(MemoryAdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.budgetBytes = properties.getBudgetBytes();
+        this.budgetKb = (int) Math.min(Integer.MAX_VALUE, budgetBytes / 1024);
+        this.maxWaitNanos = properties.getMaxWait().toNanos();
+        this.availableKb = budgetKb;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("memory-admission-");
+        threadFactory.setDaemon(true);
+        this.timeouts = new ScheduledThreadPoolExecutor(1, threadFactory);
+        timeouts.setRemoveOnCancelPolicy(true);
+        log.info("Job memory budget: {} MB", budgetBytes / (1024 * 1024));
+
+        Gauge.builder("processing.memory.budget", () -> budgetBytes)
+                .description("Heap shared by running jobs")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("processing.memory.reserved", reservedKb, kb -> kb.get() * 1024.0)
+                .description("Estimated heap reserved by admitted jobs")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("processing.memory.waiting", waitingJobs, AtomicInteger::get)
+                .description("Jobs waiting for memory")
+                .register(meterRegistry);
+        this.estimates = DistributionSummary.builder("processing.memory.estimate")
+                .description("Estimated heap per job")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("processing.memory.wait")
+                .description("Time jobs wait for memory before starting")
+                .register(meterRegistry);
+        this.rejectedTooLarge = rejectedCounter(meterRegistry, "too-large");
+        this.rejectedTimeout = rejectedCounter(meterRegistry, "timeout");
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("processing.memory.rejected")
+                .description("Jobs rejected for lack of memory")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeouts.shutdownNow();
+    }
+
+    /**
+     * Rejects a job whose estimate exceeds the whole budget, so it fails at
+     * submission rather than after queueing.
+     *
+     * @throws FileValidationException if the job could never be admitted
+     */
+    public void checkAdmissible(long estimatedBytes) {
+        if (estimatedBytes > budgetBytes) {
+            rejectedTooLarge.increment();
+            throw FileValidationException.exceedsMemoryBudget(estimatedBytes, budgetBytes);
+        }
+    }
+
+    /**
+     * Asks for the estimate without waiting for it. The returned admission is
+     * decided once the memory is reserved, the wait times out or the job is
+     * cancelled; queue the job for a worker only then, so its worker takes
+     * the reservation without waiting.
+     *
+     * @throws FileValidationException if the job could never be admitted
+     */
+    public Admission admit(String jobId, long estimatedBytes, CancellationToken cancellation) {
+        checkAdmissible(estimatedBytes);
+        estimates.record(estimatedBytes);
+        Admission admission = new Admission(jobId, (int) Math.max(1, (estimatedBytes + 1023) / 1024));
+        synchronized (lock) {
+            // Only when nobody is waiting, so a large job at the head is not overtaken by a stream of small ones
+            if (waiting.isEmpty() && availableKb >= admission.kb) {
+                availableKb -= admission.kb;
+                updateGauges();
+                admission.grant();
+                return admission;
+            }
+            waiting.add(admission);
+            updateGauges();
+        }
+        ScheduledFuture<?> timeout = timeouts.schedule(admission::timeOut, maxWaitNanos, TimeUnit.NANOSECONDS);
+        CancellationToken.Registration onCancel = cancellation.onCancel(() -> admission.result.completeExceptionally(
+                new CancellationException("Job " + jobId + " was cancelled while waiting for memory")));
+        admission.result.whenComplete((reservation, failure) -> {
+            timeout.cancel(false);
+            onCancel.close();
+            if (failure != null) {
+                withdrawWaiting(admission);
+            }
+        });
+        return admission;
+    }
+
+    /**
+     * Blocks until the estimate can be reserved, for callers already running
+     * on a worker of their own. Close the returned reservation when the job
+     * is done to release it.
+     *
+     * @throws FileValidationException if the job could never be admitted
+     * @throws JobRejectedException if the memory did not free up in time
+     * @throws CancellationException if the job is cancelled while waiting
+     */
+    public Reservation reserve(String jobId, long estimatedBytes, CancellationToken cancellation) {
+        Admission admission = admit(jobId, estimatedBytes, cancellation);
+        try {
+            admission.result.get();
+        } catch (InterruptedException e) {
+            admission.withdraw();
+            Thread.currentThread().interrupt();
+            throw new FileProcessingException("Interrupted while waiting for memory");
+        } catch (ExecutionException e) {
+            // Rethrown below
+        }
+        return admission.reservation();
+    }
+
+    private void updateGauges() {
+        reservedKb.set(budgetKb - availableKb);
+        waitingJobs.set(waiting.size());
+    }
+
+    private void withdrawWaiting(Admission admission) {
+        boolean wasWaiting;
+        synchronized (lock) {
+            wasWaiting = waiting.remove(admission);
+            updateGauges();
+        }
+        if (wasWaiting) {
+            // It may have held back smaller jobs behind it
+            grantWaiting();
+        }
+    }
+
+    private void release(int kb) {
+        synchronized (lock) {
+            availableKb += kb;
+            updateGauges();
+        }
+        grantWaiting();
+    }
+
+    /**
+     * Grants waiting jobs in arrival order for as long as the head fits.
+     * Completing an admission runs whatever waits on it, so that happens
+     * outside the lock.
+     */
+    private void grantWaiting() {
+        List<Admission> granted = new ArrayList<>();
+        synchronized (lock) {
+            Admission head;
+            while ((head = waiting.peek()) != null && availableKb >= head.kb) {
+                waiting.poll();
+                availableKb -= head.kb;
+                granted.add(head);
+            }
+            updateGauges();
+        }
+        granted.forEach(Admission::grant);
+    }
+
+    /**
+     * A job's request for memory, decided once it is granted, times out or
+     * the job is cancelled.
+     */
+    public final class Admission {
+        private final String jobId;
+        private final int kb;
+        private final long requestedAt = System.nanoTime();
+        private final CompletableFuture<Reservation> result = new CompletableFuture<>();
+
+        private Admission(String jobId, int kb) {
+            this.jobId = jobId;
+            this.kb = kb;
+        }
+
+        /**
+         * Completes once the admission is decided, whether granted or not.
+         */
+        public CompletionStage<?> decided() {
+            return result.handle((reservation, failure) -> null);
+        }
+
+        /**
+         * The granted reservation, waiting for the decision if there is none
+         * yet. Close it when the job is done to release the memory.
+         *
+         * @throws JobRejectedException if the memory did not free up in time
+         * @throws CancellationException if the job was cancelled while waiting
+         */
+        public Reservation reservation() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Gives up the admission of a job that will not run, releasing the
+         * memory if it was already granted.
+         */
+        public void withdraw() {
+            result.cancel(false);
+            result.thenAccept(Reservation::close);
+        }
+
+        private void grant() {
+            waitTimer.record(System.nanoTime() - requestedAt, TimeUnit.NANOSECONDS);
+            if (!result.complete(new Reservation(kb))) {
+                // Withdrawn or cancelled just before
+                release(kb);
+                return;
+            }
+            log.debug("Job {} reserved {} KB", jobId, kb);
+        }
+
+        private void timeOut() {
+            if (result.completeExceptionally(
+                    JobRejectedException.memoryBusy(TimeUnit.NANOSECONDS.toSeconds(maxWaitNanos)))) {
+                rejectedTimeout.increment();
+                log.warn("Job {} timed out waiting for {} KB of memory", jobId, kb);
+            }
+        }
+    }
+
+    public final class Reservation implements AutoCloseable {
+        private final AtomicInteger kb;
+
+        private Reservation(int kb) {
+            this.kb = new AtomicInteger(kb);
+        }
+
+        @Override
+        public void close() {
+            int released = kb.getAndSet(0);
+            if (released > 0) {
+                release(released);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.DocxProcessingProperties;
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.config.PdfProcessingProperties;
+import com.koushik.fileconverter.constant.FileFormat;
+import com.koushik.fileconverter.strategy.image.ImageDecoder;
+import com.koushik.fileconverter.strategy.image.ImageSource;
+import com.koushik.fileconverter.strategy.pdf.PdfDocumentLoader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Estimates the peak heap a job will need from its input, reading only
+ * headers: image dimensions, PDF page count and page size, and the unpacked
+ * size and pictures of a DOCX. The figures are deliberately rough; they only
+ * need to keep concurrent large jobs from overcommitting the heap.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemoryEstimator {
+
+    private static final long MIN_ESTIMATE = 4L * 1024 * 1024;
+
+    // Parsed PDF objects and POI's XML beans take several times their size on disk
+    private static final int PDF_OBJECT_FACTOR = 2;
+    private static final int DOCX_XML_FACTOR = 4;
+    // Text and layout of one page, or one page of the document being built
+    private static final long PER_PAGE_BYTES = 64 * 1024;
+    private static final String DOCX_MEDIA_PREFIX = "word/media/";
+
+    private final PdfProcessingProperties pdfProperties;
+    private final ImageProcessingProperties imageProperties;
+    private final DocxProcessingProperties docxProperties;
+    private final ImageDecoder imageDecoder;
+    private final PdfDocumentLoader pdfDocumentLoader;
+
+    public long estimateConversion(StoredFile source) {
+        return estimate(source, false);
+    }
+
+    public long estimateCompression(StoredFile source) {
+        return estimate(source, true);
+    }
+
+    private long estimate(StoredFile source, boolean compression) {
+        long estimate;
+        try {
+            estimate = switch (source.format()) {
+                // JPEG output, as compression and PNG to JPG conversion write, needs the whole image
+                case JPG, PNG -> estimateImage(source, compression || source.format() == FileFormat.PNG);
+                case PDF -> estimatePdf(source, compression);
+                case DOCX -> estimateDocx(source, compression);
+            };
+        } catch (IOException | RuntimeException e) {
+            // The job itself will report an unreadable file; just be conservative here
+            log.debug("Could not inspect {} for a memory estimate", source.file().getName(), e);
+            estimate = source.size() * DOCX_XML_FACTOR;
+        }
+        return Math.max(MIN_ESTIMATE, estimate);
+    }
+
+    private long estimateImage(StoredFile source, boolean jpegOutput) throws IOException {
+        try (ImageSource image = imageDecoder.open(source.file())) {
+            // Striped and subsampled decoding stay within the decode budget, see ImageSource
+            long decoded = image.getDecodedSize();
+            if (!jpegOutput || imageProperties.isSubsampleOversized()) {
+                decoded = Math.min(decoded, imageProperties.getDecodeBudget().toBytes());
+            }
+            return decoded + decoded / 4;
+        }
+    }
+
+    private long estimatePdf(StoredFile source, boolean compression) throws IOException {
+        try (PDDocument document = pdfDocumentLoader.load(source.file())) {
+            int pages = document.getNumberOfPages();
+            // Conversion streams text out a page at a time; compression builds a new document
+            long estimate = source.size() * PDF_OBJECT_FACTOR
+                    + (compression ? pages : 1) * PER_PAGE_BYTES;
+            if (!compression && pages >= pdfProperties.getParallelTextThreshold()) {
+                // Each extraction worker beyond the first opens its own handle and holds
+                // up to two ranges of extracted text
+                int chunkPages = Math.max(1, pdfProperties.getTextChunkPages());
+                int workers = Math.max(1, Math.min(pdfProperties.getTextParallelism(), Math.ceilDiv(pages, chunkPages)));
+                estimate += (workers - 1) * source.size() * PDF_OBJECT_FACTOR
+                        + 2L * workers * chunkPages * PER_PAGE_BYTES;
+            }
+            if (compression && pages > 0) {
+                // Each render worker holds its own document handle and one page raster,
+                // and finished pages wait as JPEGs until it is their turn
+                PDRectangle box = document.getPage(0).getMediaBox();
+                float scale = pdfProperties.getRenderDpi() / 72f;
+                long raster = (long) (box.getWidth() * scale) * (long) (box.getHeight() * scale) * 3;
+                int workers = Math.min(pages, Math.max(1, pdfProperties.getRenderParallelism()));
+                long rasterizing = workers * (source.size() + raster)
+                        + Math.min(pages, pdfProperties.getMaxPagesInFlight()) * raster / 8;
+                // Optimizing instead decodes one picture at a time, at most the page's size
+                // at the picture resolution cap, and keeps every object of the document
+                long side = (long) (Math.max(box.getWidth(), box.getHeight()) / 72f * pdfProperties.getMaxImageDpi());
+                long optimizing = source.size() * PDF_OBJECT_FACTOR + side * side * 4;
+                estimate += Math.max(rasterizing, optimizing);
+            }
+            return estimate;
+        }
+    }
+
+    private long estimateDocx(StoredFile source, boolean compression) throws IOException {
+        if (!compression) {
+            // Conversion streams the body text and lays out one page at a time
+            return PER_PAGE_BYTES;
+        }
+        long unpacked = 0;
+        long largestPicture = 0;
+        int pictures = 0;
+        try (ZipFile zip = new ZipFile(source.file())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                unpacked += Math.max(0, entry.getSize());
+                if (entry.getName().startsWith(DOCX_MEDIA_PREFIX)) {
+                    largestPicture = Math.max(largestPicture, decodedSize(zip, entry));
+                    pictures++;
+                }
+            }
+        }
+        // Compression rewrites the package without loading its XML, unless it has
+        // to fall back to POI; several pictures are decoded at once either way
+        long model = docxProperties.isRawPackageRewrite() ? 0 : unpacked * DOCX_XML_FACTOR;
+        return model
+                + largestPicture * Math.min(pictures, Math.max(1, docxProperties.getMaxPicturesInFlight()));
+    }
+
+    private static long decodedSize(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream in = zip.getInputStream(entry);
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return 0;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0) * 4;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.koushik.fileconverter.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Produces the parts of one job on the {@link FanOutExecutor}, to be taken in
+ * order. Each worker pulls the next part index and produces it with a handle
+ * of its own, such as an open document; at most {@code maxAhead} parts are
+ * held ahead of the one being taken. A part that fails, a worker that cannot
+ * be set up, or a job found cancelled stops the other workers and fails every
+ * part not yet produced, so {@link #take} rethrows the failure instead of
+ * waiting. Parts produced but never taken are handed to {@code release}.
+ *
+ * @param <H> Handle a worker reads its parts from, closed when the worker ends
+ * @param <T> Produced part
+ */
+@Slf4j
+public final class OrderedFanOut<H extends AutoCloseable, T> {
+
+    /**
+     * Produces parts from one handle. Returned once per worker, so it may keep
+     * state of its own, such as a renderer for the handle.
+     */
+    @FunctionalInterface
+    public interface Worker<T> {
+        T produce(int index) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface HandleOpener<H> {
+        H open() throws IOException;
+    }
+
+    private final FanOutExecutor executor;
+    private final String name;
+    private final int count;
+    private final int parallelism;
+    private final CancellationToken cancellation;
+    private final Consumer<? super T> release;
+    private final Semaphore inFlight;
+    private final AtomicInteger next = new AtomicInteger();
+    private final List<CompletableFuture<T>> parts;
+    private final List<Future<?>> workers = new ArrayList<>();
+    private volatile boolean aborted;
+
+    /**
+     * @param name        Named in log and error messages, e.g. the source file
+     * @param count       Number of parts, indexed from 0
+     * @param parallelism Number of workers, each with its own handle
+     * @param maxAhead    Parts produced but not yet taken, at most
+     * @param release     Frees a part that is never taken, e.g. returns its buffer to the pool
+     */
+    public OrderedFanOut(FanOutExecutor executor, String name, int count, int parallelism, int maxAhead,
+                         CancellationToken cancellation, Consumer<? super T> release) {
+        this.executor = executor;
+        this.name = name;
+        this.count = count;
+        this.parallelism = Math.max(1, Math.min(parallelism, count));
+        this.cancellation = cancellation;
+        this.release = release;
+        this.inFlight = new Semaphore(Math.max(1, maxAhead));
+        this.parts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            parts.add(new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * The first worker reads from {@code shared}, which the caller keeps open
+     * until {@link #finish}; the others open their own handle.
+     */
+    public void start(H shared, HandleOpener<H> opener, Function<H, Worker<T>> workerFactory) {
+        workers.add(executor.submit(() -> produce(shared, workerFactory)));
+        for (int w = 1; w < parallelism; w++) {
+            workers.add(executor.submit(() -> produceWithOwnHandle(opener, workerFactory)));
+        }
+    }
+
+    /**
+     * Waits for part {@code index}, handing it over to the caller.
+     */
+    public T take(int index) throws IOException {
+        try {
+            T part = parts.get(index).get();
+            parts.set(index, null);
+            inFlight.release();
+            return part;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for part " + (index + 1) + " of " + name);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * True once the job was cancelled or a part failed, for workers to check
+     * while producing a long part.
+     */
+    public boolean isStopped() {
+        return aborted || cancellation.isCancelled();
+    }
+
+    /**
+     * Stops the workers and waits for them, so the shared handle is not
+     * closed while still being read, then releases the parts produced but
+     * not taken.
+     */
+    public void finish() {
+        aborted = true;
+        inFlight.release(count);
+        boolean interrupted = false;
+        for (Future<?> worker : workers) {
+            while (true) {
+                try {
+                    worker.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<T> part = parts.get(i);
+            if (part != null && part.isDone() && !part.isCompletedExceptionally()) {
+                parts.set(i, null);
+                releaseQuietly(part.join());
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void produceWithOwnHandle(HandleOpener<H> opener, Function<H, Worker<T>> workerFactory) {
+        H handle;
+        try {
+            handle = opener.open();
+        } catch (IOException e) {
+            // The remaining workers pick up the parts this one would have produced
+            log.warn("Failed to open additional handle for {}", name, e);
+            return;
+        }
+        try (handle) {
+            produce(handle, workerFactory);
+        } catch (Exception e) {
+            log.warn("Failed to close additional handle for {}", name, e);
+        }
+    }
+
+    private void produce(H handle, Function<H, Worker<T>> workerFactory) {
+        Worker<T> worker;
+        try {
+            worker = workerFactory.apply(handle);
+        } catch (Throwable t) {
+            abort(t);
+            return;
+        }
+        while (!aborted) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort(new InterruptedIOException("Interrupted while producing parts of " + name));
+                return;
+            }
+            int index = next.getAndIncrement();
+            if (index >= count || aborted) {
+                inFlight.release();
+                return;
+            }
+            T part;
+            try {
+                cancellation.throwIfCancelled();
+                part = worker.produce(index);
+            } catch (Throwable t) {
+                abort(t);
+                return;
+            }
+            if (!parts.get(index).complete(part)) {
+                // Failed by another worker's abort meanwhile
+                releaseQuietly(part);
+            }
+        }
+    }
+
+    /**
+     * Stops all workers and fails every part not produced yet, so the caller
+     * never waits for a part no worker will produce.
+     */
+    private void abort(Throwable failure) {
+        aborted = true;
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<T> part = parts.get(i);
+            if (part != null) {
+                part.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void releaseQuietly(T part) {
+        try {
+            release.accept(part);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release a part of {}", name, e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.koushik.fileconverter.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A growable byte buffer whose backing arrays come from a {@link BufferPool}.
+ * Not thread-safe. Close it to return the array to the pool; the array must
+ * not be used afterwards.
+ */
+public final class PooledBytes implements AutoCloseable {
+
+    private final BufferPool pool;
+    private byte[] array;
+    private int length;
+
+    PooledBytes(BufferPool pool, int initialCapacity) {
+        this.pool = pool;
+        this.array = pool.acquire(initialCapacity);
+    }
+
+    /**
+     * The backing array; only the first {@link #length()} bytes are content.
+     */
+    public byte[] array() {
+        return array;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Writes bytes at {@code position}, growing the buffer as needed; the
+     * content length grows to cover them.
+     */
+    public void write(long position, byte[] bytes, int offset, int count) {
+        int end = Math.toIntExact(position + count);
+        ensureCapacity(end);
+        System.arraycopy(bytes, offset, array, (int) position, count);
+        length = Math.max(length, end);
+    }
+
+    public void write(long position, int b) {
+        int end = Math.toIntExact(position + 1);
+        ensureCapacity(end);
+        array[(int) position] = (byte) b;
+        length = Math.max(length, end);
+    }
+
+    /**
+     * Reads the whole stream into this buffer, after any existing content.
+     */
+    public PooledBytes readFrom(InputStream in) throws IOException {
+        while (true) {
+            ensureCapacity(length + 1);
+            int read = in.read(array, length, array.length - length);
+            if (read < 0) {
+                return this;
+            }
+            length += read;
+        }
+    }
+
+    /**
+     * A stream that appends to this buffer.
+     */
+    public OutputStream outputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                PooledBytes.this.write(length, b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int count) {
+                PooledBytes.this.write(length, bytes, offset, count);
+            }
+        };
+    }
+
+    public InputStream inputStream() {
+        return new ByteArrayInputStream(array, 0, length);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(array, 0, length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > array.length) {
+            byte[] grown = pool.acquire(Math.max(capacity, array.length * 2));
+            System.arraycopy(array, 0, grown, 0, length);
+            pool.release(array);
+            array = grown;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (array != null) {
+            pool.release(array);
+            array = null;
+            length = 0;
+        }
+    }
+}
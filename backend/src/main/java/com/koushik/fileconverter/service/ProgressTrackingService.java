@@ -1,55 +1,197 @@
 package com.koushik.fileconverter.service;
 
+import com.koushik.fileconverter.config.ProgressTrackingProperties;
 import com.koushik.fileconverter.dto.response.ProgressResponseDTO;
 import com.koushik.fileconverter.dto.response.ProgressResponseDTO.ErrorDetails;
 import com.koushik.fileconverter.dto.response.FileResponseDTO.ProcessingStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+/**
+ * Tracks job progress and pushes it to SSE subscribers. Workers never send
+ * events themselves: progress updates are coalesced per job, keeping only the
+ * latest value, and a single dispatcher thread publishes them at most
+ * {@code maxUpdatesPerSecond} times per job. State changes (queued, completed,
+ * failed) are recorded immediately and dispatched without delay.
+ * <p>
+ * A job can have any number of subscribers. Each one has a small bounded
+ * buffer drained by a small pool of sender threads, so a slow client only
+ * delays itself; one that falls a full buffer behind, or whose send stalls
+ * longer than {@code sendTimeout}, is disconnected. When the last
+ * subscriber of an unfinished job leaves and none returns within the grace
+ * period, the job is reported as abandoned.
+ */
 @Slf4j
 @Service
 public class ProgressTrackingService {
 
-    private final Map<String, SseEmitter> emitters = new ConcurrentHashMap<>();
-    private final Map<String, ProgressResponseDTO> progressCache = new ConcurrentHashMap<>();
+    // Copy-on-write sets, so broadcasting iterates a snapshot without locking
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final JobStateStore progressCache;
+    private final long minIntervalNanos;
+    private final int subscriberBufferSize;
+    private final long abandonGraceNanos;
+    private final long sendTimeoutNanos;
+    private volatile Consumer<String> abandonedListener = jobId -> {
+    };
+    private final ExecutorService sender;
 
+    private final Map<String, PendingProgress> pendingProgress = new ConcurrentHashMap<>();
+    private final DelayQueue<Dispatch> dispatchQueue = new DelayQueue<>();
+    private final Thread dispatcher;
+
+    private final Counter published;
+    private final Counter coalesced;
+    private final Counter droppedSubscribers;
+
+    public ProgressTrackingService(JobStateStore progressCache, ProgressTrackingProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.progressCache = progressCache;
+        this.minIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, properties.getMaxUpdatesPerSecond());
+        this.subscriberBufferSize = Math.max(1, properties.getSubscriberBufferSize());
+        this.abandonGraceNanos = properties.isCancelAbandonedJobs() ? properties.getAbandonGracePeriod().toNanos() : -1;
+        this.sendTimeoutNanos = properties.getSendTimeout().toNanos();
+        this.dispatcher = new CustomizableThreadFactory("progress-dispatcher-").newThread(this::dispatchLoop);
+        CustomizableThreadFactory senderThreads = new CustomizableThreadFactory("progress-sender-");
+        senderThreads.setDaemon(true);
+        this.sender = Executors.newFixedThreadPool(Math.max(1, properties.getSenderThreads()), senderThreads);
+
+        this.published = Counter.builder("processing.progress.updates")
+                .description("Progress updates reported by jobs")
+                .tag("result", "published")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("processing.progress.updates")
+                .description("Progress updates reported by jobs")
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+        this.droppedSubscribers = Counter.builder("processing.progress.subscribers.dropped")
+                .description("Progress subscribers disconnected for falling too far behind or stalling")
+                .register(meterRegistry);
+        Gauge.builder("processing.progress.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open progress event streams")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void startDispatcher() {
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stopDispatcher() {
+        dispatcher.interrupt();
+        sender.shutdownNow();
+    }
+
+    /**
+     * Opens an event stream for a job. The job's current state is replayed
+     * first, followed by every later update.
+     */
     public SseEmitter subscribeToProgress(String jobId) {
-        SseEmitter emitter = new SseEmitter(Long.MAX_VALUE); // No timeout
-        emitters.put(jobId, emitter);
+        return subscribe(jobId, new SseEmitter(Long.MAX_VALUE)); // No timeout
+    }
 
-        // Send initial progress if available
-        ProgressResponseDTO initialProgress = progressCache.get(jobId);
-        if (initialProgress != null) {
-            try {
-                emitter.send(SseEmitter.event().name("progress").data(initialProgress));
-            } catch (IOException e) {
-                log.error("Failed to send initial progress for jobId: {}", jobId, e);
-            }
-        }
+    SseEmitter subscribe(String jobId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(jobId, emitter);
 
-        emitter.onCompletion(() -> emitters.remove(jobId));
-        emitter.onTimeout(() -> emitters.remove(jobId));
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
         emitter.onError(e -> {
             log.error("Error in SseEmitter for jobId: {}", jobId, e);
-            emitters.remove(jobId);
+            subscriber.close();
+        });
+
+        subscribers.compute(jobId, (id, jobSubscribers) -> {
+            Set<Subscriber> updated = jobSubscribers != null ? jobSubscribers : new CopyOnWriteArraySet<>();
+            updated.add(subscriber);
+            return updated;
         });
+        subscriberCount.incrementAndGet();
+
+        // Replay on the dispatcher, so the replayed state is never older than
+        // an update the subscriber has already been sent
+        dispatchQueue.put(new Dispatch(System.nanoTime(), () -> {
+            ProgressResponseDTO current = progressCache.get(jobId);
+            if (current != null) {
+                subscriber.offer(current);
+            }
+        }));
 
         return emitter;
     }
 
+    /**
+     * Sets the callback told about jobs whose subscribers have all gone away.
+     * It runs on the dispatcher thread and must not block.
+     */
+    public void onAbandoned(Consumer<String> listener) {
+        this.abandonedListener = listener;
+    }
+
+    public void markAsQueued(String jobId) {
+        ProgressResponseDTO progressDTO = ProgressResponseDTO.builder()
+                .jobId(jobId)
+                .progress(0)
+                .status(ProcessingStatus.QUEUED)
+                .build();
+        publishNow(jobId, progressDTO);
+    }
+
+    /**
+     * Records a job's progress. Cheap enough to call from a worker for every
+     * page or image: the event is sent later by the dispatcher, and updates
+     * arriving faster than the configured rate replace each other.
+     */
     public void updateProgress(String jobId, int progress) {
+        PendingProgress pending = pendingProgress.get(jobId);
+        if (pending == null) {
+            pending = pendingProgress.computeIfAbsent(jobId, PendingProgress::new);
+        }
+        if (!pending.offer(progress)) {
+            coalesced.increment();
+        }
+    }
+
+    public void markAsCompleted(String jobId) {
+        markAsCompleted(jobId, null);
+    }
+
+    /**
+     * @param message Optional note for the client, e.g. about parts of a batch that failed
+     */
+    public void markAsCompleted(String jobId, String message) {
         ProgressResponseDTO progressDTO = ProgressResponseDTO.builder()
                 .jobId(jobId)
-                .progress(progress)
-                .status(ProcessingStatus.PROCESSING)
+                .progress(100)
+                .message(message)
+                .status(ProcessingStatus.COMPLETED)
                 .build();
-        progressCache.put(jobId, progressDTO);
-        sendProgressUpdate(jobId, progressDTO);
+        publishNow(jobId, progressDTO);
     }
 
     public void markAsFailed(String jobId, String errorMessage) {
@@ -63,27 +205,302 @@ public class ProgressTrackingService {
                         .details(errorMessage)
                         .build())
                 .build();
-        progressCache.put(jobId, progressDTO);
-        sendProgressUpdate(jobId, progressDTO);
+        publishNow(jobId, progressDTO);
+    }
+
+    public void markAsCancelled(String jobId) {
+        ProgressResponseDTO current = progressCache.get(jobId);
+        ProgressResponseDTO progressDTO = ProgressResponseDTO.builder()
+                .jobId(jobId)
+                .progress(current != null ? current.getProgress() : 0)
+                .message("Job was cancelled")
+                .status(ProcessingStatus.CANCELLED)
+                .build();
+        publishNow(jobId, progressDTO);
     }
 
     public ProgressResponseDTO getProgress(String jobId) {
         return progressCache.get(jobId);
     }
 
+    /**
+     * Expires old job states and closes subscriptions that can no longer receive
+     * a final event: the job's state is gone, or it finished without the
+     * subscriber being completed.
+     */
+    public void sweep() {
+        progressCache.sweep();
+        pendingProgress.forEach((jobId, pending) -> {
+            if (!progressCache.contains(jobId)) {
+                pending.close();
+            }
+        });
+        subscribers.forEach((jobId, jobSubscribers) -> {
+            ProgressResponseDTO progress = progressCache.get(jobId);
+            if (progress == null || isTerminal(progress)) {
+                log.debug("Closing orphaned progress subscriptions for jobId: {}", jobId);
+                jobSubscribers.forEach(Subscriber::complete);
+            }
+        });
+    }
+
+    private static boolean isTerminal(ProgressResponseDTO progress) {
+        return progress.getStatus() == ProcessingStatus.COMPLETED || progress.getStatus() == ProcessingStatus.FAILED
+                || progress.getStatus() == ProcessingStatus.CANCELLED;
+    }
+
+    /**
+     * Reports the job as abandoned if it is still unfinished and nobody has
+     * subscribed again once the grace period is over.
+     */
+    private void scheduleAbandonCheck(String jobId) {
+        if (abandonGraceNanos < 0) {
+            return;
+        }
+        dispatchQueue.put(new Dispatch(System.nanoTime() + abandonGraceNanos, () -> {
+            ProgressResponseDTO current = progressCache.get(jobId);
+            if (current != null && !isTerminal(current) && !subscribers.containsKey(jobId)) {
+                log.info("All progress subscribers of jobId {} have disconnected", jobId);
+                abandonedListener.accept(jobId);
+            }
+        }));
+    }
+
+    /**
+     * Records a state change right away, so status queries see it as soon as the
+     * caller returns, and drops any progress still waiting to be sent for the job.
+     */
+    private void publishNow(String jobId, ProgressResponseDTO progressDTO) {
+        PendingProgress pending = pendingProgress.get(jobId);
+        if (pending != null) {
+            pending.close();
+        }
+        progressCache.put(jobId, progressDTO);
+        dispatchQueue.put(new Dispatch(System.nanoTime(), () -> sendProgressUpdate(jobId, progressDTO)));
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                dispatchQueue.take().task().run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Failed to dispatch progress update", e);
+            }
+        }
+    }
+
     private void sendProgressUpdate(String jobId, ProgressResponseDTO progressDTO) {
-        SseEmitter emitter = emitters.get(jobId);
-        if (emitter != null) {
+        Set<Subscriber> jobSubscribers = subscribers.get(jobId);
+        if (jobSubscribers != null) {
+            for (Subscriber subscriber : jobSubscribers) {
+                subscriber.offer(progressDTO);
+            }
+        }
+    }
+
+    /**
+     * One open event stream. Events are buffered and written by a sender thread;
+     * a subscriber whose buffer overflows is disconnected rather than allowed to
+     * hold up the dispatcher, and one whose send stalls is disconnected so it
+     * does not hold a sender thread.
+     */
+    private final class Subscriber {
+        private final String jobId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<ProgressResponseDTO> buffer = new ArrayBlockingQueue<>(subscriberBufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Sends started, and the thread running the current one; guarded by this subscriber
+        private int sends;
+        private Thread sending;
+        private volatile boolean stalled;
+        // Only accessed by the dispatcher thread
+        private ProgressResponseDTO lastOffered;
+
+        private Subscriber(String jobId, SseEmitter emitter) {
+            this.jobId = jobId;
+            this.emitter = emitter;
+        }
+
+        private void offer(ProgressResponseDTO progressDTO) {
+            // The replay may read the same state an update has just delivered
+            if (closed.get() || progressDTO == lastOffered) {
+                return;
+            }
+            lastOffered = progressDTO;
+            if (!buffer.offer(progressDTO)) {
+                log.warn("Dropping slow progress subscriber for jobId: {}", jobId);
+                droppedSubscribers.increment();
+                complete();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                ProgressResponseDTO progressDTO;
+                while (!closed.get() && (progressDTO = buffer.poll()) != null) {
+                    send(progressDTO);
+                    if (isTerminal(progressDTO)) {
+                        complete();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                if (!stalled) {
+                    log.error("Failed to send progress update for jobId: {}", jobId, e);
+                }
+                close();
+            } finally {
+                // An interrupt the stalled send ignored must not reach this thread's next task
+                Thread.interrupted();
+                draining.set(false);
+            }
+            if (stalled) {
+                // The client's connection may still be open, so its request is ended here
+                log.warn("Dropped progress subscriber for jobId {} after a send stalled", jobId);
+                emitter.complete();
+                return;
+            }
+            // Pick up events offered between the last poll and releasing the flag
+            if (!closed.get() && !buffer.isEmpty() && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void send(ProgressResponseDTO progressDTO) throws IOException {
+            int send;
+            synchronized (this) {
+                send = ++sends;
+                sending = Thread.currentThread();
+            }
+            dispatchQueue.put(new Dispatch(System.nanoTime() + sendTimeoutNanos, () -> dropIfStalled(send)));
             try {
                 emitter.send(SseEmitter.event().name("progress").data(progressDTO));
-                if (progressDTO.getStatus() == ProcessingStatus.COMPLETED || progressDTO.getStatus() == ProcessingStatus.FAILED) {
-                    emitter.complete();
-                    emitters.remove(jobId);
+            } finally {
+                synchronized (this) {
+                    sending = null;
+                }
+            }
+        }
+
+        /**
+         * Runs on the dispatcher, which must not touch the emitter: a stalled
+         * send holds its monitor. The interrupt is sent under this
+         * subscriber's lock, so it can only reach the send it was meant for.
+         */
+        private void dropIfStalled(int send) {
+            synchronized (this) {
+                if (sending == null || sends != send || closed.get()) {
+                    return;
                 }
-            } catch (IOException e) {
-                log.error("Failed to send progress update for jobId: {}", jobId, e);
-                emitters.remove(jobId);
+                stalled = true;
+                sending.interrupt();
+            }
+            droppedSubscribers.increment();
+            close();
+        }
+
+        private void complete() {
+            if (close()) {
+                emitter.complete();
+            }
+        }
+
+        /**
+         * @return true if this call closed the subscriber
+         */
+        private boolean close() {
+            if (!closed.compareAndSet(false, true)) {
+                return false;
+            }
+            buffer.clear();
+            AtomicBoolean wasLast = new AtomicBoolean();
+            subscribers.computeIfPresent(jobId, (id, jobSubscribers) -> {
+                jobSubscribers.remove(this);
+                wasLast.set(jobSubscribers.isEmpty());
+                return jobSubscribers.isEmpty() ? null : jobSubscribers;
+            });
+            subscriberCount.decrementAndGet();
+            if (wasLast.get()) {
+                scheduleAbandonCheck(jobId);
             }
+            return true;
+        }
+    }
+
+    /**
+     * Latest unsent progress of one running job. At most one dispatch per job
+     * is queued at a time; updates arriving meanwhile only overwrite the value.
+     */
+    private final class PendingProgress {
+        private final String jobId;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile int latest;
+        private volatile long lastSentAt = System.nanoTime() - minIntervalNanos;
+        private volatile boolean closed;
+        // Only accessed by the dispatcher thread
+        private int sent = -1;
+
+        private PendingProgress(String jobId) {
+            this.jobId = jobId;
+        }
+
+        /**
+         * @return false if the update was merged into one already waiting to be sent
+         */
+        private boolean offer(int progress) {
+            latest = progress;
+            if (closed || !scheduled.compareAndSet(false, true)) {
+                return false;
+            }
+            long dueAt = Math.max(System.nanoTime(), lastSentAt + minIntervalNanos);
+            dispatchQueue.put(new Dispatch(dueAt, this::dispatch));
+            return true;
+        }
+
+        private void dispatch() {
+            // Clear the flag before reading, so a concurrent offer schedules a new dispatch
+            scheduled.set(false);
+            int progress = latest;
+            if (closed || progress == sent) {
+                return;
+            }
+            ProgressResponseDTO progressDTO = ProgressResponseDTO.builder()
+                    .jobId(jobId)
+                    .progress(progress)
+                    .status(ProcessingStatus.PROCESSING)
+                    .build();
+            // The job may finish between any check here and the write, so the store decides
+            if (!progressCache.putIfUnfinished(jobId, progressDTO)) {
+                close();
+                return;
+            }
+            sendProgressUpdate(jobId, progressDTO);
+            sent = progress;
+            lastSentAt = System.nanoTime();
+            published.increment();
+        }
+
+        private void close() {
+            closed = true;
+            pendingProgress.remove(jobId, this);
+        }
+    }
+
+    private record Dispatch(long dueAt, Runnable task) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((Dispatch) other).dueAt);
         }
     }
 }
@@ -0,0 +1,239 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.ResultCacheProperties;
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.constant.FileFormat;
+import com.koushik.fileconverter.exception.StorageException;
+import com.koushik.fileconverter.strategy.compressor.CompressionStrategy;
+import com.koushik.fileconverter.strategy.converter.ConversionStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of processed files. Results are keyed by the SHA-256
+ * of the uploaded file plus everything that determines the output (operation,
+ * target format or compression level, strategy, its version and the settings
+ * it reads), so repeated uploads of the same file are answered without running
+ * the strategy again.
+ */
+@Slf4j
+@Service
+public class ResultCacheService {
+
+    private final ResultCacheProperties properties;
+    private final StorageService storageService;
+    private final Path cacheDir;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Updated under this cache's lock; atomic so the size gauge can read it without taking the lock
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ResultCacheService(ResultCacheProperties properties, StorageService storageService,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.storageService = storageService;
+        this.cacheDir = Path.of(properties.getDir());
+
+        this.hits = Counter.builder("processing.cache.requests")
+                .description("Result cache lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("processing.cache.requests")
+                .description("Result cache lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("processing.cache.evictions")
+                .description("Results evicted to stay within the size limit")
+                .register(meterRegistry);
+        Gauge.builder("processing.cache.size", totalBytes, AtomicLong::get)
+                .description("Disk space used by cached results")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("processing.cache.entries", entries, Map::size)
+                .description("Number of cached results")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Re-indexes results cached by a previous run, oldest first.
+     */
+    @PostConstruct
+    public synchronized void loadExistingEntries() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheDir);
+            List<Path> cached;
+            try (Stream<Path> files = Files.list(cacheDir)) {
+                cached = files.filter(Files::isRegularFile)
+                        .sorted(Comparator.comparing(this::lastModified))
+                        .toList();
+            }
+            for (Path path : cached) {
+                long size = Files.size(path);
+                entries.put(path.getFileName().toString(), new CacheEntry(path, size));
+                totalBytes.addAndGet(size);
+            }
+            evictToLimit();
+            log.info("Loaded {} cached results ({} bytes)", entries.size(), totalBytes.get());
+        } catch (IOException e) {
+            log.error("Failed to load result cache from {}", cacheDir, e);
+        }
+    }
+
+    public String conversionKey(String sourceSha256, FileFormat targetFormat, ConversionStrategy strategy) {
+        return key(sourceSha256, "convert", targetFormat.name(),
+                strategy.getClass().getSimpleName(), strategy.version(), strategy.cacheFingerprint());
+    }
+
+    public String compressionKey(String sourceSha256, CompressionLevel level, CompressionStrategy strategy) {
+        return key(sourceSha256, "compress", level.name(),
+                strategy.getClass().getSimpleName(), strategy.version(), strategy.cacheFingerprint());
+    }
+
+    public String compressionKey(String sourceSha256, long targetBytes, CompressionStrategy strategy) {
+        return key(sourceSha256, "compress", "target-" + targetBytes,
+                strategy.getClass().getSimpleName(), strategy.version(), strategy.cacheFingerprint());
+    }
+
+    /**
+     * Materialises a cached result as a processed file.
+     *
+     * @param key The cache key
+     * @param targetFilename The processed file name to serve the result under
+     * @return the processed file, or empty on a cache miss
+     */
+    public synchronized Optional<File> lookup(String key, String targetFilename) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+        CacheEntry entry = entries.get(key);
+        if (entry == null || !Files.exists(entry.path())) {
+            if (entry != null) {
+                remove(key);
+            }
+            misses.increment();
+            return Optional.empty();
+        }
+        try {
+            // Hard links share the timestamp, so refresh it or the processed
+            // copy would immediately look old enough for the hourly cleanup
+            Files.setLastModifiedTime(entry.path(), FileTime.fromMillis(System.currentTimeMillis()));
+            File processedFile = storageService.linkProcessedFile(entry.path(), targetFilename);
+            hits.increment();
+            return Optional.of(processedFile);
+        } catch (IOException | StorageException e) {
+            log.warn("Failed to serve cached result {}", key, e);
+            misses.increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Adds a successfully processed file to the cache.
+     */
+    public synchronized void store(String key, File result) {
+        if (!properties.isEnabled() || entries.containsKey(key)) {
+            return;
+        }
+        Path cached = cacheDir.resolve(key);
+        try {
+            Files.deleteIfExists(cached);
+            storageService.linkOrCopy(result.toPath(), cached);
+            long size = Files.size(cached);
+            if (size > properties.getMaxSize().toBytes()) {
+                Files.deleteIfExists(cached);
+                return;
+            }
+            entries.put(key, new CacheEntry(cached, size));
+            totalBytes.addAndGet(size);
+            evictToLimit();
+        } catch (IOException e) {
+            log.warn("Failed to cache result {}", key, e);
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private void evictToLimit() {
+        long maxBytes = properties.getMaxSize().toBytes();
+        Iterator<Map.Entry<String, CacheEntry>> eldest = entries.entrySet().iterator();
+        while (totalBytes.get() > maxBytes && eldest.hasNext()) {
+            CacheEntry entry = eldest.next().getValue();
+            eldest.remove();
+            totalBytes.addAndGet(-entry.size());
+            deleteQuietly(entry.path());
+            evictions.increment();
+        }
+    }
+
+    private void remove(String key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes.addAndGet(-entry.size());
+            deleteQuietly(entry.path());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete cached result: {}", path, e);
+        }
+    }
+
+    private FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(String.join("|", parts).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record CacheEntry(Path path, long size) {
+    }
+}
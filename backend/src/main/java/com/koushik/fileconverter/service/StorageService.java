@@ -1,52 +1,206 @@
 package com.koushik.fileconverter.service;
 
 import com.koushik.fileconverter.config.StorageConfig;
+import com.koushik.fileconverter.constant.FileFormat;
+import com.koushik.fileconverter.exception.FileValidationException;
 import com.koushik.fileconverter.exception.StorageException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StorageService {
 
+    private static final int SNIFF_BYTES = 8;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
     private final StorageConfig storageConfig;
+    private final MultipartProperties multipartProperties;
+
+    // Content hashes of served files, dropped when the file is deleted
+    private final Map<Path, ContentHash> contentHashes = new ConcurrentHashMap<>();
 
-    public File storeOriginalFile(MultipartFile file) {
+    /**
+     * Writes an upload into the uploads directory, hashing it and detecting its
+     * format along the way. Parts the container already spooled to disk are moved
+     * into place rather than copied a second time.
+     *
+     * @throws FileValidationException if the content does not match the file extension
+     */
+    public StoredFile storeOriginalFile(MultipartFile file) {
+        return storeOriginalFile(file, file.getOriginalFilename());
+    }
+
+    /**
+     * Same as {@link #storeOriginalFile(MultipartFile)}, but stores the upload under
+     * the given name, which may include a subdirectory such as a batch id.
+     */
+    public StoredFile storeOriginalFile(MultipartFile file, String filename) {
         try {
             if (file.isEmpty()) {
                 throw new StorageException("Failed to store empty file.");
             }
-            String filename = file.getOriginalFilename();
-            Path destinationFile = Path.of(storageConfig.getOriginalsDir(), filename);
+            Path destinationFile = resolveNewUpload(filename);
 
-            // Prevent directory traversal attack
-            if (!destinationFile.getParent().startsWith(Paths.get(storageConfig.getOriginalsDir()))) {
-                throw new StorageException("Cannot store file outside of the designated directory.");
+            MessageDigest digest = newSha256();
+            byte[] header = new byte[SNIFF_BYTES];
+            int headerLength;
+            if (file.getSize() > multipartProperties.getFileSizeThreshold().toBytes()) {
+                // Spooled part: the container renames it into place when the spool
+                // directory is on the same filesystem, so only a read pass remains
+                file.transferTo(destinationFile.toFile());
+                headerLength = digestFile(destinationFile, digest, header);
+            } else {
+                // In-memory part: hash and sniff while writing it out
+                try (InputStream in = file.getInputStream()) {
+                    headerLength = writeAndDigest(in, destinationFile, digest, header, Long.MAX_VALUE);
+                }
             }
+            return verifyStoredFile(destinationFile, filename, digest, header, headerLength);
+        } catch (IOException e) {
+            log.error("Failed to store file: {}", filename, e);
+            throw new StorageException("Failed to store file.", e);
+        }
+    }
 
-            // Copy the file to the destination
-            Files.copy(file.getInputStream(), destinationFile);
+    /**
+     * Stores content read from a stream, such as an entry of an uploaded archive.
+     *
+     * @param maxBytes Size limit; the partial file is removed if the content exceeds it
+     * @throws FileValidationException if the content is too large or does not match the file extension
+     */
+    public StoredFile storeOriginalFile(InputStream content, String filename, long maxBytes) {
+        try {
+            Path destinationFile = resolveNewUpload(filename);
 
-            log.info("Stored original file: {}", filename);
-            return destinationFile.toFile();
+            MessageDigest digest = newSha256();
+            byte[] header = new byte[SNIFF_BYTES];
+            int headerLength;
+            try {
+                headerLength = writeAndDigest(content, destinationFile, digest, header, maxBytes);
+            } catch (FileValidationException e) {
+                deleteFile(destinationFile);
+                throw e;
+            }
+            if (headerLength == 0) {
+                deleteFile(destinationFile);
+                throw new StorageException("Failed to store empty file.");
+            }
+            return verifyStoredFile(destinationFile, filename, digest, header, headerLength);
         } catch (IOException e) {
-            log.error("Failed to store file: {}", file.getOriginalFilename(), e);
+            log.error("Failed to store file: {}", filename, e);
             throw new StorageException("Failed to store file.", e);
         }
     }
 
+    private Path resolveNewUpload(String filename) throws IOException {
+        if (filename == null || filename.isBlank()) {
+            throw new StorageException("Cannot store file without a name.");
+        }
+        Path uploadDir = Paths.get(storageConfig.getUploadDir()).normalize();
+        Path destinationFile = uploadDir.resolve(filename).normalize();
+
+        // Prevent directory traversal attack
+        if (!destinationFile.startsWith(uploadDir) || destinationFile.equals(uploadDir)) {
+            throw new StorageException("Cannot store file outside of the designated directory.");
+        }
+        if (Files.exists(destinationFile)) {
+            throw StorageException.failedToStore(filename, "A file with the same name is already stored");
+        }
+        Files.createDirectories(destinationFile.getParent());
+        return destinationFile;
+    }
+
+    private StoredFile verifyStoredFile(Path destinationFile, String filename, MessageDigest digest,
+                                        byte[] header, int headerLength) throws IOException {
+        FileFormat declaredFormat = FileFormat.fromFilename(filename);
+        FileFormat detectedFormat = FileFormat.sniff(header, headerLength).orElse(null);
+        if (detectedFormat != declaredFormat) {
+            deleteFile(destinationFile);
+            throw FileValidationException.contentMismatch(filename, declaredFormat.getExtension());
+        }
+
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        log.info("Stored original file: {} (sha256: {})", filename, sha256);
+        return new StoredFile(destinationFile.toFile(), sha256, detectedFormat, Files.size(destinationFile));
+    }
+
+    private int writeAndDigest(InputStream in, Path destination, MessageDigest digest, byte[] header,
+                               long maxBytes) throws IOException {
+        try (OutputStream out = Files.newOutputStream(destination, StandardOpenOption.CREATE_NEW)) {
+            byte[] buffer = new byte[IO_BUFFER_SIZE];
+            int headerLength = 0;
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxBytes) {
+                    throw FileValidationException.fileTooLarge(total, maxBytes);
+                }
+                if (headerLength < header.length) {
+                    int n = Math.min(header.length - headerLength, read);
+                    System.arraycopy(buffer, 0, header, headerLength, n);
+                    headerLength += n;
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+            return headerLength;
+        }
+    }
+
+    private int digestFile(Path path, MessageDigest digest, byte[] header) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+            int headerLength = 0;
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                if (headerLength < header.length) {
+                    int n = Math.min(header.length - headerLength, buffer.remaining());
+                    buffer.get(buffer.position(), header, headerLength, n);
+                    headerLength += n;
+                }
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return headerLength;
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     public File createProcessedFile(String filename) {
         try {
             Path destinationFile = Path.of(storageConfig.getProcessedDir(), filename);
@@ -57,6 +211,7 @@ public class StorageService {
             }
 
             // Create the file
+            Files.createDirectories(destinationFile.getParent());
             Files.createFile(destinationFile);
 
             log.info("Created processed file: {}", filename);
@@ -67,9 +222,70 @@ public class StorageService {
         }
     }
 
+    /**
+     * Publishes an existing file, such as a cached result, as a processed file.
+     */
+    public File linkProcessedFile(Path source, String filename) {
+        try {
+            Path destinationFile = Path.of(storageConfig.getProcessedDir(), filename);
+
+            // Prevent directory traversal attack
+            if (!destinationFile.getParent().startsWith(Paths.get(storageConfig.getProcessedDir()))) {
+                throw new StorageException("Cannot create file outside of the designated directory.");
+            }
+
+            Files.createDirectories(destinationFile.getParent());
+            linkOrCopy(source, destinationFile);
+
+            log.info("Linked processed file: {}", filename);
+            return destinationFile.toFile();
+        } catch (IOException e) {
+            log.error("Failed to link file: {}", filename, e);
+            throw new StorageException("Failed to create file.", e);
+        }
+    }
+
+    /**
+     * Hard-links {@code target} to {@code source}, falling back to a copy when
+     * both are not on the same filesystem.
+     */
+    public void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(source, target);
+        }
+    }
+
+    /**
+     * Returns the hex-encoded SHA-256 of a file's content. The hash is remembered
+     * until the file's size or modification time changes.
+     */
+    public String getContentHash(File file) throws IOException {
+        Path path = file.toPath();
+        long size = Files.size(path);
+        FileTime modified = Files.getLastModifiedTime(path);
+        ContentHash known = contentHashes.get(path);
+        if (known != null && known.size() == size && known.modified().equals(modified)) {
+            return known.sha256();
+        }
+
+        MessageDigest digest = newSha256();
+        digestFile(path, digest, new byte[0]);
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        contentHashes.put(path, new ContentHash(size, modified, sha256));
+        return sha256;
+    }
+
     public File getProcessedFile(String fileId) {
         try {
-            Path filePath = Path.of(storageConfig.getProcessedDir(), fileId);
+            Path processedDir = Paths.get(storageConfig.getProcessedDir());
+            Path filePath = processedDir.resolve(fileId).normalize();
+            if (!filePath.startsWith(processedDir.normalize())) {
+                throw new StorageException("Cannot read file outside of the designated directory.");
+            }
             File file = filePath.toFile();
             if (!file.exists()) {
                 throw new StorageException("File not found: " + fileId);
@@ -81,10 +297,22 @@ public class StorageService {
         }
     }
 
+    /**
+     * Removes files or job directories written for a job that never ran, e.g.
+     * because it was rejected, or whose output is incomplete.
+     */
+    public void discard(File... files) {
+        for (File file : files) {
+            if (file != null) {
+                deleteFile(file.toPath());
+            }
+        }
+    }
+
     public void cleanupOldFiles() {
         try {
             Instant oneHourAgo = Instant.now().minus(Duration.ofHours(1));
-            Files.list(Paths.get(storageConfig.getOriginalsDir()))
+            Files.list(Paths.get(storageConfig.getUploadDir()))
                     .filter(path -> isBefore(path, oneHourAgo))
                     .forEach(this::deleteFile);
 
@@ -108,6 +336,7 @@ public class StorageService {
     }
 
     private void deleteFile(Path path) {
+        contentHashes.remove(path);
         try {
             FileSystemUtils.deleteRecursively(path);
             log.info("Deleted file: {}", path);
@@ -115,4 +344,7 @@ public class StorageService {
             log.error("Failed to delete file: {}", path, e);
         }
     }
+
+    private record ContentHash(long size, FileTime modified, String sha256) {
+    }
 }
@@ -0,0 +1,16 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.constant.FileFormat;
+
+import java.io.File;
+
+/**
+ * An uploaded file after it has been written to the uploads directory.
+ *
+ * @param file The stored file
+ * @param sha256 Hex-encoded SHA-256 of the file content
+ * @param format The format detected from the file content
+ * @param size The file size in bytes
+ */
+public record StoredFile(File file, String sha256, FileFormat format, long size) {
+}
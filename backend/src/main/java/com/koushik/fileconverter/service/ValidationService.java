@@ -9,6 +9,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
+
+import static com.koushik.fileconverter.constant.ApiConstants.MAX_FILE_SIZE;
+
 @Slf4j
 @Service
 public class ValidationService {
@@ -21,15 +25,8 @@ public class ValidationService {
             throw new FileValidationException("File is required for conversion.");
         }
 
-        if (!StringUtils.hasText(targetFormat)) {
-            throw new FileValidationException("Target format is required for conversion.");
-        }
-
-        try {
-            FileFormat.fromExtension(targetFormat);
-        } catch (IllegalArgumentException e) {
-            throw new FileValidationException("Invalid target format: " + targetFormat);
-        }
+        validateFileSize(file);
+        validateTargetFormat(targetFormat);
 
         String originalFilename = file.getOriginalFilename();
         if (!StringUtils.hasText(originalFilename)) {
@@ -46,18 +43,16 @@ public class ValidationService {
 
     public void validateCompressionRequest(CompressionRequestDTO request) {
         MultipartFile file = request.getFile();
-        Integer compressionLevel = request.getCompressionLevel();
+        Integer compressionLevel = request.getCompressionLevelValue();
 
         if (file == null || file.isEmpty()) {
             throw new FileValidationException("File is required for compression.");
         }
 
-        if (compressionLevel == null) {
-            throw new FileValidationException("Compression level is required.");
-        }
-
-        if (compressionLevel < 0 || compressionLevel > 100) {
-            throw new FileValidationException("Compression level must be between 0 and 100.");
+        validateFileSize(file);
+        validateCompressionLevel(compressionLevel);
+        if (request.getTargetBytes() != null && request.getTargetBytes() <= 0) {
+            throw new FileValidationException("Target size must be a positive number of bytes.");
         }
 
         String originalFilename = file.getOriginalFilename();
@@ -72,4 +67,57 @@ public class ValidationService {
             throw new FileValidationException("Invalid source file format: " + sourceExtension);
         }
     }
+
+    /**
+     * Checks the parts of a batch request. ZIP parts may exceed the single file
+     * limit, their entries are checked as they are extracted.
+     */
+    public void validateBatchRequest(List<MultipartFile> files, int maxFiles) {
+        if (files == null || files.stream().allMatch(MultipartFile::isEmpty)) {
+            throw new FileValidationException("At least one file is required.");
+        }
+
+        if (files.size() > maxFiles) {
+            throw new FileValidationException("Too many files in batch.",
+                    String.format("Files: %d, Maximum allowed: %d", files.size(), maxFiles));
+        }
+
+        for (MultipartFile file : files) {
+            String originalFilename = file.getOriginalFilename();
+            if (!StringUtils.hasText(originalFilename)) {
+                throw new FileValidationException("Invalid file name.");
+            }
+            if (!originalFilename.toLowerCase().endsWith(".zip")) {
+                validateFileSize(file);
+            }
+        }
+    }
+
+    public void validateTargetFormat(String targetFormat) {
+        if (!StringUtils.hasText(targetFormat)) {
+            throw new FileValidationException("Target format is required for conversion.");
+        }
+
+        try {
+            FileFormat.fromExtension(targetFormat);
+        } catch (IllegalArgumentException e) {
+            throw new FileValidationException("Invalid target format: " + targetFormat);
+        }
+    }
+
+    public void validateCompressionLevel(Integer compressionLevel) {
+        if (compressionLevel == null) {
+            throw new FileValidationException("Compression level is required.");
+        }
+
+        if (compressionLevel < 0 || compressionLevel > 100) {
+            throw new FileValidationException("Compression level must be between 0 and 100.");
+        }
+    }
+
+    private void validateFileSize(MultipartFile file) {
+        if (file.getSize() > MAX_FILE_SIZE) {
+            throw FileValidationException.fileTooLarge(file.getSize(), MAX_FILE_SIZE);
+        }
+    }
 }
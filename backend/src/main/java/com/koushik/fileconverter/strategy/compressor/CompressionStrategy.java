@@ -2,6 +2,7 @@ package com.koushik.fileconverter.strategy.compressor;
 
 import com.koushik.fileconverter.constant.CompressionLevel;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.service.CancellationToken;
 
 import java.io.File;
 import java.util.function.Consumer;
@@ -20,8 +21,53 @@ public interface CompressionStrategy {
      * @param targetFile The target file to save the compressed result
      * @param level The compression level to apply
      * @param progressCallback Callback to report compression progress (0-100)
+     * @param cancellation Checked between pages or pictures; once it is cancelled the strategy
+     *                     stops with a {@link java.util.concurrent.CancellationException}
      * @throws FileProcessingException if compression fails
      */
-    void compress(File sourceFile, File targetFile, CompressionLevel level, Consumer<Integer> progressCallback) 
-            throws FileProcessingException;
+    void compress(File sourceFile, File targetFile, CompressionLevel level, Consumer<Integer> progressCallback,
+                  CancellationToken cancellation) throws FileProcessingException;
+
+    /**
+     * Whether this strategy can compress to a target size.
+     * @return true if {@link #compressToSize} is supported
+     */
+    default boolean supportsTargetSize() {
+        return false;
+    }
+
+    /**
+     * Compress the source file to at most the target size, at the highest quality that fits.
+     * A source that already fits is kept as it is; if even the lowest quality does not fit,
+     * the smallest result is written
+     * @param sourceFile The source file to compress
+     * @param targetFile The target file to save the compressed result
+     * @param targetBytes The largest size the compressed file should have
+     * @param progressCallback Callback to report compression progress (0-100)
+     * @param cancellation Checked between pages, pictures or encoding trials
+     * @throws FileProcessingException if compression fails or is not supported
+     */
+    default void compressToSize(File sourceFile, File targetFile, long targetBytes, Consumer<Integer> progressCallback,
+                                CancellationToken cancellation) throws FileProcessingException {
+        throw new FileProcessingException("Compression to a target size is not supported for " + sourceFile.getName());
+    }
+
+    /**
+     * Version of the output this strategy produces. Bump it whenever a change alters
+     * the compressed files, so results cached by an older version are not reused.
+     * @return the strategy version
+     */
+    default String version() {
+        return "1";
+    }
+
+    /**
+     * The settings this strategy reads that change its output, in any stable form.
+     * It is part of the cache key, so results produced under other settings are
+     * not reused after the configuration changes.
+     * @return the output-affecting settings, empty if there are none
+     */
+    default String cacheFingerprint() {
+        return "";
+    }
 }
@@ -1,56 +1,295 @@
 package com.koushik.fileconverter.strategy.compressor;
 
+import com.koushik.fileconverter.config.DocxProcessingProperties;
 import com.koushik.fileconverter.constant.CompressionLevel;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.FanOutExecutor;
+import com.koushik.fileconverter.service.PooledBytes;
+import com.koushik.fileconverter.strategy.image.ByteArrayImageInputStream;
+import com.koushik.fileconverter.strategy.image.ImageCodecPool;
+import com.koushik.fileconverter.strategy.image.JpegEncoder;
+import com.koushik.fileconverter.strategy.image.PooledImageReader;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFPictureData;
 import org.springframework.stereotype.Component;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
-import javax.imageio.stream.ImageOutputStream;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class DocxCompressor implements CompressionStrategy {
 
+    private static final String CONTENT_TYPES_ENTRY = "[Content_Types].xml";
+    private static final String MEDIA_PREFIX = "word/media/";
+
+    private final DocxProcessingProperties properties;
+    private final FanOutExecutor fanOutExecutor;
+    private final ImageCodecPool codecPool;
+    private final BufferPool bufferPool;
+    private final JpegEncoder jpegEncoder;
+
     @Override
     public boolean supports(String fileExtension) {
         return fileExtension.equalsIgnoreCase("docx");
     }
 
     @Override
-    public void compress(File sourceFile, File targetFile, CompressionLevel level, Consumer<Integer> progressCallback) 
-            throws FileProcessingException {
+    public String version() {
+        // 2: pictures that do not shrink are kept as they were
+        // 3: the package is rewritten entry by entry instead of re-serialized by POI
+        return "3";
+    }
+
+    @Override
+    public String cacheFingerprint() {
+        return "min-picture-size=" + properties.getMinPictureSize().toBytes()
+                + ",raw-package-rewrite=" + properties.isRawPackageRewrite()
+                + ",xml-deflate-level=" + properties.getXmlDeflateLevel();
+    }
+
+    @Override
+    public void compress(File sourceFile, File targetFile, CompressionLevel level, Consumer<Integer> progressCallback,
+                         CancellationToken cancellation) throws FileProcessingException {
+        try {
+            if (properties.isRawPackageRewrite()
+                    && compressPackage(sourceFile, targetFile, level, progressCallback, cancellation)) {
+                return;
+            }
+            compressWithPoi(sourceFile, targetFile, level, progressCallback, cancellation);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to compress DOCX", e);
+            throw FileProcessingException.compressionFailed(sourceFile.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the package entry by entry without building POI's object model.
+     * Parts other than pictures are copied as their raw compressed bytes, or
+     * re-deflated if {@code xmlDeflateLevel} is set, and pictures are
+     * recompressed on the fan-out pool as in {@link #compressWithPoi}.
+     *
+     * @return false, having written nothing, if the file is not a ZIP package
+     * this path can read
+     */
+    private boolean compressPackage(File sourceFile, File targetFile, CompressionLevel level,
+                                    Consumer<Integer> progressCallback, CancellationToken cancellation)
+            throws IOException {
+        ZipFile zip;
+        try {
+            zip = new ZipFile(sourceFile);
+        } catch (IOException e) {
+            log.info("Compressing {} with POI, not a readable ZIP package: {}", sourceFile.getName(), e.getMessage());
+            return false;
+        }
+        try (zip) {
+            List<ZipArchiveEntry> entries = Collections.list(zip.getEntriesInPhysicalOrder());
+            if (zip.getEntry(CONTENT_TYPES_ENTRY) == null || !entries.stream().allMatch(zip::canReadEntryData)) {
+                log.info("Compressing {} with POI, package uses unsupported ZIP features", sourceFile.getName());
+                return false;
+            }
+
+            // Report start
+            progressCallback.accept(20);
+
+            long minPictureSize = properties.getMinPictureSize().toBytes();
+            int maxInFlight = Math.max(1, properties.getMaxPicturesInFlight());
+            int xmlDeflateLevel = properties.getXmlDeflateLevel();
+            int writtenEntries = 0;
+
+            try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(targetFile)) {
+                if (xmlDeflateLevel >= 0) {
+                    out.setLevel(xmlDeflateLevel);
+                }
+                // Entries keep their order; pictures are recompressed up to a bounded
+                // number ahead of the entry being written
+                Deque<PendingEntry> window = new ArrayDeque<>();
+                int picturesInFlight = 0;
+                try {
+                    for (ZipArchiveEntry entry : entries) {
+                        cancellation.throwIfCancelled();
+                        while (picturesInFlight >= maxInFlight) {
+                            PendingEntry head = window.removeFirst();
+                            picturesInFlight -= head.result() != null ? 1 : 0;
+                            writeEntry(zip, out, head, xmlDeflateLevel);
+                            progressCallback.accept(20 + (70 * ++writtenEntries / entries.size()));
+                        }
+                        PendingEntry pending = readEntry(zip, entry, minPictureSize, level.getCompressionRatio());
+                        picturesInFlight += pending.result() != null ? 1 : 0;
+                        window.addLast(pending);
+                    }
+                    while (!window.isEmpty()) {
+                        cancellation.throwIfCancelled();
+                        writeEntry(zip, out, window.removeFirst(), xmlDeflateLevel);
+                        progressCallback.accept(20 + (70 * ++writtenEntries / entries.size()));
+                    }
+                } finally {
+                    window.forEach(pending -> {
+                        if (pending.result() != null) {
+                            pending.result().cancel(true);
+                        }
+                    });
+                }
+            }
+
+            // Report completion
+            progressCallback.accept(100);
+            return true;
+        }
+    }
+
+    private PendingEntry readEntry(ZipFile zip, ZipArchiveEntry entry, long minPictureSize, float compressionRatio)
+            throws IOException {
+        String name = entry.getName();
+        if (!name.startsWith(MEDIA_PREFIX) || !isImage(name)
+                || (entry.getSize() >= 0 && entry.getSize() < minPictureSize)) {
+            return new PendingEntry(entry, null);
+        }
+        PooledBytes original = bufferPool.allocate((int) Math.min(Math.max(entry.getSize(), 0), Integer.MAX_VALUE - 8));
+        try (InputStream in = zip.getInputStream(entry)) {
+            original.readFrom(in);
+        }
+        if (original.length() < minPictureSize) {
+            original.close();
+            return new PendingEntry(entry, null);
+        }
+        return new PendingEntry(entry, fanOutExecutor.submit(() -> {
+            try (original) {
+                return encodePicture(name, original, compressionRatio);
+            }
+        }));
+    }
+
+    /**
+     * Recompresses a picture and prepares it as ready-to-copy ZIP entry data,
+     * deflated if that helps, or returns null if the original should be kept.
+     */
+    private EncodedPicture encodePicture(String name, PooledBytes original, float compressionRatio)
+            throws IOException {
+        PooledBytes compressedImage = compressImage(name, original.array(), original.length(), compressionRatio);
+        if (compressedImage == null) {
+            return null;
+        }
+        if (compressedImage.length() >= original.length()) {
+            compressedImage.close();
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(compressedImage.array(), 0, compressedImage.length());
+
+        PooledBytes deflated = bufferPool.allocate(compressedImage.length());
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(deflated.outputStream(), deflater)) {
+            compressedImage.writeTo(out);
+        } finally {
+            deflater.end();
+        }
+        // Keep whichever form is smaller and hand the other buffer back
+        int size = compressedImage.length();
+        if (deflated.length() < size) {
+            compressedImage.close();
+            return new EncodedPicture(ZipArchiveEntry.DEFLATED, size, crc.getValue(), deflated);
+        }
+        deflated.close();
+        return new EncodedPicture(ZipArchiveEntry.STORED, size, crc.getValue(), compressedImage);
+    }
+
+    private void writeEntry(ZipFile zip, ZipArchiveOutputStream out, PendingEntry pending, int xmlDeflateLevel)
+            throws IOException {
+        ZipArchiveEntry entry = pending.entry();
+        EncodedPicture picture = pending.result() != null ? await(pending.result(), entry.getName()) : null;
+
+        if (picture != null) {
+            try (PooledBytes data = picture.data()) {
+                ZipArchiveEntry replaced = new ZipArchiveEntry(entry.getName());
+                replaced.setMethod(picture.method());
+                replaced.setSize(picture.size());
+                replaced.setCompressedSize(data.length());
+                replaced.setCrc(picture.crc());
+                replaced.setTime(entry.getTime());
+                out.addRawArchiveEntry(replaced, data.inputStream());
+            }
+        } else if (xmlDeflateLevel >= 0 && isXmlPart(entry.getName())) {
+            ZipArchiveEntry deflated = new ZipArchiveEntry(entry.getName());
+            deflated.setMethod(ZipArchiveEntry.DEFLATED);
+            deflated.setTime(entry.getTime());
+            out.putArchiveEntry(deflated);
+            try (InputStream in = zip.getInputStream(entry)) {
+                in.transferTo(out);
+            }
+            out.closeArchiveEntry();
+        } else {
+            try (InputStream raw = zip.getRawInputStream(entry)) {
+                out.addRawArchiveEntry(entry, raw);
+            }
+        }
+    }
+
+    private static boolean isXmlPart(String name) {
+        return name.endsWith(".xml") || name.endsWith(".rels");
+    }
+
+    private void compressWithPoi(File sourceFile, File targetFile, CompressionLevel level,
+                                 Consumer<Integer> progressCallback, CancellationToken cancellation)
+            throws IOException {
         try (FileInputStream fis = new FileInputStream(sourceFile);
              XWPFDocument document = new XWPFDocument(fis)) {
 
             // Report start
             progressCallback.accept(20);
 
-            int totalImages = document.getAllPictures().size();
+            List<XWPFPictureData> pictures = document.getAllPictures();
+            int totalImages = pictures.size();
             int processedImages = 0;
+            long minPictureSize = properties.getMinPictureSize().toBytes();
+            int maxInFlight = Math.max(1, properties.getMaxPicturesInFlight());
 
-            for (XWPFPictureData picture : document.getAllPictures()) {
-                if (isImage(picture.getFileName())) {
-                    byte[] compressedImage = compressImage(picture.getData(), level.getCompressionRatio());
-                    // Update the picture data
-                    PackagePart part = picture.getPackagePart();
-                    try (OutputStream out = part.getOutputStream()) {
-                        out.write(compressedImage);
+            // Pictures are recompressed on the fan-out pool, a bounded window ahead of
+            // the one being written back; package parts are only touched on this thread
+            Deque<PendingPicture> window = new ArrayDeque<>();
+            try {
+                for (XWPFPictureData picture : pictures) {
+                    cancellation.throwIfCancelled();
+                    if (window.size() >= maxInFlight) {
+                        writeBack(window.removeFirst());
+                        progressCallback.accept(20 + (60 * ++processedImages / totalImages));
                     }
+                    window.addLast(recompress(picture, minPictureSize, level.getCompressionRatio()));
                 }
-                processedImages++;
-                progressCallback.accept(20 + (60 * processedImages / totalImages));
+                while (!window.isEmpty()) {
+                    cancellation.throwIfCancelled();
+                    writeBack(window.removeFirst());
+                    progressCallback.accept(20 + (60 * ++processedImages / totalImages));
+                }
+            } finally {
+                window.forEach(pending -> {
+                    if (pending.result() != null) {
+                        pending.result().cancel(true);
+                    }
+                });
             }
 
             // Save compressed document
@@ -60,10 +299,44 @@ public class DocxCompressor implements CompressionStrategy {
 
             // Report completion
             progressCallback.accept(100);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to compress DOCX", e);
-            throw FileProcessingException.compressionFailed(sourceFile.getName(), e.getMessage());
+    private PendingPicture recompress(XWPFPictureData picture, long minPictureSize, float compressionRatio) {
+        if (!isImage(picture.getFileName())) {
+            return new PendingPicture(picture, null, null);
+        }
+        byte[] original = picture.getData();
+        if (original.length < minPictureSize) {
+            return new PendingPicture(picture, null, null);
+        }
+        return new PendingPicture(picture, original,
+                fanOutExecutor.submit(() -> compressImage(picture.getFileName(), original, original.length, compressionRatio)));
+    }
+
+    private void writeBack(PendingPicture pending) throws IOException {
+        if (pending.result() == null) {
+            return;
+        }
+        try (PooledBytes compressedImage = await(pending.result(), pending.picture().getFileName())) {
+            // Only replace pictures that actually got smaller
+            if (compressedImage != null && compressedImage.length() < pending.original().length) {
+                PackagePart part = pending.picture().getPackagePart();
+                try (OutputStream out = part.getOutputStream()) {
+                    compressedImage.writeTo(out);
+                }
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> result, String name) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing " + name);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
         }
     }
 
@@ -74,23 +347,41 @@ public class DocxCompressor implements CompressionStrategy {
                extension.endsWith(".png");
     }
 
-    private byte[] compressImage(byte[] imageData, float compressionRatio) throws IOException {
-        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
-        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    /**
+     * Re-encodes a picture as JPEG, or returns null if it cannot be, in which
+     * case the original is kept.
+     */
+    private PooledBytes compressImage(String fileName, byte[] imageData, int length, float compressionRatio)
+            throws IOException {
+        BufferedImage image = readImage(imageData, length);
+        if (image == null || image.getColorModel().hasAlpha()) {
+            // Unreadable, or transparency JPEG cannot represent
+            log.debug("Keeping picture {} as is", fileName);
+            return null;
+        }
+        // Sized like the original: a result that is not smaller is discarded anyway
+        return jpegEncoder.encode(image, compressionRatio, length);
+    }
 
-        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
-        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(compressed)) {
-            writer.setOutput(ios);
+    private BufferedImage readImage(byte[] imageData, int length) {
+        // Read in place: ImageIO.read would buffer the bytes again, possibly in a temp file
+        try (ImageInputStream input = new ByteArrayImageInputStream(imageData, 0, length);
+             PooledImageReader reader = codecPool.reader(input)) {
+            return reader.reader().read(0);
+        } catch (IOException e) {
+            return null;
+        }
+    }
 
-            JPEGImageWriteParam params = new JPEGImageWriteParam(null);
-            params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            params.setCompressionQuality(compressionRatio);
+    private record PendingEntry(ZipArchiveEntry entry, Future<EncodedPicture> result) {
+    }
 
-            writer.write(null, new IIOImage(image, null, null), params);
-        } finally {
-            writer.dispose();
-        }
+    /**
+     * Entry data as it goes into the archive; {@code size} is the uncompressed size.
+     */
+    private record EncodedPicture(int method, long size, long crc, PooledBytes data) {
+    }
 
-        return compressed.toByteArray();
+    private record PendingPicture(XWPFPictureData picture, byte[] original, Future<PooledBytes> result) {
     }
 }
@@ -2,6 +2,13 @@ package com.koushik.fileconverter.strategy.compressor;
 
 import com.koushik.fileconverter.constant.CompressionLevel;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.strategy.image.ImageCodecPool;
+import com.koushik.fileconverter.strategy.image.ImageDecoder;
+import com.koushik.fileconverter.strategy.image.ImageSource;
+import com.koushik.fileconverter.strategy.image.PooledImageWriter;
+import com.koushik.fileconverter.strategy.image.QualitySearch;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import javax.imageio.IIOImage;
@@ -11,13 +18,22 @@ import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class ImageCompressor implements CompressionStrategy {
 
+    private final ImageDecoder imageDecoder;
+    private final ImageCodecPool codecPool;
+    private final QualitySearch qualitySearch;
+
     @Override
     public boolean supports(String fileExtension) {
         return fileExtension.equalsIgnoreCase("jpg") || 
@@ -26,31 +42,37 @@ public class ImageCompressor implements CompressionStrategy {
     }
 
     @Override
-    public void compress(File sourceFile, File targetFile, CompressionLevel level, Consumer<Integer> progressCallback) 
-            throws FileProcessingException {
+    public String version() {
+        // 2: images over the decode budget are subsampled
+        // 3: they are only subsampled if that is enabled
+        return "3";
+    }
+
+    @Override
+    public String cacheFingerprint() {
+        return imageDecoder.cacheFingerprint() + "," + qualitySearch.cacheFingerprint();
+    }
+
+    @Override
+    public void compress(File sourceFile, File targetFile, CompressionLevel level, Consumer<Integer> progressCallback,
+                         CancellationToken cancellation) throws FileProcessingException {
         try {
             // Report start
             progressCallback.accept(20);
 
-            // Read image
-            BufferedImage image = ImageIO.read(sourceFile);
+            BufferedImage image = readImage(sourceFile, cancellation);
 
             // Report progress after reading
             progressCallback.accept(40);
+            cancellation.throwIfCancelled();
 
-            // Get image writer
-            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
-            if (!writers.hasNext()) {
-                throw new FileProcessingException("No JPEG image writer found");
-            }
-
-            ImageWriter writer = writers.next();
-            try (ImageOutputStream output = ImageIO.createImageOutputStream(targetFile)) {
+            // Borrow a JPEG writer and its write param from the pool
+            try (PooledImageWriter pooled = codecPool.writer("jpeg");
+                 ImageOutputStream output = ImageIO.createImageOutputStream(targetFile)) {
+                ImageWriter writer = pooled.writer();
                 writer.setOutput(output);
 
-                ImageWriteParam param = writer.getDefaultWriteParam();
-                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                param.setCompressionQuality(level.getCompressionRatio());
+                ImageWriteParam param = pooled.param(level.getCompressionRatio());
 
                 // Report progress before writing
                 progressCallback.accept(60);
@@ -60,13 +82,63 @@ public class ImageCompressor implements CompressionStrategy {
 
                 // Report completion
                 progressCallback.accept(100);
-            } finally {
-                writer.dispose();
             }
 
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to compress image", e);
+            throw FileProcessingException.compressionFailed(sourceFile.getName(), e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean supportsTargetSize() {
+        return true;
+    }
+
+    @Override
+    public void compressToSize(File sourceFile, File targetFile, long targetBytes, Consumer<Integer> progressCallback,
+                               CancellationToken cancellation) throws FileProcessingException {
+        try {
+            // Report start
+            progressCallback.accept(20);
+
+            if (sourceFile.length() <= targetBytes) {
+                // Re-encoding could only lose quality
+                Files.copy(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                progressCallback.accept(100);
+                return;
+            }
+
+            BufferedImage image = readImage(sourceFile, cancellation);
+
+            // Report progress after reading
+            progressCallback.accept(40);
+
+            // Every trial encodes the raster decoded above
+            try (QualitySearch.Result result = qualitySearch.encode(image, targetBytes, cancellation);
+                 OutputStream out = Files.newOutputStream(targetFile.toPath())) {
+                if (!result.fits()) {
+                    log.info("{} does not fit {} bytes even at the lowest quality", sourceFile.getName(), targetBytes);
+                }
+                result.data().writeTo(out);
+            }
+
+            // Report completion
+            progressCallback.accept(100);
+
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to compress image", e);
             throw FileProcessingException.compressionFailed(sourceFile.getName(), e.getMessage());
         }
     }
+
+    private BufferedImage readImage(File sourceFile, CancellationToken cancellation) throws IOException {
+        try (ImageSource source = imageDecoder.open(sourceFile)) {
+            return source.readWhole(cancellation);
+        }
+    }
 }
@@ -1,70 +1,275 @@
 package com.koushik.fileconverter.strategy.compressor;
 
+import com.koushik.fileconverter.config.PdfProcessingProperties;
 import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.constant.PdfCompressionMode;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.FanOutExecutor;
+import com.koushik.fileconverter.service.OrderedFanOut;
+import com.koushik.fileconverter.service.PooledBytes;
+import com.koushik.fileconverter.strategy.image.JpegEncoder;
+import com.koushik.fileconverter.strategy.image.QualitySearch;
+import com.koushik.fileconverter.strategy.pdf.PdfDocumentLoader;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
 import org.springframework.stereotype.Component;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class PdfCompressor implements CompressionStrategy {
 
+    // Typical size of one page re-encoded as JPEG, used to size the output's stream cache
+    private static final long ESTIMATED_PAGE_BYTES = 64 * 1024;
+    // What a rasterized page costs besides its picture: page, content stream and image dictionaries
+    private static final long PAGE_OVERHEAD_BYTES = 512;
+
+    private final PdfProcessingProperties properties;
+    private final FanOutExecutor fanOutExecutor;
+    private final PdfDocumentLoader pdfDocumentLoader;
+    private final JpegEncoder jpegEncoder;
+    private final BufferPool bufferPool;
+    private final QualitySearch qualitySearch;
+
     @Override
     public boolean supports(String fileExtension) {
         return fileExtension.equalsIgnoreCase("pdf");
     }
 
     @Override
-    public void compress(File sourceFile, File targetFile, CompressionLevel level, Consumer<Integer> progressCallback) 
+    public String version() {
+        // 2: documents with text or pictures are optimized in place rather than rasterized
+        // 3: pictures are re-encoded after duplicate streams are merged, and never merged with other streams
+        return "3";
+    }
+
+    @Override
+    public String cacheFingerprint() {
+        return "mode=" + properties.getCompressionMode()
+                + ",mode-sample-pages=" + properties.getModeSamplePages()
+                + ",rasterize-content-threshold=" + properties.getRasterizeContentThreshold().toBytes()
+                + ",max-image-dpi=" + properties.getMaxImageDpi()
+                + ",render-dpi=" + properties.getRenderDpi()
+                + "," + qualitySearch.cacheFingerprint();
+    }
+
+    @Override
+    public void compress(File sourceFile, File targetFile, CompressionLevel level, Consumer<Integer> progressCallback,
+                         CancellationToken cancellation) throws FileProcessingException {
+        compress(sourceFile, targetFile, level.getCompressionRatio(), 0, progressCallback, cancellation);
+    }
+
+    @Override
+    public boolean supportsTargetSize() {
+        return true;
+    }
+
+    @Override
+    public void compressToSize(File sourceFile, File targetFile, long targetBytes, Consumer<Integer> progressCallback,
+                               CancellationToken cancellation) throws FileProcessingException {
+        if (sourceFile.length() <= targetBytes) {
+            // Re-encoding could only lose quality
+            try {
+                Files.copy(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw FileProcessingException.compressionFailed(sourceFile.getName(), e.getMessage());
+            }
+            progressCallback.accept(100);
+            return;
+        }
+
+        compress(sourceFile, targetFile, QualitySearch.MAX_QUALITY, targetBytes, progressCallback, cancellation);
+        if (targetFile.length() > targetBytes) {
+            log.info("{} compressed to {} bytes, over its target of {}", sourceFile.getName(), targetFile.length(),
+                    targetBytes);
+        }
+    }
+
+    /**
+     * Pictures are encoded at {@code quality}, or, if {@code targetBytes} is
+     * positive, at the highest quality that fits their share of it.
+     */
+    private void compress(File sourceFile, File targetFile, float quality, long targetBytes,
+                          Consumer<Integer> progressCallback, CancellationToken cancellation)
             throws FileProcessingException {
-        try (PDDocument document = Loader.loadPDF(sourceFile);
-             PDDocument compressedDoc = new PDDocument()) {
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
 
             // Report start
             progressCallback.accept(20);
 
-            int totalPages = document.getNumberOfPages();
-            for (int i = 0; i < totalPages; i++) {
-                PDPage page = document.getPage(i);
-                BufferedImage image = page.convertToImage(BufferedImage.TYPE_INT_RGB, 72);
+            PdfCompressionMode mode = chooseMode(document);
+            log.debug("Compressing {} in {} mode", sourceFile.getName(), mode);
+            if (mode == PdfCompressionMode.RASTERIZE) {
+                rasterize(sourceFile, document, targetFile, quality, targetBytes, progressCallback, cancellation);
+            } else {
+                optimize(sourceFile, document, targetFile, quality, targetBytes, progressCallback, cancellation);
+            }
 
-                // Create new page
-                PDPage newPage = new PDPage(page.getMediaBox());
-                compressedDoc.addPage(newPage);
+            // Report completion
+            progressCallback.accept(100);
 
-                // Create compressed image
-                PDImageXObject pdImage = JPEGFactory.createFromImage(compressedDoc, image, level.getCompressionRatio());
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to compress PDF", e);
+            throw FileProcessingException.compressionFailed(sourceFile.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Rasterizing flattens everything into pictures, which only pays off for
+     * pages that are costly to draw and have no text to lose. Anything else
+     * is optimized, keeping its text and vector graphics.
+     */
+    private PdfCompressionMode chooseMode(PDDocument document) {
+        PdfCompressionMode mode = properties.getCompressionMode();
+        int totalPages = document.getNumberOfPages();
+        if (mode != PdfCompressionMode.AUTO || totalPages == 0) {
+            return mode == PdfCompressionMode.RASTERIZE ? mode : PdfCompressionMode.OPTIMIZE;
+        }
 
-                // Add image to page
-                try (PDPageContentStream contentStream = new PDPageContentStream(compressedDoc, newPage)) {
-                    contentStream.drawImage(pdImage, 0, 0, page.getMediaBox().getWidth(), page.getMediaBox().getHeight());
+        int samples = Math.max(1, Math.min(totalPages, properties.getModeSamplePages()));
+        long contentBytes = 0;
+        for (int s = 0; s < samples; s++) {
+            PDPage page = document.getPage((int) ((long) s * totalPages / samples));
+            PDResources resources = page.getResources();
+            if (resources != null && resources.getFontNames().iterator().hasNext()) {
+                return PdfCompressionMode.OPTIMIZE;
+            }
+            contentBytes += streamLength(page.getCOSObject().getDictionaryObject(COSName.CONTENTS));
+            if (resources != null) {
+                // Drawings are often kept in forms the page merely places
+                for (COSName name : resources.getXObjectNames()) {
+                    if (!resources.isImageXObject(name)) {
+                        contentBytes += streamLength(resources.getCOSObject()
+                                .getCOSDictionary(COSName.XOBJECT).getDictionaryObject(name));
+                    }
                 }
+            }
+        }
+        return contentBytes / samples > properties.getRasterizeContentThreshold().toBytes()
+                ? PdfCompressionMode.RASTERIZE
+                : PdfCompressionMode.OPTIMIZE;
+    }
 
-                // Report progress
-                progressCallback.accept(20 + (70 * (i + 1) / totalPages));
+    private static long streamLength(COSBase contents) {
+        if (contents instanceof COSStream stream) {
+            return stream.getLength();
+        }
+        long length = 0;
+        if (contents instanceof COSArray array) {
+            for (COSBase item : array) {
+                length += streamLength(item instanceof COSObject object ? object.getObject() : item);
+            }
+        }
+        return length;
+    }
+
+    private void optimize(File sourceFile, PDDocument document, File targetFile, float quality, long targetBytes,
+                          Consumer<Integer> progressCallback, CancellationToken cancellation) throws IOException {
+        new PdfOptimizer(document, jpegEncoder, bufferPool, qualitySearch, quality, properties.getMaxImageDpi(),
+                targetBytes, cancellation).optimize(progressCallback);
+
+        // Object streams with a cross-reference stream, writing only what is still referenced
+        document.save(targetFile, CompressParameters.DEFAULT_COMPRESSION);
+
+        if (targetFile.length() >= sourceFile.length()) {
+            // Already as compact as this can make it
+            Files.copy(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void rasterize(File sourceFile, PDDocument document, File targetFile, float quality, long targetBytes,
+                           Consumer<Integer> progressCallback, CancellationToken cancellation) throws IOException {
+        try (PDDocument compressedDoc = pdfDocumentLoader.create(
+                (long) document.getNumberOfPages() * ESTIMATED_PAGE_BYTES)) {
+
+            int totalPages = document.getNumberOfPages();
+            // Every page gets an even share of the target
+            long pageBudget = targetBytes > 0 && totalPages > 0
+                    ? Math.max(1, targetBytes / totalPages - PAGE_OVERHEAD_BYTES)
+                    : 0;
+            // Pages are rendered and encoded on the fan-out pool, each worker with its own document handle
+            OrderedFanOut<PDDocument, RenderedPage> renderJob = new OrderedFanOut<>(fanOutExecutor,
+                    sourceFile.getName(), totalPages, properties.getRenderParallelism(),
+                    properties.getMaxPagesInFlight(), cancellation, page -> page.jpeg().close());
+            try {
+                renderJob.start(document, () -> pdfDocumentLoader.load(sourceFile), handle -> {
+                    PDFRenderer renderer = new PDFRenderer(handle);
+                    return pageIndex -> renderPage(handle, renderer, pageIndex, quality, pageBudget, cancellation);
+                });
+
+                // Assemble pages in order as the workers finish them
+                for (int i = 0; i < totalPages; i++) {
+                    cancellation.throwIfCancelled();
+                    RenderedPage rendered = renderJob.take(i);
+
+                    // Create new page
+                    PDPage newPage = new PDPage(new PDRectangle(rendered.width(), rendered.height()));
+                    compressedDoc.addPage(newPage);
+
+                    // Embed the already encoded JPEG as-is
+                    PDImageXObject pdImage;
+                    try (PooledBytes jpeg = rendered.jpeg()) {
+                        pdImage = JPEGFactory.createFromStream(compressedDoc, jpeg.inputStream());
+                    }
+
+                    // Add image to page
+                    try (PDPageContentStream contentStream = new PDPageContentStream(compressedDoc, newPage)) {
+                        contentStream.drawImage(pdImage, 0, 0, rendered.width(), rendered.height());
+                    }
+
+                    // Report progress
+                    progressCallback.accept(20 + (70 * (i + 1) / totalPages));
+                }
+            } finally {
+                renderJob.finish();
             }
 
             // Save compressed document
             compressedDoc.save(targetFile);
+        }
+    }
 
-            // Report completion
-            progressCallback.accept(100);
+    private RenderedPage renderPage(PDDocument document, PDFRenderer renderer, int pageIndex, float quality,
+                                    long budget, CancellationToken cancellation) throws IOException {
+        PDPage page = document.getPage(pageIndex);
+        PDRectangle cropBox = page.getCropBox();
+        boolean rotated = page.getRotation() % 180 != 0;
+        float width = rotated ? cropBox.getHeight() : cropBox.getWidth();
+        float height = rotated ? cropBox.getWidth() : cropBox.getHeight();
 
-        } catch (IOException e) {
-            log.error("Failed to compress PDF", e);
-            throw FileProcessingException.compressionFailed(sourceFile.getName(), e.getMessage());
-        }
+        BufferedImage image = renderer.renderImageWithDPI(pageIndex, properties.getRenderDpi(), ImageType.RGB);
+        PooledBytes jpeg = budget > 0 ? qualitySearch.encode(image, budget, cancellation).data()
+                : jpegEncoder.encode(image, quality);
+        return new RenderedPage(width, height, jpeg);
+    }
+
+    private record RenderedPage(float width, float height, PooledBytes jpeg) {
     }
 }
@@ -0,0 +1,685 @@
+package com.koushik.fileconverter.strategy.compressor;
+
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.PooledBytes;
+import com.koushik.fileconverter.strategy.image.JpegEncoder;
+import com.koushik.fileconverter.strategy.image.QualitySearch;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.contentstream.PDContentStream;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Shrinks a PDF without rasterizing it, so text stays text and vector
+ * graphics stay sharp. Pictures are re-encoded as JPEG, downsampled to a
+ * resolution cap, and kept only where that makes them smaller; a picture
+ * repeated on many pages is re-encoded once and shared by all of them.
+ * Unfiltered streams are deflated; fonts and XObjects that nothing draws
+ * are dropped from resources; and identical streams and fonts are stored
+ * once. The document is changed in place; saving it writes only the
+ * objects that are still reachable.
+ */
+@Slf4j
+final class PdfOptimizer {
+
+    // Pictures smaller than this are not worth re-encoding
+    private static final long MIN_IMAGE_BYTES = 4 * 1024;
+    // Shorter streams do not shrink when deflated
+    private static final long MIN_DEFLATE_BYTES = 64;
+    // Objects nested deeper than this are never treated as duplicates
+    private static final int MAX_KEY_DEPTH = 16;
+    // Encodings that either cannot be decoded here or already beat JPEG for their content
+    private static final Set<COSName> KEPT_IMAGE_FILTERS =
+            Set.of(COSName.JBIG2_DECODE, COSName.JPX_DECODE, COSName.CCITTFAX_DECODE);
+    private static final String UNIQUE = "";
+
+    private final PDDocument document;
+    private final JpegEncoder jpegEncoder;
+    private final BufferPool bufferPool;
+    private final QualitySearch qualitySearch;
+    private final float quality;
+    private final float maxImageDpi;
+    private final long targetBytes;
+    private final CancellationToken cancellation;
+
+    // Every picture shown through a resource dictionary, including the copies replaced by a shared one
+    private final Set<COSStream> visitedImages = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<COSStream> visitedForms = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Pictures by their content as found, before any is re-encoded
+    private final ContentKeys imageKeys = new ContentKeys();
+    private final Map<String, COSBase> uniqueImages = new HashMap<>();
+    private final List<PendingImage> images = new ArrayList<>();
+    private int sharedImages;
+
+    /**
+     * Pictures are encoded at {@code quality}, or, if {@code targetBytes} is
+     * positive, at the highest quality that lets the document fit it.
+     */
+    PdfOptimizer(PDDocument document, JpegEncoder jpegEncoder, BufferPool bufferPool, QualitySearch qualitySearch,
+                 float quality, float maxImageDpi, long targetBytes, CancellationToken cancellation) {
+        this.document = document;
+        this.jpegEncoder = jpegEncoder;
+        this.bufferPool = bufferPool;
+        this.qualitySearch = qualitySearch;
+        this.quality = quality;
+        this.maxImageDpi = maxImageDpi;
+        this.targetBytes = targetBytes;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Optimizes the whole document, reporting progress from 20 to 90.
+     * Everything but the pictures is done first, so that what a target
+     * size leaves for the pictures is known before any is re-encoded.
+     */
+    void optimize(Consumer<Integer> progressCallback) throws IOException {
+        ObjectGraph graph = new ObjectGraph();
+        removeUnusedResources(graph);
+
+        for (PDPage page : document.getPages()) {
+            cancellation.throwIfCancelled();
+            PDRectangle box = page.getMediaBox();
+            int maxPixels = (int) Math.ceil(Math.max(box.getWidth(), box.getHeight()) / 72 * maxImageDpi);
+            collectImages(page.getResources(), maxPixels);
+        }
+        if (sharedImages > 0) {
+            log.debug("Shared {} repeated pictures instead of re-encoding them", sharedImages);
+        }
+
+        cancellation.throwIfCancelled();
+        // Pictures are deflated, if at all, once it is known they are not re-encoded
+        deflateStreams(graph.streams.stream().filter(stream -> !visitedImages.contains(stream)).toList());
+        deduplicate();
+        progressCallback.accept(30);
+
+        long[] budgets = targetBytes > 0 ? imageBudgets() : null;
+        for (int i = 0; i < images.size(); i++) {
+            cancellation.throwIfCancelled();
+            PendingImage pending = images.get(i);
+            try {
+                recompressImage(pending.image(), pending.maxPixels(), budgets == null ? 0 : budgets[i]);
+            } catch (IOException | RuntimeException e) {
+                // A picture that cannot be decoded is kept exactly as it was
+                log.debug("Keeping picture {} as it is", i, e);
+            }
+            progressCallback.accept(30 + 60 * (i + 1) / images.size());
+        }
+        deflateStreams(images.stream().map(pending -> pending.image().getCOSObject()).toList());
+    }
+
+    private void collectImages(PDResources resources, int maxPixels) {
+        if (resources == null) {
+            return;
+        }
+        COSDictionary xObjects = resources.getCOSObject().getCOSDictionary(COSName.XOBJECT);
+        for (COSName name : resources.getXObjectNames()) {
+            try {
+                COSBase item = xObjects.getItem(name);
+                COSBase shared = sharedImage(item);
+                if (shared != item) {
+                    // Show the copy already seen, which is re-encoded only once
+                    xObjects.setItem(name, shared);
+                    visitedImages.add((COSStream) dereference(item));
+                    sharedImages++;
+                    continue;
+                }
+                PDXObject xObject = resources.getXObject(name);
+                if (xObject instanceof PDImageXObject image && visitedImages.add(image.getCOSObject())) {
+                    images.add(new PendingImage(image, maxPixels));
+                } else if (xObject instanceof PDFormXObject form && visitedForms.add(form.getCOSObject())) {
+                    collectImages(form.getResources(), maxPixels);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Keeping XObject {} as it is", name.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * The first occurrence of the picture {@code item} refers to, or
+     * {@code item} itself if it is the first or not a picture. Pictures are
+     * the same if their data and dictionaries are, soft masks included, so
+     * generators that embed a logo anew on every page still share it.
+     */
+    private COSBase sharedImage(COSBase item) throws IOException {
+        if (!(dereference(item) instanceof COSStream stream)
+                || !COSName.IMAGE.equals(stream.getCOSName(COSName.SUBTYPE))) {
+            return item;
+        }
+        String key = imageKeys.of(stream);
+        if (key == null) {
+            return item;
+        }
+        COSBase first = uniqueImages.putIfAbsent(key, item);
+        return first == null ? item : first;
+    }
+
+    /**
+     * Bytes each collected picture may take for the document to fit the
+     * target: what the document takes without its re-encodable pictures is
+     * measured by saving it, and the rest is shared among those pictures in
+     * proportion to the pixels each keeps. Pictures left as they are get 0.
+     */
+    private long[] imageBudgets() throws IOException {
+        long[] budgets = new long[images.size()];
+        double[] pixels = new double[images.size()];
+        double totalPixels = 0;
+        long pictureBytes = 0;
+        for (int i = 0; i < images.size(); i++) {
+            PDImageXObject image = images.get(i).image();
+            if (isRecompressible(image)) {
+                int subsampling = subsampling(image, images.get(i).maxPixels());
+                pixels[i] = (double) (image.getWidth() / subsampling) * (image.getHeight() / subsampling);
+                totalPixels += pixels[i];
+                pictureBytes += image.getCOSObject().getLength();
+            }
+        }
+        if (totalPixels == 0) {
+            return budgets;
+        }
+
+        cancellation.throwIfCancelled();
+        ByteCounter counter = new ByteCounter();
+        document.save(counter, CompressParameters.DEFAULT_COMPRESSION);
+        long available = targetBytes - (counter.count - pictureBytes);
+        for (int i = 0; i < images.size(); i++) {
+            if (pixels[i] > 0) {
+                budgets[i] = Math.max(1, (long) (available * pixels[i] / totalPixels));
+            }
+        }
+        log.debug("{} of {} target bytes left for {} pictures", available, targetBytes, images.size());
+        return budgets;
+    }
+
+    private boolean isRecompressible(PDImageXObject image) {
+        COSStream stream = image.getCOSObject();
+        // Colour key masks name sample values of the original encoding
+        return !image.isStencil() && image.getBitsPerComponent() != 1 && stream.getLength() >= MIN_IMAGE_BYTES
+                && !(stream.getDictionaryObject(COSName.MASK) instanceof COSArray)
+                && image.getStream().getFilters().stream().noneMatch(KEPT_IMAGE_FILTERS::contains);
+    }
+
+    private static int subsampling(PDImageXObject image, int maxPixels) {
+        return Math.max(1, Math.ceilDiv(Math.max(image.getWidth(), image.getHeight()), maxPixels));
+    }
+
+    /**
+     * Replaces the picture's data with a JPEG, downsampled so neither side
+     * exceeds {@code maxPixels}, if that is smaller than what is there now.
+     * With a positive {@code budget} the JPEG's quality is searched for to
+     * fit it. The stream is rewritten in place, so everything that shows it
+     * keeps pointing at it; its soft mask, if any, is left alone.
+     */
+    private void recompressImage(PDImageXObject image, int maxPixels, long budget) throws IOException {
+        if (!isRecompressible(image)) {
+            return;
+        }
+
+        COSStream stream = image.getCOSObject();
+        BufferedImage decoded = image.getOpaqueImage(null, subsampling(image, maxPixels));
+        boolean gray = decoded.getColorModel().getNumColorComponents() == 1;
+        try (PooledBytes jpeg = budget > 0 ? qualitySearch.encode(decoded, budget, cancellation).data()
+                : jpegEncoder.encode(decoded, quality)) {
+            if (jpeg.length() >= stream.getLength()) {
+                return;
+            }
+            try (OutputStream out = stream.createRawOutputStream()) {
+                jpeg.writeTo(out);
+            }
+        }
+        stream.setItem(COSName.FILTER, COSName.DCT_DECODE);
+        stream.removeItem(COSName.DECODE_PARMS);
+        stream.removeItem(COSName.DECODE);
+        stream.setInt(COSName.WIDTH, decoded.getWidth());
+        stream.setInt(COSName.HEIGHT, decoded.getHeight());
+        stream.setInt(COSName.BITS_PER_COMPONENT, 8);
+        stream.setItem(COSName.COLORSPACE, gray ? COSName.DEVICEGRAY : COSName.DEVICERGB);
+    }
+
+    /**
+     * Deflates streams stored without any filter. XMP metadata is left
+     * readable, as archival PDF requires.
+     */
+    private void deflateStreams(List<COSStream> streams) throws IOException {
+        for (COSStream stream : streams) {
+            if (stream.getFilters() != null || stream.getLength() < MIN_DEFLATE_BYTES
+                    || COSName.METADATA.equals(stream.getCOSName(COSName.TYPE))) {
+                continue;
+            }
+            try (PooledBytes data = bufferPool.allocate((int) stream.getLength())) {
+                try (InputStream in = stream.createRawInputStream()) {
+                    data.readFrom(in);
+                }
+                try (OutputStream out = stream.createOutputStream(COSName.FLATE_DECODE)) {
+                    data.writeTo(out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops fonts and XObjects that no page draws from the resources listing
+     * them. Generators often give every page one resource dictionary naming
+     * all the pictures of the document, which keeps pictures no page shows.
+     * Content is parsed to see which names are used; a resource dictionary is
+     * only trimmed if everything that can draw from it was parsed.
+     */
+    private void removeUnusedResources(ObjectGraph graph) {
+        ContentScan scan = new ContentScan();
+        for (PDPage page : document.getPages()) {
+            cancellation.throwIfCancelled();
+            // Pages inherit resources from the page tree nodes above them
+            for (COSDictionary node = page.getCOSObject(); node != null;
+                 node = node.getCOSDictionary(COSName.PARENT)) {
+                scan.scanned.add(node);
+            }
+            PDResources resources = page.getResources();
+            if (resources != null) {
+                scan.scan(page, resources.getCOSObject());
+            }
+        }
+
+        scan.usages.forEach((resources, usage) -> {
+            List<COSBase> referrers = graph.resourceReferrers.getOrDefault(resources, List.of());
+            if (usage.unknown || graph.references(resources) != referrers.size()
+                    || !scan.scanned.containsAll(referrers)) {
+                return;
+            }
+            removeUnused(graph, resources, COSName.XOBJECT, usage.xObjects);
+            removeUnused(graph, resources, COSName.FONT, usage.fonts);
+        });
+    }
+
+    private static void removeUnused(ObjectGraph graph, COSDictionary resources, COSName category, Set<COSName> used) {
+        COSDictionary names = resources.getCOSDictionary(category);
+        // A category dictionary shared with other resources may list what they use
+        if (names == null || graph.references(names) != 1) {
+            return;
+        }
+        for (COSName name : new ArrayList<>(names.keySet())) {
+            if (!used.contains(name)) {
+                names.removeItem(name);
+            }
+        }
+    }
+
+    /**
+     * Stores identical streams, fonts and font descriptors once, pointing
+     * every reference at the first of them.
+     */
+    private void deduplicate() throws IOException {
+        ContentKeys keys = new ContentKeys();
+        Map<String, COSBase> canonical = new HashMap<>();
+        Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<COSBase> pending = new ArrayDeque<>();
+        pending.push(document.getDocumentCatalog().getCOSObject());
+        while (!pending.isEmpty()) {
+            COSBase container = pending.pop();
+            if (container instanceof COSDictionary dictionary) {
+                for (COSName name : new ArrayList<>(dictionary.keySet())) {
+                    COSBase item = dictionary.getItem(name);
+                    COSBase shared = shared(keys, canonical, item);
+                    if (shared != item) {
+                        dictionary.setItem(name, shared);
+                    }
+                    push(pending, visited, shared);
+                }
+            } else if (container instanceof COSArray array) {
+                for (int i = 0; i < array.size(); i++) {
+                    COSBase item = array.get(i);
+                    COSBase shared = shared(keys, canonical, item);
+                    if (shared != item) {
+                        array.set(i, shared);
+                    }
+                    push(pending, visited, shared);
+                }
+            }
+        }
+    }
+
+    private COSBase shared(ContentKeys keys, Map<String, COSBase> canonical, COSBase item) throws IOException {
+        COSBase value = dereference(item);
+        if (!isShareable(value)) {
+            return item;
+        }
+        String key = keys.of(value);
+        if (key == null) {
+            return item;
+        }
+        COSBase first = canonical.putIfAbsent(key, item);
+        return first == null ? item : first;
+    }
+
+    private boolean isShareable(COSBase value) {
+        if (value instanceof COSStream stream) {
+            // Pictures are shared by their content before they are re-encoded
+            return !visitedImages.contains(stream);
+        }
+        if (value instanceof COSDictionary dictionary) {
+            COSName type = dictionary.getCOSName(COSName.TYPE);
+            return COSName.FONT.equals(type) || COSName.FONT_DESC.equals(type);
+        }
+        return false;
+    }
+
+    private static void push(Deque<COSBase> pending, Set<COSBase> visited, COSBase item) {
+        COSBase value = dereference(item);
+        if ((value instanceof COSDictionary || value instanceof COSArray) && visited.add(value)) {
+            pending.push(value);
+        }
+    }
+
+    private static COSBase dereference(COSBase item) {
+        return item instanceof COSObject object ? object.getObject() : item;
+    }
+
+    private record PendingImage(PDImageXObject image, int maxPixels) {
+    }
+
+    /**
+     * Discards what is written to it, counting the bytes.
+     */
+    private static final class ByteCounter extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * Every stream reachable from the catalog, how often each dictionary is
+     * referred to, and which containers refer to each resource dictionary.
+     */
+    private final class ObjectGraph {
+        private final Set<COSStream> streams = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Map<COSDictionary, List<COSBase>> resourceReferrers = new IdentityHashMap<>();
+        private final Map<COSDictionary, Integer> referenceCounts = new IdentityHashMap<>();
+
+        private ObjectGraph() {
+            Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            Deque<COSBase> pending = new ArrayDeque<>();
+            pending.push(document.getDocumentCatalog().getCOSObject());
+            while (!pending.isEmpty()) {
+                COSBase container = pending.pop();
+                if (container instanceof COSStream stream) {
+                    streams.add(stream);
+                }
+                if (container instanceof COSDictionary dictionary) {
+                    for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                        COSBase value = dereference(entry.getValue());
+                        if (COSName.RESOURCES.equals(entry.getKey()) && value instanceof COSDictionary resources) {
+                            resourceReferrers.computeIfAbsent(resources, r -> new ArrayList<>()).add(container);
+                        }
+                        count(value);
+                        push(pending, visited, value);
+                    }
+                } else if (container instanceof COSArray array) {
+                    for (COSBase item : array) {
+                        COSBase value = dereference(item);
+                        count(value);
+                        push(pending, visited, value);
+                    }
+                }
+            }
+        }
+
+        private void count(COSBase value) {
+            if (value instanceof COSDictionary dictionary) {
+                referenceCounts.merge(dictionary, 1, Integer::sum);
+            }
+        }
+
+        private int references(COSDictionary dictionary) {
+            return referenceCounts.getOrDefault(dictionary, 0);
+        }
+    }
+
+    /**
+     * Which fonts and XObjects each resource dictionary is drawn from, found
+     * by parsing page content and, recursively, the forms it draws.
+     */
+    private static final class ContentScan {
+        private final Map<COSDictionary, ResourceUsage> usages = new IdentityHashMap<>();
+        private final Set<COSBase> scanned = Collections.newSetFromMap(new IdentityHashMap<>());
+        // A form without resources of its own draws from those of whatever shows it
+        private final Map<COSStream, Set<COSDictionary>> scannedForms = new IdentityHashMap<>();
+
+        private void scan(PDContentStream content, COSDictionary resources) {
+            ResourceUsage usage = usages.computeIfAbsent(resources, r -> new ResourceUsage());
+            PDFStreamParser parser = null;
+            try {
+                parser = new PDFStreamParser(content);
+                COSName operand = null;
+                for (Object token = parser.parseNextToken(); token != null; token = parser.parseNextToken()) {
+                    if (token instanceof COSName name) {
+                        operand = name;
+                    } else if (token instanceof Operator operator) {
+                        if (operand != null) {
+                            use(operator.getName(), operand, resources, usage);
+                        }
+                        operand = null;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Could not parse content to find unused resources", e);
+                usage.unknown = true;
+            } finally {
+                if (parser != null) {
+                    try {
+                        parser.close();
+                    } catch (IOException e) {
+                        log.debug("Failed to close content parser", e);
+                    }
+                }
+            }
+        }
+
+        private void use(String operator, COSName name, COSDictionary resources, ResourceUsage usage) {
+            switch (operator) {
+                case "Do" -> {
+                    usage.xObjects.add(name);
+                    if (resource(resources, COSName.XOBJECT, name) instanceof COSStream form
+                            && COSName.FORM.equals(form.getCOSName(COSName.SUBTYPE))) {
+                        COSDictionary own = form.getCOSDictionary(COSName.RESOURCES);
+                        COSDictionary drawnFrom = own != null ? own : resources;
+                        if (scannedForms.computeIfAbsent(form, f -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                                .add(drawnFrom)) {
+                            scanned.add(form);
+                            scan(new PDFormXObject(form), drawnFrom);
+                        }
+                    }
+                }
+                case "Tf" -> {
+                    usage.fonts.add(name);
+                    // Type 3 glyphs without resources of their own draw from the page's
+                    if (resource(resources, COSName.FONT, name) instanceof COSDictionary font
+                            && COSName.TYPE3.equals(font.getCOSName(COSName.SUBTYPE))
+                            && font.getCOSDictionary(COSName.RESOURCES) == null) {
+                        usage.unknown = true;
+                    }
+                }
+                case "gs" -> {
+                    // So may the group of a soft mask
+                    if (resource(resources, COSName.EXT_G_STATE, name) instanceof COSDictionary state
+                            && state.getCOSDictionary(COSName.SMASK) instanceof COSDictionary mask
+                            && mask.getDictionaryObject(COSName.G) instanceof COSStream group
+                            && group.getCOSDictionary(COSName.RESOURCES) == null) {
+                        usage.unknown = true;
+                    }
+                }
+                case "scn", "SCN" -> {
+                    // And a tiling pattern
+                    if (resource(resources, COSName.PATTERN, name) instanceof COSStream pattern
+                            && pattern.getCOSDictionary(COSName.RESOURCES) == null) {
+                        usage.unknown = true;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        private static COSBase resource(COSDictionary resources, COSName category, COSName name) {
+            COSDictionary names = resources.getCOSDictionary(category);
+            return names == null ? null : names.getDictionaryObject(name);
+        }
+    }
+
+    private static final class ResourceUsage {
+        private final Set<COSName> xObjects = new HashSet<>();
+        private final Set<COSName> fonts = new HashSet<>();
+        // Something drawing from these resources could not be followed
+        private boolean unknown;
+    }
+
+    /**
+     * Content digests of objects, equal for objects that would be written
+     * out identically. References are compared by what they point to, so two
+     * fonts are equal if their descriptors and font files are. Objects that
+     * refer back to themselves, or nest too deeply, are never equal to any
+     * other.
+     */
+    private static final class ContentKeys {
+        private final Map<COSBase, String> keys = new IdentityHashMap<>();
+        private final Set<COSBase> inProgress = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final byte[] buffer = new byte[8192];
+
+        private String of(COSBase value) throws IOException {
+            String key = keyOf(value, 0);
+            return UNIQUE.equals(key) ? null : key;
+        }
+
+        private String keyOf(COSBase value, int depth) throws IOException {
+            String known = keys.get(value);
+            if (known != null) {
+                return known;
+            }
+            if (depth > MAX_KEY_DEPTH || !inProgress.add(value)) {
+                return UNIQUE;
+            }
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                if (!update(digest, value, depth)) {
+                    keys.put(value, UNIQUE);
+                    return UNIQUE;
+                }
+                String key = HexFormat.of().formatHex(digest.digest());
+                keys.put(value, key);
+                return key;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                inProgress.remove(value);
+            }
+        }
+
+        private boolean update(MessageDigest digest, COSBase value, int depth) throws IOException {
+            if (value instanceof COSObject object) {
+                COSBase target = object.getObject();
+                String key = keyOf(target == null ? COSNull.NULL : target, depth + 1);
+                digest.update(("R" + key + ";").getBytes(StandardCharsets.US_ASCII));
+                return !UNIQUE.equals(key);
+            }
+            if (value instanceof COSDictionary dictionary) {
+                digest.update((byte) (value instanceof COSStream ? 'S' : 'D'));
+                List<COSName> names = new ArrayList<>(dictionary.keySet());
+                names.sort(null);
+                for (COSName name : names) {
+                    if (value instanceof COSStream && COSName.LENGTH.equals(name)) {
+                        continue;
+                    }
+                    updateName(digest, name);
+                    if (!update(digest, dictionary.getItem(name), depth + 1)) {
+                        return false;
+                    }
+                }
+                if (value instanceof COSStream stream) {
+                    digest.update((byte) ';');
+                    try (InputStream in = stream.createRawInputStream()) {
+                        for (int read; (read = in.read(buffer)) >= 0; ) {
+                            digest.update(buffer, 0, read);
+                        }
+                    }
+                }
+                digest.update((byte) ';');
+                return true;
+            }
+            if (value instanceof COSArray array) {
+                digest.update((byte) '[');
+                for (COSBase item : array) {
+                    if (!update(digest, item, depth + 1)) {
+                        return false;
+                    }
+                }
+                digest.update((byte) ']');
+                return true;
+            }
+            if (value instanceof COSName name) {
+                updateName(digest, name);
+            } else if (value instanceof COSString string) {
+                byte[] bytes = string.getBytes();
+                digest.update(("s" + bytes.length + ":").getBytes(StandardCharsets.US_ASCII));
+                digest.update(bytes);
+            } else if (value instanceof COSNumber || value instanceof COSBoolean) {
+                digest.update(("v" + value + ";").getBytes(StandardCharsets.US_ASCII));
+            } else if (value == null || value instanceof COSNull) {
+                digest.update((byte) 'n');
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private static void updateName(MessageDigest digest, COSName name) {
+            byte[] bytes = name.getName().getBytes(StandardCharsets.UTF_8);
+            digest.update(("/" + bytes.length + ":").getBytes(StandardCharsets.US_ASCII));
+            digest.update(bytes);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.koushik.fileconverter.strategy.converter;
 
 import com.koushik.fileconverter.constant.FileFormat;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.service.CancellationToken;
 
 import java.io.File;
 import java.util.function.Consumer;
@@ -22,7 +23,31 @@ public interface ConversionStrategy {
      * @param sourceFile The source file to convert
      * @param targetFile The target file to create
      * @param progressCallback Callback to report conversion progress (0-100)
+     * @param cancellation Checked between pages or paragraphs; once it is cancelled the strategy
+     *                     stops with a {@link java.util.concurrent.CancellationException}
      * @throws FileProcessingException if the conversion fails
      */
-    void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback) throws FileProcessingException;
+    void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback,
+                 CancellationToken cancellation) throws FileProcessingException;
+
+    /**
+     * Version of the output this strategy produces. Bump it whenever a change alters
+     * the converted files, so results cached by an older version are not reused.
+     *
+     * @return the strategy version
+     */
+    default String version() {
+        return "1";
+    }
+
+    /**
+     * The settings this strategy reads that change its output, in any stable form.
+     * It is part of the cache key, so results produced under other settings are
+     * not reused after the configuration changes.
+     *
+     * @return the output-affecting settings, empty if there are none
+     */
+    default String cacheFingerprint() {
+        return "";
+    }
 }
@@ -0,0 +1,168 @@
+package com.koushik.fileconverter.strategy.converter;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a minimal DOCX package, streaming the document body as it is
+ * produced, so a document of any length is written in constant memory.
+ * Paragraphs hold plain text runs separated by line breaks; text is added
+ * through {@link #text}, which accepts any string and drops characters XML
+ * cannot carry.
+ */
+class DocxPackageWriter implements TextSink, AutoCloseable {
+
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    private static final String CONTENT_TYPES = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+            <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+            <Default Extension="xml" ContentType="application/xml"/>\
+            <Override PartName="/word/document.xml" \
+            ContentType="application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml"/>\
+            </Types>""";
+
+    private static final String RELATIONSHIPS = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+            <Relationship Id="rId1" \
+            Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument" \
+            Target="word/document.xml"/>\
+            </Relationships>""";
+
+    private final ZipOutputStream zip;
+    private final XMLStreamWriter xml;
+    private final StringBuilder line = new StringBuilder();
+    private boolean inParagraph;
+
+    DocxPackageWriter(OutputStream out) throws IOException {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        writePart("[Content_Types].xml", CONTENT_TYPES);
+        writePart("_rels/.rels", RELATIONSHIPS);
+
+        zip.putNextEntry(new ZipEntry("word/document.xml"));
+        try {
+            xml = XMLOutputFactory.newFactory().createXMLStreamWriter(zip, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.setPrefix("w", W);
+            xml.writeStartElement(W, "document");
+            xml.writeNamespace("w", W);
+            xml.writeStartElement(W, "body");
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writePart(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    @Override
+    public void startParagraph() throws IOException {
+        endParagraph();
+        try {
+            xml.writeStartElement(W, "p");
+            xml.writeStartElement(W, "r");
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        inParagraph = true;
+    }
+
+    @Override
+    public void text(String text) throws IOException {
+        if (!inParagraph) {
+            startParagraph();
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 ? c < 0xFFFE && !Character.isSurrogate(c) : c == '\t') {
+                line.append(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                line.append(c).append(text.charAt(++i));
+            }
+        }
+    }
+
+    @Override
+    public void lineBreak() throws IOException {
+        if (!inParagraph) {
+            return;
+        }
+        try {
+            flushLine();
+            xml.writeEmptyElement(W, "br");
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void endParagraph() throws IOException {
+        if (!inParagraph) {
+            return;
+        }
+        try {
+            flushLine();
+            xml.writeEndElement(); // r
+            xml.writeEndElement(); // p
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        inParagraph = false;
+    }
+
+    @Override
+    public void pageBreak() throws IOException {
+        endParagraph();
+        try {
+            xml.writeStartElement(W, "p");
+            xml.writeStartElement(W, "r");
+            xml.writeEmptyElement(W, "br");
+            xml.writeAttribute(W, "type", "page");
+            xml.writeEndElement();
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void flushLine() throws XMLStreamException {
+        if (line.isEmpty()) {
+            return;
+        }
+        xml.writeStartElement(W, "t");
+        xml.writeAttribute("xml:space", "preserve");
+        xml.writeCharacters(line.toString());
+        xml.writeEndElement();
+        line.setLength(0);
+    }
+
+    /**
+     * Ends the document and finishes the package; the underlying stream is closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try (zip) {
+            endParagraph();
+            xml.writeEndElement(); // body
+            xml.writeEndElement(); // document
+            xml.writeEndDocument();
+            xml.flush();
+            xml.close();
+            zip.closeEntry();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.koushik.fileconverter.strategy.converter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the text of a DOCX body paragraph by paragraph, straight from the
+ * package's main document part, without building a document model. Memory
+ * stays constant however long the document is. Paragraphs inside tables and
+ * content controls are read in document order; text boxes, deleted text and
+ * field codes are skipped.
+ */
+class DocxTextReader implements AutoCloseable {
+
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String MC = "http://schemas.openxmlformats.org/markup-compatibility/2006";
+    private static final String OFFICE_DOCUMENT =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument";
+    private static final String PACKAGE_RELATIONSHIPS = "_rels/.rels";
+    private static final String DEFAULT_MAIN_PART = "word/document.xml";
+
+    private static final XMLInputFactory XML_INPUT = xmlInputFactory();
+
+    private final ZipFile zip;
+    private final long size;
+    private final CountingInputStream in;
+    private final XMLStreamReader xml;
+
+    DocxTextReader(File source) throws IOException {
+        this.zip = new ZipFile(source);
+        try {
+            ZipEntry main = zip.getEntry(mainPart());
+            if (main == null) {
+                throw new IOException("Not a Word document: no main document part");
+            }
+            this.size = main.getSize();
+            this.in = new CountingInputStream(zip.getInputStream(main));
+            this.xml = XML_INPUT.createXMLStreamReader(in);
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            zip.close();
+            throw e instanceof IOException io ? io : new IOException(e);
+        }
+    }
+
+    private static XMLInputFactory xmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * The main part is named by the package relationships; it is almost always
+     * word/document.xml, which is assumed if the relationships cannot be read.
+     */
+    private String mainPart() throws IOException {
+        ZipEntry relationships = zip.getEntry(PACKAGE_RELATIONSHIPS);
+        if (relationships == null) {
+            return DEFAULT_MAIN_PART;
+        }
+        try (InputStream rels = zip.getInputStream(relationships)) {
+            XMLStreamReader reader = XML_INPUT.createXMLStreamReader(rels);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "Relationship".equals(reader.getLocalName())
+                            && OFFICE_DOCUMENT.equals(reader.getAttributeValue(null, "Type"))) {
+                        String target = reader.getAttributeValue(null, "Target");
+                        return target.startsWith("/") ? target.substring(1) : target;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return DEFAULT_MAIN_PART;
+    }
+
+    /**
+     * Uncompressed size of the document part, or -1 if the package does not record it.
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Bytes of the document part read so far.
+     */
+    long getPosition() {
+        return in.count;
+    }
+
+    /**
+     * Reads the next paragraph of the body into {@code sink}.
+     *
+     * @return false once the body has no more paragraphs
+     */
+    boolean readParagraph(TextSink sink) throws IOException {
+        try {
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT && isSkipped()) {
+                    skipElement();
+                } else if (event == XMLStreamConstants.START_ELEMENT && isW("p")) {
+                    readParagraphContent(sink);
+                    return true;
+                }
+            }
+            return false;
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void readParagraphContent(TextSink sink) throws XMLStreamException, IOException {
+        sink.startParagraph();
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isSkipped() || isW("pPr")) {
+                    // Paragraph properties hold tab stops, not tabs
+                    skipElement();
+                } else if (isW("t")) {
+                    sink.text(xml.getElementText());
+                } else if (isW("tab")) {
+                    sink.text("\t");
+                    depth++;
+                } else if (isW("br")) {
+                    if ("page".equals(xml.getAttributeValue(W, "type"))) {
+                        sink.pageBreak();
+                    } else {
+                        sink.lineBreak();
+                    }
+                    depth++;
+                } else if (isW("cr")) {
+                    sink.lineBreak();
+                    depth++;
+                } else {
+                    depth++;
+                }
+            }
+        }
+        sink.endParagraph();
+    }
+
+    private boolean isW(String localName) {
+        return localName.equals(xml.getLocalName()) && W.equals(xml.getNamespaceURI());
+    }
+
+    private boolean isSkipped() {
+        // Text boxes are anchored in a paragraph's runs, and repeated in a fallback
+        // for older readers
+        return isW("txbxContent") || (MC.equals(xml.getNamespaceURI()) && "Fallback".equals(xml.getLocalName()));
+    }
+
+    private void skipElement() throws XMLStreamException {
+        for (int depth = 1; depth > 0; ) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
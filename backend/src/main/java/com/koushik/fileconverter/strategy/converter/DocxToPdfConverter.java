@@ -2,84 +2,70 @@ package com.koushik.fileconverter.strategy.converter;
 
 import com.koushik.fileconverter.constant.FileFormat;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.strategy.pdf.FontCache;
+import com.koushik.fileconverter.strategy.pdf.FontMetrics;
+import com.koushik.fileconverter.strategy.pdf.PdfDocumentLoader;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class DocxToPdfConverter implements ConversionStrategy {
 
     private static final float MARGIN = 50;
     private static final float LINE_SPACING = 15;
     private static final int FONT_SIZE = 12;
 
+    private final PdfDocumentLoader pdfDocumentLoader;
+    private final FontCache fontCache;
+
     @Override
     public boolean supports(FileFormat sourceFormat, FileFormat targetFormat) {
         return sourceFormat == FileFormat.DOCX && targetFormat == FileFormat.PDF;
     }
 
     @Override
-    public void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback) throws FileProcessingException {
-        try (FileInputStream fis = new FileInputStream(sourceFile);
-             XWPFDocument document = new XWPFDocument(fis);
-             PDDocument pdf = new PDDocument()) {
+    public String version() {
+        // 2: paragraphs, including those in tables, wrapped to the page width over as many pages as needed
+        // 3: text in an embedded TrueType font subset
+        return "3";
+    }
 
-            List<XWPFParagraph> paragraphs = document.getParagraphs();
-            PDPage page = new PDPage();
-            pdf.addPage(page);
+    @Override
+    public String cacheFingerprint() {
+        return fontCache.cacheFingerprint();
+    }
+
+    @Override
+    public void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback,
+                        CancellationToken cancellation) throws FileProcessingException {
+        try (DocxTextReader reader = new DocxTextReader(sourceFile);
+             PDDocument pdf = pdfDocumentLoader.create(sourceFile.length())) {
 
             // Report initial progress
             progressCallback.accept(20);
 
-            try (PDPageContentStream contentStream = new PDPageContentStream(pdf, page)) {
-                contentStream.beginText();
-                contentStream.setFont(PDType1Font.TIMES_ROMAN, FONT_SIZE);
-                contentStream.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN);
-
-                float currentY = page.getMediaBox().getHeight() - MARGIN;
-
+            FontMetrics metrics = new FontMetrics(fontCache.textFont(pdf), FONT_SIZE);
+            try (PdfTextLayout layout = new PdfTextLayout(pdf, metrics, PDRectangle.LETTER, MARGIN, LINE_SPACING)) {
                 // Report progress at text processing start
                 progressCallback.accept(40);
 
-                for (int i = 0; i < paragraphs.size(); i++) {
-                    String text = paragraphs.get(i).getText();
-                    if (currentY <= MARGIN) {
-                        contentStream.endText();
-                        page = new PDPage();
-                        pdf.addPage(page);
-                        contentStream.close();
-                        try (PDPageContentStream newStream = new PDPageContentStream(pdf, page)) {
-                            newStream.beginText();
-                            newStream.setFont(PDType1Font.TIMES_ROMAN, FONT_SIZE);
-                            newStream.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN);
-                            currentY = page.getMediaBox().getHeight() - MARGIN;
-                            newStream.showText(text);
-                            newStream.newLineAtOffset(0, -LINE_SPACING);
-                            currentY -= LINE_SPACING;
-                            newStream.endText();
-                        }
-                    } else {
-                        contentStream.showText(text);
-                        contentStream.newLineAtOffset(0, -LINE_SPACING);
-                        currentY -= LINE_SPACING;
-                    }
+                long size = Math.max(1, reader.getSize());
+                do {
+                    cancellation.throwIfCancelled();
 
                     // Report incremental progress during text processing
-                    progressCallback.accept(40 + (50 * i / paragraphs.size()));
-                }
-
-                contentStream.endText();
+                    progressCallback.accept(40 + (int) (50 * Math.min(reader.getPosition(), size) / size));
+                } while (reader.readParagraph(layout));
             }
 
             pdf.save(targetFile);
@@ -87,6 +73,8 @@ public class DocxToPdfConverter implements ConversionStrategy {
             // Report completion
             progressCallback.accept(100);
 
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to convert DOCX to PDF", e);
             throw FileProcessingException.conversionFailed(
@@ -2,18 +2,30 @@ package com.koushik.fileconverter.strategy.converter;
 
 import com.koushik.fileconverter.constant.FileFormat;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.strategy.image.ImageCodecPool;
+import com.koushik.fileconverter.strategy.image.ImageDecoder;
+import com.koushik.fileconverter.strategy.image.ImageSource;
+import com.koushik.fileconverter.strategy.image.PooledImageWriter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.RenderedImage;
 import java.io.File;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class ImageFormatConverter implements ConversionStrategy {
 
+    private final ImageDecoder imageDecoder;
+    private final ImageCodecPool codecPool;
+
     @Override
     public boolean supports(FileFormat sourceFormat, FileFormat targetFormat) {
         return (sourceFormat == FileFormat.JPG && targetFormat == FileFormat.PNG) ||
@@ -21,24 +33,51 @@ public class ImageFormatConverter implements ConversionStrategy {
     }
 
     @Override
-    public void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback) throws FileProcessingException {
+    public String version() {
+        // 2: JPG output of images over the decode budget is subsampled
+        // 3: it is only subsampled if that is enabled
+        return "3";
+    }
+
+    @Override
+    public String cacheFingerprint() {
+        return imageDecoder.cacheFingerprint();
+    }
+
+    @Override
+    public void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback,
+                        CancellationToken cancellation) throws FileProcessingException {
         try {
             // Report start of reading
             progressCallback.accept(20);
 
-            // Read image
-            BufferedImage image = ImageIO.read(sourceFile);
+            String targetFormat = targetFile.getName().substring(targetFile.getName().lastIndexOf('.') + 1);
+            try (ImageSource source = imageDecoder.open(sourceFile)) {
+                // PNG is encoded row by row, so large images can be decoded in strips;
+                // JPEG needs the whole image
+                RenderedImage image = targetFormat.equalsIgnoreCase("png")
+                        ? source.readStriped()
+                        : source.readWhole(cancellation);
 
-            // Report progress after reading
-            progressCallback.accept(50);
+                // Report progress after reading
+                progressCallback.accept(50);
+                cancellation.throwIfCancelled();
 
-            // Write image in target format
-            String targetFormat = targetFile.getName().substring(targetFile.getName().lastIndexOf('.') + 1);
-            ImageIO.write(image, targetFormat, targetFile);
+                // Write image in target format. Like ImageIO.write, replace the file,
+                // since the random access output stream would not truncate it
+                targetFile.delete();
+                try (PooledImageWriter pooled = codecPool.writer(targetFormat);
+                     ImageOutputStream output = ImageIO.createImageOutputStream(targetFile)) {
+                    pooled.writer().setOutput(output);
+                    pooled.writer().write(image);
+                }
+            }
 
             // Report completion
             progressCallback.accept(100);
 
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to convert image format", e);
             throw FileProcessingException.conversionFailed(
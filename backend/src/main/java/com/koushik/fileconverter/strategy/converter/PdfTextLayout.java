@@ -0,0 +1,193 @@
+package com.koushik.fileconverter.strategy.converter;
+
+import com.koushik.fileconverter.strategy.pdf.FontMetrics;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.io.IOException;
+
+/**
+ * Lays out paragraphs of plain text onto pages of a PDF as they arrive.
+ * Paragraphs are wrapped at word boundaries to the width between the
+ * margins, and a new page is started whenever the current one is full; each
+ * page's content stream is closed before the next is opened, so only the
+ * current page is ever being written. Characters the font cannot show are
+ * replaced rather than failing the document.
+ */
+class PdfTextLayout implements TextSink, AutoCloseable {
+
+    private static final int TAB_WIDTH = 4;
+    private static final int REPLACEMENT = '?';
+
+    private final PDDocument pdf;
+    private final FontMetrics metrics;
+    private final PDRectangle pageSize;
+    private final float margin;
+    private final float leading;
+    private final float lineWidth;
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder word = new StringBuilder();
+
+    private PDPageContentStream content;
+    private boolean inParagraph;
+    private float y;
+    private float width;
+    private float wordWidth;
+
+    PdfTextLayout(PDDocument pdf, FontMetrics metrics, PDRectangle pageSize, float margin, float leading) {
+        this.pdf = pdf;
+        this.metrics = metrics;
+        this.pageSize = pageSize;
+        this.margin = margin;
+        this.leading = leading;
+        this.lineWidth = pageSize.getWidth() - 2 * margin;
+    }
+
+    @Override
+    public void startParagraph() throws IOException {
+        endParagraph();
+        inParagraph = true;
+    }
+
+    /**
+     * Adds text to the current paragraph, starting one if needed. Spaces and
+     * tabs are where lines may wrap; line feeds force a line break.
+     */
+    @Override
+    public void text(String text) throws IOException {
+        inParagraph = true;
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (c == '\n' || c == '\r') {
+                lineBreak();
+            } else if (c == ' ' || c == '\t') {
+                endWord();
+                for (int n = c == '\t' ? TAB_WIDTH : 1; n > 0; n--) {
+                    space();
+                }
+            } else if (c >= 0x20) {
+                append(c);
+            }
+        }
+    }
+
+    @Override
+    public void lineBreak() throws IOException {
+        endWord();
+        emitLine();
+    }
+
+    /**
+     * Ends the current paragraph with its last line; an empty paragraph takes
+     * up one blank line.
+     */
+    @Override
+    public void endParagraph() throws IOException {
+        if (!inParagraph) {
+            return;
+        }
+        endWord();
+        emitLine();
+        inParagraph = false;
+    }
+
+    /**
+     * Continues on a new page. Text laid out before the break in the same
+     * paragraph ends its line.
+     */
+    @Override
+    public void pageBreak() throws IOException {
+        endWord();
+        if (!line.isEmpty()) {
+            emitLine();
+        }
+        closePage();
+    }
+
+    private void append(int c) throws IOException {
+        float charWidth = metrics.width(c);
+        if (charWidth == FontMetrics.MISSING) {
+            c = REPLACEMENT;
+            charWidth = metrics.width(c);
+        }
+        if (wordWidth + charWidth > lineWidth && !word.isEmpty()) {
+            // A word wider than a line is broken wherever it reaches the margin
+            endWord();
+            emitLine();
+        }
+        word.appendCodePoint(c);
+        wordWidth += charWidth;
+    }
+
+    private void space() throws IOException {
+        float spaceWidth = metrics.width(' ');
+        if (width + spaceWidth > lineWidth) {
+            emitLine();
+        } else if (!line.isEmpty()) {
+            line.append(' ');
+            width += spaceWidth;
+        }
+    }
+
+    private void endWord() throws IOException {
+        if (word.isEmpty()) {
+            return;
+        }
+        if (width + wordWidth > lineWidth && !line.isEmpty()) {
+            emitLine();
+        }
+        line.append(word);
+        width += wordWidth;
+        word.setLength(0);
+        wordWidth = 0;
+    }
+
+    private void emitLine() throws IOException {
+        if (content == null || y - leading < margin) {
+            newPage();
+        } else {
+            content.newLine();
+            y -= leading;
+        }
+        if (!line.isEmpty()) {
+            content.showText(line.toString());
+        }
+        line.setLength(0);
+        width = 0;
+    }
+
+    private void newPage() throws IOException {
+        closePage();
+        PDPage page = new PDPage(pageSize);
+        pdf.addPage(page);
+        content = new PDPageContentStream(pdf, page);
+        content.beginText();
+        content.setFont(metrics.getFont(), metrics.getFontSize());
+        content.setLeading(leading);
+        y = pageSize.getHeight() - margin;
+        content.newLineAtOffset(margin, y);
+    }
+
+    private void closePage() throws IOException {
+        if (content != null) {
+            content.endText();
+            content.close();
+            content = null;
+        }
+    }
+
+    /**
+     * Finishes the last page. A document without any text still gets one blank page.
+     */
+    @Override
+    public void close() throws IOException {
+        endParagraph();
+        if (content == null && pdf.getNumberOfPages() == 0) {
+            pdf.addPage(new PDPage(pageSize));
+        }
+        closePage();
+    }
+}
@@ -1,56 +1,97 @@
 package com.koushik.fileconverter.strategy.converter;
 
+import com.koushik.fileconverter.config.PdfProcessingProperties;
 import com.koushik.fileconverter.constant.FileFormat;
 import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.FanOutExecutor;
+import com.koushik.fileconverter.service.OrderedFanOut;
+import com.koushik.fileconverter.strategy.pdf.PdfDocumentLoader;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.apache.poi.xwpf.usermodel.XWPFRun;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class PdfToDocxConverter implements ConversionStrategy {
 
+    private final PdfProcessingProperties properties;
+    private final FanOutExecutor fanOutExecutor;
+    private final PdfDocumentLoader pdfDocumentLoader;
+
     @Override
     public boolean supports(FileFormat sourceFormat, FileFormat targetFormat) {
         return sourceFormat == FileFormat.PDF && targetFormat == FileFormat.DOCX;
     }
 
     @Override
-    public void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback) throws FileProcessingException {
-        try (PDDocument pdfDocument = Loader.loadPDF(sourceFile);
-             XWPFDocument docxDocument = new XWPFDocument()) {
+    public String version() {
+        // 2: one paragraph per detected paragraph, with a page break between pages
+        return "2";
+    }
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(pdfDocument);
+    @Override
+    public void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback,
+                        CancellationToken cancellation) throws FileProcessingException {
+        try (PDDocument pdfDocument = pdfDocumentLoader.load(sourceFile);
+             DocxPackageWriter docx = new DocxPackageWriter(
+                     new BufferedOutputStream(new FileOutputStream(targetFile)))) {
 
             // Report initial progress
             progressCallback.accept(20);
 
-            // Create paragraph in DOCX
-            XWPFParagraph paragraph = docxDocument.createParagraph();
-            XWPFRun run = paragraph.createRun();
-            run.setText(text);
-
-            // Report progress after text extraction
-            progressCallback.accept(60);
+            int totalPages = pdfDocument.getNumberOfPages();
+            int chunkPages = Math.max(1, properties.getTextChunkPages());
+            int parallelism = Math.min(properties.getTextParallelism(), Math.ceilDiv(totalPages, chunkPages));
+            IntConsumer pageDone = page -> progressCallback.accept(20 + (75 * page / Math.max(1, totalPages)));
 
-            // Save the DOCX document
-            try (FileOutputStream out = new FileOutputStream(targetFile)) {
-                docxDocument.write(out);
+            if (totalPages < properties.getParallelTextThreshold() || parallelism < 2) {
+                // Text goes into the document page by page as it is extracted
+                new SinkTextStripper(docx, pageDone, cancellation::isCancelled)
+                        .writeText(pdfDocument, Writer.nullWriter());
+            } else {
+                // Page ranges are stripped on the fan-out pool, each worker with its own document handle;
+                // at most two ranges per worker are held ahead of the one being written
+                int chunkCount = Math.ceilDiv(totalPages, chunkPages);
+                OrderedFanOut<PDDocument, RecordedText> job = new OrderedFanOut<>(fanOutExecutor,
+                        sourceFile.getName(), chunkCount, parallelism, 2 * parallelism, cancellation, text -> {
+                });
+                try {
+                    job.start(pdfDocument, () -> pdfDocumentLoader.load(sourceFile), handle -> chunk -> {
+                        RecordedText text = new RecordedText();
+                        SinkTextStripper stripper = new SinkTextStripper(text, page -> {
+                        }, job::isStopped);
+                        stripper.setStartPage(chunk * chunkPages + 1);
+                        stripper.setEndPage(Math.min(totalPages, (chunk + 1) * chunkPages));
+                        stripper.writeText(handle, Writer.nullWriter());
+                        return text;
+                    });
+                    for (int chunk = 0; chunk < chunkCount; chunk++) {
+                        cancellation.throwIfCancelled();
+                        job.take(chunk).replay(docx);
+                        pageDone.accept(Math.min(totalPages, (chunk + 1) * chunkPages));
+                    }
+                } finally {
+                    job.finish();
+                }
             }
 
-            // Report completion
-            progressCallback.accept(100);
-
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to convert PDF to DOCX", e);
             throw FileProcessingException.conversionFailed(
@@ -59,5 +100,68 @@ public class PdfToDocxConverter implements ConversionStrategy {
                 e.getMessage()
             );
         }
+
+        // Report completion
+        progressCallback.accept(100);
+    }
+
+    /**
+     * Sends the stripper's paragraphs, lines and words to a {@link TextSink}
+     * instead of into one string, so only the page being extracted is held in
+     * memory. Stops before a page once {@code stopped} is true, with a
+     * {@link CancellationException}.
+     */
+    private static final class SinkTextStripper extends PDFTextStripper {
+
+        private final TextSink sink;
+        private final IntConsumer pageDone;
+        private final BooleanSupplier stopped;
+
+        private SinkTextStripper(TextSink sink, IntConsumer pageDone, BooleanSupplier stopped) {
+            this.sink = sink;
+            this.pageDone = pageDone;
+            this.stopped = stopped;
+        }
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            if (stopped.getAsBoolean()) {
+                throw new CancellationException("Conversion stopped at page " + getCurrentPageNo());
+            }
+            if (getCurrentPageNo() > 1) {
+                sink.pageBreak();
+            }
+        }
+
+        @Override
+        protected void endPage(PDPage page) throws IOException {
+            sink.endParagraph();
+            pageDone.accept(getCurrentPageNo());
+        }
+
+        @Override
+        protected void writeParagraphStart() throws IOException {
+            sink.startParagraph();
+        }
+
+        @Override
+        protected void writeParagraphEnd() throws IOException {
+            sink.endParagraph();
+        }
+
+        @Override
+        protected void writeLineSeparator() throws IOException {
+            sink.lineBreak();
+        }
+
+        @Override
+        protected void writeWordSeparator() throws IOException {
+            sink.text(getWordSeparator());
+        }
+
+        @Override
+        protected void writeString(String text) throws IOException {
+            sink.text(text);
+        }
     }
 }
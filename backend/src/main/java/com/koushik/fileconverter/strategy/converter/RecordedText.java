@@ -0,0 +1,73 @@
+package com.koushik.fileconverter.strategy.converter;
+
+import java.io.IOException;
+
+/**
+ * Text extracted ahead of time, kept until it can be replayed into the
+ * output in document order. Structure is stored as control characters in a
+ * single buffer; control characters in the text itself are dropped, as the
+ * DOCX writer would drop them anyway.
+ */
+class RecordedText implements TextSink {
+
+    private static final char START_PARAGRAPH = '\u0001';
+    private static final char LINE_BREAK = '\u0002';
+    private static final char END_PARAGRAPH = '\u0003';
+    private static final char PAGE_BREAK = '\u0004';
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Override
+    public void startParagraph() {
+        buffer.append(START_PARAGRAPH);
+    }
+
+    @Override
+    public void text(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 || c == '\t') {
+                buffer.append(c);
+            }
+        }
+    }
+
+    @Override
+    public void lineBreak() {
+        buffer.append(LINE_BREAK);
+    }
+
+    @Override
+    public void endParagraph() {
+        buffer.append(END_PARAGRAPH);
+    }
+
+    @Override
+    public void pageBreak() {
+        buffer.append(PAGE_BREAK);
+    }
+
+    void replay(TextSink target) throws IOException {
+        int textStart = 0;
+        for (int i = 0; i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            if (c >= 0x20 || c == '\t') {
+                continue;
+            }
+            if (textStart < i) {
+                target.text(buffer.substring(textStart, i));
+            }
+            textStart = i + 1;
+            switch (c) {
+                case START_PARAGRAPH -> target.startParagraph();
+                case LINE_BREAK -> target.lineBreak();
+                case END_PARAGRAPH -> target.endParagraph();
+                case PAGE_BREAK -> target.pageBreak();
+                default -> throw new IllegalStateException("Unknown marker " + (int) c);
+            }
+        }
+        if (textStart < buffer.length()) {
+            target.text(buffer.substring(textStart));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.koushik.fileconverter.strategy.converter;
+
+import java.io.IOException;
+
+/**
+ * Receives extracted text as paragraphs, lines and pages.
+ */
+interface TextSink {
+
+    void startParagraph() throws IOException;
+
+    void text(String text) throws IOException;
+
+    void lineBreak() throws IOException;
+
+    void endParagraph() throws IOException;
+
+    void pageBreak() throws IOException;
+}
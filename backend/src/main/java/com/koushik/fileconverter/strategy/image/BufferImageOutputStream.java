@@ -0,0 +1,62 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.service.PooledBytes;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+
+/**
+ * Writes an encoded image into a {@link PooledBytes} buffer, which stays
+ * owned by the caller, instead of into the cache blocks of a
+ * {@code MemoryCacheImageOutputStream} that are then copied out again.
+ */
+public class BufferImageOutputStream extends ImageOutputStreamImpl {
+
+    private final PooledBytes target;
+
+    public BufferImageOutputStream(PooledBytes target) {
+        this.target = target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        target.write(streamPos++, b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        target.write(streamPos, b, off, len);
+        streamPos += len;
+    }
+
+    @Override
+    public int read() {
+        bitOffset = 0;
+        if (streamPos >= target.length()) {
+            return -1;
+        }
+        return target.array()[(int) streamPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= target.length()) {
+            return -1;
+        }
+        int count = (int) Math.min(len, target.length() - streamPos);
+        System.arraycopy(target.array(), (int) streamPos, b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return target.length();
+    }
+}
@@ -0,0 +1,49 @@
+package com.koushik.fileconverter.strategy.image;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * Reads an image straight from a byte array, without the copy into cache
+ * blocks that {@code MemoryCacheImageInputStream} makes.
+ */
+public class ByteArrayImageInputStream extends ImageInputStreamImpl {
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    public ByteArrayImageInputStream(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int read() {
+        bitOffset = 0;
+        if (streamPos >= length) {
+            return -1;
+        }
+        return bytes[offset + (int) streamPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= length) {
+            return -1;
+        }
+        int count = (int) Math.min(len, length - streamPos);
+        System.arraycopy(bytes, offset + (int) streamPos, b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+}
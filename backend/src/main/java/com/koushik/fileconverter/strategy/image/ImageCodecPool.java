@@ -0,0 +1,133 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.constant.FileFormat;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reuses image readers and writers, and their parameters, instead of looking
+ * them up in the ImageIO service registry and disposing them on every call.
+ * A borrowed codec belongs to the borrowing thread until it is closed, which
+ * resets it and returns it to the pool. Codecs beyond the pool size are
+ * disposed.
+ */
+@Component
+public class ImageCodecPool {
+
+    private static final int SNIFF_LENGTH = 8;
+
+    private final int poolSize;
+    private final Map<String, BlockingQueue<PooledImageWriter>> writers = new ConcurrentHashMap<>();
+    private final Map<String, BlockingQueue<PooledImageReader>> readers = new ConcurrentHashMap<>();
+
+    public ImageCodecPool(ImageProcessingProperties properties) {
+        this.poolSize = Math.max(1, properties.getCodecPoolSize());
+    }
+
+    /**
+     * Borrows a writer for the given format name or file extension, e.g. "jpg".
+     */
+    public PooledImageWriter writer(String format) throws IOException {
+        String key = normalize(format);
+        PooledImageWriter pooled = idle(writers, key).poll();
+        if (pooled != null) {
+            return pooled;
+        }
+        Iterator<ImageWriter> found = ImageIO.getImageWritersByFormatName(key);
+        if (!found.hasNext()) {
+            throw new IOException("No image writer found for " + format);
+        }
+        return new PooledImageWriter(this, key, found.next());
+    }
+
+    /**
+     * Borrows a reader for the given format name or file extension, e.g. "png".
+     */
+    public PooledImageReader reader(String format) throws IOException {
+        String key = normalize(format);
+        PooledImageReader pooled = idle(readers, key).poll();
+        if (pooled != null) {
+            return pooled;
+        }
+        Iterator<ImageReader> found = ImageIO.getImageReadersByFormatName(key);
+        if (!found.hasNext()) {
+            throw new IOException("No image reader found for " + format);
+        }
+        return new PooledImageReader(this, key, found.next());
+    }
+
+    /**
+     * Borrows a reader for the image in {@code input}, telling JPEG and PNG
+     * apart by their signature and asking the service registry about anything
+     * else. The reader's input is set to {@code input}.
+     */
+    public PooledImageReader reader(ImageInputStream input) throws IOException {
+        PooledImageReader pooled = sniff(input)
+                .filter(format -> format == FileFormat.JPG || format == FileFormat.PNG)
+                .map(format -> readerOrNull(format.getExtension()))
+                .orElse(null);
+        if (pooled == null) {
+            Iterator<ImageReader> found = ImageIO.getImageReaders(input);
+            if (!found.hasNext()) {
+                throw new IOException("No image reader found for input");
+            }
+            ImageReader reader = found.next();
+            pooled = new PooledImageReader(this, normalize(reader.getFormatName()), reader);
+        }
+        pooled.reader().setInput(input, true, true);
+        return pooled;
+    }
+
+    private PooledImageReader readerOrNull(String format) {
+        try {
+            return reader(format);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Optional<FileFormat> sniff(ImageInputStream input) throws IOException {
+        byte[] header = new byte[SNIFF_LENGTH];
+        input.mark();
+        try {
+            int length = input.read(header);
+            return FileFormat.sniff(header, Math.max(0, length));
+        } finally {
+            input.reset();
+        }
+    }
+
+    void release(PooledImageWriter pooled) {
+        if (!idle(writers, pooled.format()).offer(pooled)) {
+            pooled.writer().dispose();
+        }
+    }
+
+    void release(PooledImageReader pooled) {
+        if (!idle(readers, pooled.format()).offer(pooled)) {
+            pooled.reader().dispose();
+        }
+    }
+
+    private <T> BlockingQueue<T> idle(Map<String, BlockingQueue<T>> pools, String format) {
+        return pools.computeIfAbsent(format, key -> new ArrayBlockingQueue<>(poolSize));
+    }
+
+    private static String normalize(String format) {
+        String name = format.toLowerCase(Locale.ROOT);
+        return name.equals("jpg") ? "jpeg" : name;
+    }
+}
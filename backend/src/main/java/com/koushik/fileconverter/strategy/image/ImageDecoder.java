@@ -0,0 +1,49 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Opens images for decoding within the configured per-job memory budget,
+ * instead of letting {@code ImageIO.read} allocate the full pixel buffer.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImageDecoder {
+
+    private final ImageProcessingProperties properties;
+    private final ImageCodecPool codecPool;
+
+    /**
+     * The settings that decide how an image is decoded, for cache keys.
+     */
+    public String cacheFingerprint() {
+        return "decode-budget=" + properties.getDecodeBudget().toBytes()
+                + ",subsample-oversized=" + properties.isSubsampleOversized();
+    }
+
+    public ImageSource open(File file) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(file);
+        if (input == null) {
+            throw new IOException("Cannot open image: " + file.getName());
+        }
+        PooledImageReader reader = null;
+        try {
+            reader = codecPool.reader(input);
+            return new ImageSource(file.getName(), reader, input, properties.getDecodeBudget().toBytes(),
+                    properties.isSubsampleOversized());
+        } catch (IOException | RuntimeException e) {
+            if (reader != null) {
+                reader.close();
+            }
+            input.close();
+            throw e;
+        }
+    }
+}
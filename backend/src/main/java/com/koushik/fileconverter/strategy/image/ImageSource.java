@@ -0,0 +1,136 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.service.CancellationToken;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * An image opened for budgeted decoding. Only the header has been read; pixels
+ * are decoded by {@link #readWhole} or {@link #readStriped()}.
+ */
+@Slf4j
+public class ImageSource implements AutoCloseable {
+
+    // Rows decoded per strip at the least, so tiny budgets still make progress
+    private static final int MIN_STRIP_ROWS = 16;
+
+    private final String name;
+    private final PooledImageReader pooledReader;
+    private final ImageReader reader;
+    private final ImageInputStream input;
+    private final long budget;
+    private final boolean subsampleOversized;
+    private final int width;
+    private final int height;
+    private final long bytesPerPixel;
+
+    ImageSource(String name, PooledImageReader pooledReader, ImageInputStream input, long budget,
+                boolean subsampleOversized) throws IOException {
+        this.name = name;
+        this.pooledReader = pooledReader;
+        this.reader = pooledReader.reader();
+        this.input = input;
+        this.budget = budget;
+        this.subsampleOversized = subsampleOversized;
+        this.width = reader.getWidth(0);
+        this.height = reader.getHeight(0);
+        this.bytesPerPixel = bytesPerPixel(reader);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Heap needed to decode the whole image at full resolution.
+     */
+    public long getDecodedSize() {
+        return (long) width * height * bytesPerPixel;
+    }
+
+    /**
+     * Decodes the whole image, for encoders that need it in one piece, as JPEG
+     * does. It keeps its full resolution, which memory admission accounts for,
+     * unless subsampling oversized images is enabled; then it is subsampled
+     * just enough to fit the budget, and a note on the job says so.
+     */
+    public BufferedImage readWhole(CancellationToken cancellation) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        int step = subsamplingStep();
+        if (step > 1) {
+            log.info("Subsampling {}x{} image by {} to stay within the decode budget", width, height, step);
+            param.setSourceSubsampling(step, step, 0, 0);
+            cancellation.addNote(String.format("%s was downscaled from %dx%d to %dx%d to fit the decode budget",
+                    name, width, height, ceilDiv(width, step), ceilDiv(height, step)));
+        }
+        return reader.read(0, param);
+    }
+
+    /**
+     * Returns the image at full resolution. If it does not fit the budget, it
+     * is decoded lazily in horizontal strips as rows are requested, which suits
+     * encoders that consume rows in order, like PNG.
+     */
+    public RenderedImage readStriped() throws IOException {
+        if (getDecodedSize() <= budget) {
+            return reader.read(0);
+        }
+        int stripRows = (int) Math.max(MIN_STRIP_ROWS, Math.min(height, budget / ((long) width * bytesPerPixel)));
+        log.info("Decoding {}x{} image in strips of {} rows to stay within the decode budget", width, height, stripRows);
+        return new StripedImage(reader, width, height, stripRows);
+    }
+
+    /**
+     * Factor {@link #readWhole} subsamples each side by, 1 if it is not.
+     */
+    public int subsamplingStep() {
+        long decodedSize = getDecodedSize();
+        if (!subsampleOversized || decodedSize <= budget) {
+            return 1;
+        }
+        int step = (int) Math.ceil(Math.sqrt((double) decodedSize / budget));
+        // Rounding can leave the subsampled image just over the budget
+        while ((long) ceilDiv(width, step) * ceilDiv(height, step) * bytesPerPixel > budget) {
+            step++;
+        }
+        return step;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static long bytesPerPixel(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            type = types.hasNext() ? types.next() : null;
+        }
+        if (type == null) {
+            return 4;
+        }
+        SampleModel sampleModel = type.getSampleModel(1, 1);
+        return Math.max(1, (long) DataBuffer.getDataTypeSize(sampleModel.getDataType()) / 8
+                * sampleModel.getNumDataElements());
+    }
+
+    @Override
+    public void close() throws IOException {
+        pooledReader.close();
+        input.close();
+    }
+}
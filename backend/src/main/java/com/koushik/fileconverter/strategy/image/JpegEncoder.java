@@ -0,0 +1,48 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.PooledBytes;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Encodes images as JPEG into pooled buffers, with a writer borrowed from
+ * {@link ImageCodecPool}. The returned buffer belongs to the caller, who
+ * closes it; if encoding fails, it is returned to the pool before the
+ * exception propagates.
+ */
+@Component
+@RequiredArgsConstructor
+public class JpegEncoder {
+
+    private final ImageCodecPool codecPool;
+    private final BufferPool bufferPool;
+
+    public PooledBytes encode(BufferedImage image, float quality) throws IOException {
+        // JPEG seldom takes more than a quarter of the raw pixels
+        return encode(image, quality, image.getWidth() * image.getHeight() / 4);
+    }
+
+    /**
+     * @param initialCapacity Bytes allocated up front; the buffer grows if the image needs more
+     */
+    public PooledBytes encode(BufferedImage image, float quality, int initialCapacity) throws IOException {
+        PooledBytes compressed = bufferPool.allocate(initialCapacity);
+        try (PooledImageWriter pooled = codecPool.writer("jpeg");
+             ImageOutputStream ios = new BufferImageOutputStream(compressed)) {
+            ImageWriter writer = pooled.writer();
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), pooled.param(quality));
+        } catch (IOException | RuntimeException e) {
+            compressed.close();
+            throw e;
+        }
+        return compressed;
+    }
+}
@@ -0,0 +1,35 @@
+package com.koushik.fileconverter.strategy.image;
+
+import javax.imageio.ImageReader;
+
+/**
+ * A reader borrowed from {@link ImageCodecPool}. Closing it resets the reader,
+ * releasing its input, and returns it to the pool; the input stream itself is
+ * left for the caller to close.
+ */
+public class PooledImageReader implements AutoCloseable {
+
+    private final ImageCodecPool pool;
+    private final String format;
+    private final ImageReader reader;
+
+    PooledImageReader(ImageCodecPool pool, String format, ImageReader reader) {
+        this.pool = pool;
+        this.format = format;
+        this.reader = reader;
+    }
+
+    String format() {
+        return format;
+    }
+
+    public ImageReader reader() {
+        return reader;
+    }
+
+    @Override
+    public void close() {
+        reader.reset();
+        pool.release(this);
+    }
+}
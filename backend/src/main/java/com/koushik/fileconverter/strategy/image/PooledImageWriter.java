@@ -0,0 +1,60 @@
+package com.koushik.fileconverter.strategy.image;
+
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+
+/**
+ * A writer borrowed from {@link ImageCodecPool}, together with a write param
+ * that is reset to its defaults when the writer is returned.
+ */
+public class PooledImageWriter implements AutoCloseable {
+
+    private final ImageCodecPool pool;
+    private final String format;
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    private final int defaultCompressionMode;
+
+    PooledImageWriter(ImageCodecPool pool, String format, ImageWriter writer) {
+        this.pool = pool;
+        this.format = format;
+        this.writer = writer;
+        this.param = writer.getDefaultWriteParam();
+        this.defaultCompressionMode = param.canWriteCompressed() ? param.getCompressionMode() : -1;
+    }
+
+    String format() {
+        return format;
+    }
+
+    public ImageWriter writer() {
+        return writer;
+    }
+
+    public ImageWriteParam param() {
+        return param;
+    }
+
+    /**
+     * The write param set up for explicit compression at the given quality.
+     */
+    public ImageWriteParam param(float quality) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        return param;
+    }
+
+    @Override
+    public void close() {
+        writer.reset();
+        if (defaultCompressionMode != -1) {
+            if (param.getCompressionMode() == ImageWriteParam.MODE_EXPLICIT) {
+                param.unsetCompression();
+            }
+            param.setCompressionMode(defaultCompressionMode);
+        }
+        param.setSourceRegion(null);
+        param.setSourceSubsampling(1, 1, 0, 0);
+        pool.release(this);
+    }
+}
@@ -0,0 +1,212 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.PooledBytes;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Finds the highest JPEG quality at which an already decoded image fits a
+ * byte budget. A copy downscaled to a sixteenth of the pixels is encoded at
+ * a few qualities first, which estimates the size at any quality; full
+ * encodes then narrow down the quality, each guess taken from the estimate
+ * corrected by the sizes seen so far, or halving the remaining interval if
+ * the estimate has nothing better. Every trial encodes the same raster, so
+ * the image is decoded only once.
+ */
+@Component
+public class QualitySearch {
+
+    public static final float MIN_QUALITY = 0.05f;
+    public static final float MAX_QUALITY = 0.95f;
+
+    private static final float[] PROBE_QUALITIES = {0.1f, 0.3f, 0.5f, 0.7f, 0.9f};
+    private static final int PROBE_SCALE = 4;
+    // Smaller images are their own probe
+    private static final long MIN_PROBED_PIXELS = 256 * 256;
+    // Qualities closer than this make no visible difference
+    private static final float TOLERANCE = 0.02f;
+
+    private final JpegEncoder jpegEncoder;
+    private final int maxTrials;
+
+    public QualitySearch(ImageProcessingProperties properties, JpegEncoder jpegEncoder) {
+        this.jpegEncoder = jpegEncoder;
+        this.maxTrials = Math.max(1, properties.getTargetSizeTrials());
+    }
+
+    /**
+     * The settings that decide which quality is found, for cache keys.
+     */
+    public String cacheFingerprint() {
+        return "target-size-trials=" + maxTrials;
+    }
+
+    /**
+     * Encodes {@code image} at the highest quality found to fit
+     * {@code targetBytes}, with at most the configured number of full
+     * encodes. If none fits, it is encoded once more at the lowest quality,
+     * which is returned even if it is still too large.
+     */
+    public Result encode(BufferedImage image, long targetBytes, CancellationToken cancellation) throws IOException {
+        SizeEstimate estimate = probe(image);
+        float low = MIN_QUALITY;
+        float high = MAX_QUALITY;
+        float quality = estimate.qualityFor(targetBytes);
+        // Every trial lands between the highest quality that fit and the lowest that did not
+        Result best = null;
+        Result smallest = null;
+        try {
+            for (int trial = 0; trial < maxTrials && low < high; trial++) {
+                cancellation.throwIfCancelled();
+                PooledBytes data = jpegEncoder.encode(image, quality);
+                if (data.length() <= targetBytes) {
+                    best = replace(best, new Result(data, quality, true));
+                    low = quality;
+                } else {
+                    smallest = replace(smallest, new Result(data, quality, false));
+                    high = quality;
+                }
+                if (high - low <= TOLERANCE) {
+                    break;
+                }
+                estimate.calibrate(quality, data.length());
+                quality = estimate.qualityFor(targetBytes);
+                if (quality <= low + TOLERANCE / 2 || quality >= high - TOLERANCE / 2) {
+                    quality = (low + high) / 2;
+                }
+            }
+
+            Result result;
+            if (best != null) {
+                result = best;
+                best = null;
+            } else if (smallest.quality() <= MIN_QUALITY) {
+                result = smallest;
+                smallest = null;
+            } else {
+                cancellation.throwIfCancelled();
+                PooledBytes data = jpegEncoder.encode(image, MIN_QUALITY);
+                result = new Result(data, MIN_QUALITY, data.length() <= targetBytes);
+            }
+            return result;
+        } finally {
+            close(best);
+            close(smallest);
+        }
+    }
+
+    private static Result replace(Result previous, Result next) {
+        close(previous);
+        return next;
+    }
+
+    private static void close(Result result) {
+        if (result != null) {
+            result.close();
+        }
+    }
+
+    private SizeEstimate probe(BufferedImage image) throws IOException {
+        long pixels = (long) image.getWidth() * image.getHeight();
+        BufferedImage probe = image;
+        if (pixels >= MIN_PROBED_PIXELS) {
+            int width = Math.max(1, image.getWidth() / PROBE_SCALE);
+            int height = Math.max(1, image.getHeight() / PROBE_SCALE);
+            boolean gray = image.getColorModel().getNumColorComponents() == 1;
+            probe = new BufferedImage(width, height, gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D graphics = probe.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+        }
+
+        double scale = (double) pixels / ((long) probe.getWidth() * probe.getHeight());
+        double[] sizes = new double[PROBE_QUALITIES.length];
+        for (int i = 0; i < PROBE_QUALITIES.length; i++) {
+            try (PooledBytes data = jpegEncoder.encode(probe, PROBE_QUALITIES[i])) {
+                // Sizes only grow with quality; noise in the encoder must not make the estimate fold back
+                sizes[i] = Math.max(i > 0 ? sizes[i - 1] : 0, data.length() * scale);
+            }
+        }
+        return new SizeEstimate(sizes);
+    }
+
+    /**
+     * An encoded image and the quality it was encoded at. Closing it returns
+     * the buffer to the pool.
+     */
+    public record Result(PooledBytes data, float quality, boolean fits) implements AutoCloseable {
+        @Override
+        public void close() {
+            data.close();
+        }
+    }
+
+    /**
+     * Encoded size as a function of quality, interpolated between the probe
+     * encodes. A downscaled image has more detail per pixel than the full
+     * one, so the probe overestimates; each full encode rescales the curve to
+     * the size actually seen.
+     */
+    private static final class SizeEstimate {
+        private final double[] sizes;
+        private double correction = 1;
+
+        private SizeEstimate(double[] sizes) {
+            this.sizes = sizes;
+        }
+
+        private double bytesAt(float quality) {
+            int last = PROBE_QUALITIES.length - 1;
+            if (quality <= PROBE_QUALITIES[0]) {
+                return sizes[0] * correction;
+            }
+            if (quality >= PROBE_QUALITIES[last]) {
+                return sizes[last] * correction;
+            }
+            int i = 1;
+            while (PROBE_QUALITIES[i] < quality) {
+                i++;
+            }
+            double t = (quality - PROBE_QUALITIES[i - 1]) / (PROBE_QUALITIES[i] - PROBE_QUALITIES[i - 1]);
+            return (sizes[i - 1] + t * (sizes[i] - sizes[i - 1])) * correction;
+        }
+
+        private void calibrate(float quality, long actualBytes) {
+            double estimated = bytesAt(quality) / correction;
+            if (estimated > 0) {
+                correction = actualBytes / estimated;
+            }
+        }
+
+        /**
+         * The highest quality estimated to fit {@code targetBytes}.
+         */
+        private float qualityFor(long targetBytes) {
+            double target = targetBytes / correction;
+            int last = PROBE_QUALITIES.length - 1;
+            if (target < sizes[0]) {
+                return MIN_QUALITY;
+            }
+            if (target >= sizes[last]) {
+                return MAX_QUALITY;
+            }
+            int i = 1;
+            while (sizes[i] <= target) {
+                i++;
+            }
+            double span = sizes[i] - sizes[i - 1];
+            double t = span > 0 ? (target - sizes[i - 1]) / span : 0;
+            return (float) (PROBE_QUALITIES[i - 1] + t * (PROBE_QUALITIES[i] - PROBE_QUALITIES[i - 1]));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.koushik.fileconverter.strategy.image;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Vector;
+
+/**
+ * A full-resolution image whose pixels are decoded on demand, one strip of
+ * rows at a time, with only the most recent strip kept in memory. Rows should
+ * be requested roughly in order: each strip decode re-reads the source from
+ * the start, so jumping back and forth repeats decoding work.
+ */
+class StripedImage implements RenderedImage {
+
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+    private final int stripRows;
+    private final ColorModel colorModel;
+    private final SampleModel sampleModel;
+
+    private int currentStrip = -1;
+    private WritableRaster currentRaster;
+    private ColorModel currentColorModel;
+
+    StripedImage(ImageReader reader, int width, int height, int stripRows) throws IOException {
+        this.reader = reader;
+        this.width = width;
+        this.height = height;
+        this.stripRows = stripRows;
+        WritableRaster first = strip(0);
+        this.colorModel = currentColorModel;
+        this.sampleModel = first.getSampleModel().createCompatibleSampleModel(width, stripRows);
+    }
+
+    /**
+     * Returns the raster for the given strip, in image coordinates, decoding it
+     * unless it is the strip returned last.
+     */
+    private synchronized WritableRaster strip(int index) throws IOException {
+        if (index != currentStrip) {
+            int y = index * stripRows;
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, y, width, Math.min(stripRows, height - y)));
+            // Let the previous strip be collected before the next one is allocated
+            currentRaster = null;
+            BufferedImage decoded = reader.read(0, param);
+            currentColorModel = decoded.getColorModel();
+            currentRaster = decoded.getRaster().createWritableTranslatedChild(0, y);
+            currentStrip = index;
+        }
+        return currentRaster;
+    }
+
+    private Raster stripUnchecked(int index) {
+        try {
+            return strip(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode image rows " + index * stripRows, e);
+        }
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        Rectangle bounds = rect.intersection(new Rectangle(0, 0, width, height));
+        int first = bounds.y / stripRows;
+        int last = (bounds.y + bounds.height - 1) / stripRows;
+        if (first == last) {
+            // The common case for row-by-row encoders: a view, no copy
+            return stripUnchecked(first).createChild(bounds.x, bounds.y, bounds.width, bounds.height,
+                    bounds.x, bounds.y, null);
+        }
+        WritableRaster raster = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(bounds.width, bounds.height), bounds.getLocation());
+        return copyData(raster);
+    }
+
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            raster = Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(width, height), null);
+        }
+        Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+        for (int index = bounds.y / stripRows; index * stripRows < bounds.y + bounds.height; index++) {
+            Raster strip = stripUnchecked(index);
+            Rectangle overlap = bounds.intersection(strip.getBounds());
+            raster.setRect(strip.createChild(overlap.x, overlap.y, overlap.width, overlap.height,
+                    overlap.x, overlap.y, null));
+        }
+        return raster;
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        return stripUnchecked(tileY);
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return (height + stripRows - 1) / stripRows;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return stripRows;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+}
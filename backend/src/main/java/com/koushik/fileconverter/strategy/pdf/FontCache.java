@@ -0,0 +1,135 @@
+package com.koushik.fileconverter.strategy.pdf;
+
+import com.koushik.fileconverter.config.FontProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.fontbox.ttf.GlyphSubstitutionTable;
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.FontMapping;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Fonts for generated PDFs. The TrueType text font is parsed once, on first
+ * use, and shared by every document: a document gets its own font object
+ * over the shared glyph data, and embeds only the glyphs it used, subset
+ * when it is saved. FontBox synchronizes its reads of a parsed font, so
+ * sharing it across jobs is safe.
+ */
+@Slf4j
+@Component
+public class FontCache {
+
+    private static final Standard14Fonts.FontName STANDARD_TEXT_FONT = Standard14Fonts.FontName.TIMES_ROMAN;
+
+    private final FontProperties properties;
+
+    private TrueTypeFont textFont;
+    private boolean loaded;
+
+    public FontCache(FontProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * The font for body text in {@code document}: a subset-embedded TrueType
+     * font, or the standard Times-Roman if there is none to embed.
+     */
+    public PDFont textFont(PDDocument document) throws IOException {
+        TrueTypeFont font = loadTextFont();
+        if (font != null) {
+            try {
+                return PDType0Font.load(document, font, true);
+            } catch (IOException e) {
+                // The font's licence flags forbid embedding; that will not change
+                log.warn("Cannot embed text font {}, using standard {}", font.getName(), STANDARD_TEXT_FONT, e);
+                disableTextFont();
+            }
+        }
+        return new PDType1Font(STANDARD_TEXT_FONT);
+    }
+
+    /**
+     * The text font documents are currently set in, for cache keys. Loads it
+     * if that has not happened yet.
+     */
+    public String cacheFingerprint() {
+        TrueTypeFont font = loadTextFont();
+        if (font == null) {
+            return "text-font=" + STANDARD_TEXT_FONT.getName();
+        }
+        try {
+            return "text-font=" + font.getName() + ",embedded";
+        } catch (IOException e) {
+            return "text-font=unnamed,embedded";
+        }
+    }
+
+    private synchronized TrueTypeFont loadTextFont() {
+        if (!loaded) {
+            loaded = true;
+            if (properties.isEmbedTextFont()) {
+                textFont = findTextFont();
+            }
+        }
+        return textFont;
+    }
+
+    private synchronized void disableTextFont() {
+        textFont = null;
+    }
+
+    private TrueTypeFont findTextFont() {
+        String configured = properties.getTextFont();
+        try {
+            byte[] data;
+            if (configured != null && !configured.isBlank()) {
+                data = Files.readAllBytes(Path.of(configured));
+            } else {
+                // Prefer a serif, like the standard font it replaces
+                PDFontDescriptor serif = new PDType1Font(STANDARD_TEXT_FONT).getFontDescriptor();
+                FontMapping<TrueTypeFont> mapping =
+                        FontMappers.instance().getTrueTypeFont(STANDARD_TEXT_FONT.getName(), serif);
+                if (mapping == null) {
+                    log.info("No TrueType text font found, using standard {}", STANDARD_TEXT_FONT);
+                    return null;
+                }
+                try (InputStream in = mapping.getFont().getOriginalData()) {
+                    data = in.readAllBytes();
+                }
+            }
+            TrueTypeFont font = parse(data);
+            log.info("Embedding text font {} in generated PDFs", font.getName());
+            return font;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load text font {}, using standard {}", configured, STANDARD_TEXT_FONT, e);
+            return null;
+        }
+    }
+
+    /**
+     * Parses a private copy of the font from memory, so it holds no file handle
+     * for the life of the process and can be adjusted without affecting the
+     * fonts PDFBox shares for rendering.
+     */
+    private static TrueTypeFont parse(byte[] data) throws IOException {
+        TrueTypeFont font = new TTFParser().parse(new RandomAccessReadBuffer(data));
+        // With glyph substitutions, PDFBox rebuilds ligature matchers for every line
+        // of text shown, which made layout over ten times slower; plain glyphs also
+        // keep the text of the PDF searchable letter by letter
+        font.getTableMap().remove(GlyphSubstitutionTable.TAG);
+        return font;
+    }
+}
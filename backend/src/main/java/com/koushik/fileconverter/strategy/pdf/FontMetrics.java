@@ -0,0 +1,83 @@
+package com.koushik.fileconverter.strategy.pdf;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Advance widths of one font at one size, looked up in the font once per
+ * character and cached, so breaking text into lines costs a table lookup per
+ * character rather than a font query. Not thread-safe; use one per document.
+ */
+public final class FontMetrics {
+
+    /** Width of a character the font cannot show. */
+    public static final float MISSING = -1;
+
+    private static final float UNKNOWN = Float.NaN;
+
+    private final PDFont font;
+    private final float fontSize;
+    private final float[] latin = new float[256];
+    private final Map<Integer, Float> others = new HashMap<>();
+
+    public FontMetrics(PDFont font, float fontSize) {
+        this.font = font;
+        this.fontSize = fontSize;
+        Arrays.fill(latin, UNKNOWN);
+    }
+
+    public PDFont getFont() {
+        return font;
+    }
+
+    public float getFontSize() {
+        return fontSize;
+    }
+
+    /**
+     * @return the advance width of {@code codePoint} in user space units, or
+     * {@link #MISSING} if the font has no glyph for it
+     */
+    public float width(int codePoint) throws IOException {
+        if (codePoint < latin.length) {
+            float width = latin[codePoint];
+            if (Float.isNaN(width)) {
+                width = measure(codePoint);
+                latin[codePoint] = width;
+            }
+            return width;
+        }
+        Float width = others.get(codePoint);
+        if (width == null) {
+            width = measure(codePoint);
+            others.put(codePoint, width);
+        }
+        return width;
+    }
+
+    /**
+     * @return the width of {@code text}, whose characters must all be ones the font can show
+     */
+    public float width(CharSequence text) throws IOException {
+        float width = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = Character.codePointAt(text, i);
+            width += width(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    private float measure(int codePoint) throws IOException {
+        try {
+            return font.getStringWidth(Character.toString(codePoint)) / 1000 * fontSize;
+        } catch (IllegalArgumentException e) {
+            // Thrown when the font's encoding has no code for the character
+            return MISSING;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.koushik.fileconverter.strategy.pdf;
+
+import com.koushik.fileconverter.config.PdfProcessingProperties;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Opens and creates PDFBox documents with a stream cache chosen by size:
+ * small documents are buffered on the heap, larger ones in a mixed cache
+ * that is capped per document and spills to scratch files, so a large PDF
+ * no longer needs heap in proportion to its content.
+ */
+@Component
+public class PdfDocumentLoader {
+
+    private final PdfProcessingProperties properties;
+    private final File scratchDir;
+
+    public PdfDocumentLoader(PdfProcessingProperties properties) {
+        this.properties = properties;
+        this.scratchDir = new File(properties.getScratchDir());
+    }
+
+    public PDDocument load(File source) throws IOException {
+        StreamCacheCreateFunction streamCache = streamCache(source.length());
+        RandomAccessRead input = new RandomAccessReadBufferedFile(source);
+        try {
+            // The document closes the input
+            return new StreamCacheParser(input, streamCache).parse();
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an empty document whose content is expected to be about as large
+     * as {@code expectedSize}, typically the size of the input it is built from.
+     */
+    public PDDocument create(long expectedSize) {
+        return new PDDocument(streamCache(expectedSize));
+    }
+
+    private StreamCacheCreateFunction streamCache(long size) {
+        if (size <= properties.getMemoryOnlyThreshold().toBytes()) {
+            return MemoryUsageSetting.setupMainMemoryOnly().streamCache;
+        }
+        return () -> {
+            // Re-created on demand in case a temp directory cleaner removed it
+            Files.createDirectories(scratchDir.toPath());
+            return MemoryUsageSetting.setupMixed(properties.getMaxMainMemoryPerDocument().toBytes(),
+                            properties.getMaxScratchPerDocument().toBytes())
+                    .setTempDir(scratchDir)
+                    .streamCache
+                    .create();
+        };
+    }
+
+    /**
+     * PDFBox 3.0.1's {@link PDFParser} ignores the stream cache it is given
+     * and buffers every stream created in the loaded document on the heap.
+     * This swaps in a document that uses the chosen cache before parsing.
+     */
+    private static final class StreamCacheParser extends PDFParser {
+        StreamCacheParser(RandomAccessRead input, StreamCacheCreateFunction streamCache) throws IOException {
+            super(input);
+            document.close();
+            document = new COSDocument(streamCache, this);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.koushik.fileconverter.controller;
+
+import com.koushik.fileconverter.config.ProgressTrackingProperties;
+import com.koushik.fileconverter.service.BatchProcessingService;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.DownloadService;
+import com.koushik.fileconverter.service.FileCompressionService;
+import com.koushik.fileconverter.service.FileConversionService;
+import com.koushik.fileconverter.service.JobCancellationService;
+import com.koushik.fileconverter.service.JobStateStore;
+import com.koushik.fileconverter.service.ProgressTrackingService;
+import com.koushik.fileconverter.service.StorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FileProcessingControllerTest {
+
+    private static final String JOB_ID = "job-1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProgressTrackingService progressTrackingService;
+    private JobCancellationService jobCancellationService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ProgressTrackingProperties properties = new ProgressTrackingProperties();
+        progressTrackingService = new ProgressTrackingService(
+                new JobStateStore(properties, meterRegistry), properties, meterRegistry);
+        progressTrackingService.startDispatcher();
+        jobCancellationService = new JobCancellationService(progressTrackingService, meterRegistry);
+
+        FileProcessingController controller = new FileProcessingController(
+                mock(FileConversionService.class),
+                mock(FileCompressionService.class),
+                progressTrackingService,
+                mock(StorageService.class),
+                mock(DownloadService.class),
+                mock(BatchProcessingService.class),
+                jobCancellationService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        progressTrackingService.stopDispatcher();
+    }
+
+    @Test
+    void cancelsARunningJob() throws Exception {
+        progressTrackingService.markAsQueued(JOB_ID);
+        CancellationToken token = jobCancellationService.register(JOB_ID);
+
+        mockMvc.perform(delete("/api/v1/jobs/{jobId}", JOB_ID))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value(JOB_ID))
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+
+        assertThat(token.isCancelled()).isTrue();
+        assertThat(jobCancellationService.finish(JOB_ID)).isFalse();
+    }
+
+    @Test
+    void answersAFinishedJobWithConflict() throws Exception {
+        progressTrackingService.markAsQueued(JOB_ID);
+        jobCancellationService.register(JOB_ID);
+        jobCancellationService.finish(JOB_ID);
+        progressTrackingService.markAsCompleted(JOB_ID);
+
+        mockMvc.perform(delete("/api/v1/jobs/{jobId}", JOB_ID))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    @Test
+    void answersASecondCancelWithConflict() throws Exception {
+        progressTrackingService.markAsQueued(JOB_ID);
+        jobCancellationService.register(JOB_ID);
+
+        mockMvc.perform(delete("/api/v1/jobs/{jobId}", JOB_ID))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(delete("/api/v1/jobs/{jobId}", JOB_ID))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+    }
+
+    @Test
+    void answersAnUnknownJobWithNotFound() throws Exception {
+        mockMvc.perform(delete("/api/v1/jobs/{jobId}", "missing"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,230 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.BatchProperties;
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import com.koushik.fileconverter.config.MemoryAdmissionProperties;
+import com.koushik.fileconverter.constant.FileFormat;
+import com.koushik.fileconverter.dto.response.BatchResponseDTO;
+import com.koushik.fileconverter.exception.FileProcessingException;
+import com.koushik.fileconverter.strategy.converter.ConversionStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchProcessingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final StorageService storageService = mock(StorageService.class);
+    private final FileConversionService conversionService = mock(FileConversionService.class);
+    private final ProgressTrackingService progressTrackingService = mock(ProgressTrackingService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JobExecutionService jobExecutionService;
+    private BatchProcessingService batchService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(storageService.storeOriginalFile(any(MultipartFile.class), anyString()))
+                .thenAnswer(invocation -> store(invocation.<MultipartFile>getArgument(0).getInputStream(),
+                        invocation.getArgument(1)));
+        when(storageService.storeOriginalFile(any(InputStream.class), anyString(), anyLong()))
+                .thenAnswer(invocation -> store(invocation.getArgument(0), invocation.getArgument(1)));
+        when(storageService.createProcessedFile(anyString()))
+                .thenAnswer(invocation -> processedFile(invocation.getArgument(0)));
+
+        when(conversionService.findConverter(any(), eq(FileFormat.PDF))).thenReturn(new UppercasingConverter());
+        when(conversionService.generateTargetFilename(anyString(), eq(FileFormat.PDF)))
+                .thenAnswer(invocation -> {
+                    String name = invocation.<String>getArgument(0);
+                    return name.substring(0, name.lastIndexOf('.')) + ".pdf";
+                });
+
+        JobExecutorProperties executorProperties = new JobExecutorProperties();
+        executorProperties.setHeavy(new JobExecutorProperties.Pool(1, 10));
+        executorProperties.setLight(new JobExecutorProperties.Pool(1, 10));
+        jobExecutionService = new JobExecutionService(executorProperties, meterRegistry);
+        MemoryAdmissionProperties memoryProperties = new MemoryAdmissionProperties();
+        memoryProperties.setBudget(DataSize.ofMegabytes(64));
+
+        batchService = new BatchProcessingService(
+                new BatchProperties(),
+                executorProperties,
+                conversionService,
+                mock(FileCompressionService.class),
+                storageService,
+                progressTrackingService,
+                mock(ValidationService.class),
+                jobExecutionService,
+                mock(ResultCacheService.class),
+                mock(MemoryEstimator.class),
+                new MemoryAdmissionService(memoryProperties, meterRegistry),
+                new JobCancellationService(progressTrackingService, meterRegistry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobExecutionService.shutdown();
+    }
+
+    @Test
+    void zipsEveryConvertedFile() throws IOException {
+        BatchResponseDTO response = batchService.convertBatch(List.of(
+                upload("a.jpg", "first"),
+                upload("b.png", "second")), "pdf");
+
+        Map<String, String> entries = download(response.getJobId());
+
+        assertThat(response.getFileCount()).isEqualTo(2);
+        assertThat(entries).containsOnly(
+                Map.entry("a.pdf", "FIRST"),
+                Map.entry("b.pdf", "SECOND"));
+        verify(progressTrackingService, timeout(5000)).markAsCompleted(response.getJobId(), null);
+    }
+
+    @Test
+    void expandsUploadedArchivesAndRenamesClashingFiles() throws IOException {
+        BatchResponseDTO response = batchService.convertBatch(List.of(
+                upload("a.jpg", "outer"),
+                new MockMultipartFile("files", "photos.zip", "application/zip", zip(Map.of(
+                        "holiday/a.jpg", "inner",
+                        "__MACOSX/holiday/._a.jpg", "resource fork",
+                        "holiday/.hidden.jpg", "hidden")))), "pdf");
+
+        Map<String, String> entries = download(response.getJobId());
+
+        assertThat(entries).containsOnly(
+                Map.entry("a.pdf", "OUTER"),
+                Map.entry("a-1.pdf", "INNER"));
+    }
+
+    @Test
+    void listsFailedFilesInErrorsTxt() throws IOException {
+        BatchResponseDTO response = batchService.convertBatch(List.of(
+                upload("good.jpg", "fine"),
+                upload("broken.jpg", "fail"),
+                upload("notes.txt", "text")), "pdf");
+
+        Map<String, String> entries = download(response.getJobId());
+
+        assertThat(response.getFileCount()).isEqualTo(3);
+        assertThat(entries).containsEntry("good.pdf", "FINE");
+        assertThat(entries).doesNotContainKey("broken.pdf");
+        assertThat(entries.get("errors.txt").lines()).containsExactlyInAnyOrder(
+                "notes.txt: Unsupported file format",
+                "broken.jpg: Cannot convert fail");
+        verify(progressTrackingService, timeout(5000))
+                .markAsCompleted(response.getJobId(), "2 of 3 files failed, see errors.txt");
+    }
+
+    @Test
+    void failsTheBatchWhenNoFileCouldBeProcessed() throws IOException {
+        BatchResponseDTO response = batchService.convertBatch(List.of(upload("broken.jpg", "fail")), "pdf");
+
+        Map<String, String> entries = download(response.getJobId());
+
+        assertThat(entries).containsOnlyKeys("errors.txt");
+        verify(progressTrackingService, timeout(5000))
+                .markAsFailed(response.getJobId(), "None of the 1 files could be processed");
+    }
+
+    private Map<String, String> download(String jobId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchService.writeResults(jobId, out);
+
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    private StoredFile store(InputStream content, String name) throws IOException {
+        Path path = tempDir.resolve("originals").resolve(name);
+        Files.createDirectories(path.getParent());
+        long size = Files.copy(content, path);
+        return new StoredFile(path.toFile(), name, FileFormat.fromFilename(name), size);
+    }
+
+    private File processedFile(String name) throws IOException {
+        Path path = tempDir.resolve("processed").resolve(name);
+        Files.createDirectories(path.getParent());
+        return path.toFile();
+    }
+
+    private static MockMultipartFile upload(String name, String content) {
+        return new MockMultipartFile("files", name, "application/octet-stream",
+                content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] zip(Map<String, String> files) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry(file.getKey()));
+                zip.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the source in upper case, and fails on a file containing "fail".
+     */
+    private static final class UppercasingConverter implements ConversionStrategy {
+        @Override
+        public boolean supports(FileFormat sourceFormat, FileFormat targetFormat) {
+            return true;
+        }
+
+        @Override
+        public void convert(File sourceFile, File targetFile, Consumer<Integer> progressCallback,
+                            CancellationToken cancellation) throws FileProcessingException {
+            try {
+                String content = Files.readString(sourceFile.toPath());
+                if (content.equals("fail")) {
+                    throw new FileProcessingException("Cannot convert " + content);
+                }
+                Files.writeString(targetFile.toPath(), content.toUpperCase());
+                progressCallback.accept(100);
+            } catch (IOException e) {
+                throw new FileProcessingException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.BufferPoolProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BufferPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BufferPoolProperties properties = new BufferPoolProperties();
+    private BufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        properties.setMaxBufferSize(DataSize.ofKilobytes(64));
+        properties.setMaxRetained(DataSize.ofKilobytes(96));
+        pool = new BufferPool(properties, meterRegistry);
+    }
+
+    @Test
+    void roundsRequestsUpToPowerOfTwoClasses() {
+        assertThat(pool.acquire(0)).hasSize(8 * 1024);
+        assertThat(pool.acquire(8 * 1024)).hasSize(8 * 1024);
+        assertThat(pool.acquire(8 * 1024 + 1)).hasSize(16 * 1024);
+        assertThat(pool.acquire(40_000)).hasSize(64 * 1024);
+    }
+
+    @Test
+    void allocatesRequestsAboveTheLargestClassExactly() {
+        assertThat(pool.acquire(64 * 1024 + 1)).hasSize(64 * 1024 + 1);
+    }
+
+    @Test
+    void reusesReleasedBuffersOfTheSameClass() {
+        byte[] buffer = pool.acquire(10_000);
+        pool.release(buffer);
+
+        assertThat(pool.acquire(9_000)).isSameAs(buffer);
+        assertThat(pool.acquire(9_000)).isNotSameAs(buffer);
+        assertThat(acquired("hit")).isEqualTo(1);
+        assertThat(acquired("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void neverHandsOutABufferOfAnotherClass() {
+        pool.release(pool.acquire(8 * 1024));
+
+        assertThat(pool.acquire(16 * 1024)).hasSize(16 * 1024);
+        assertThat(acquired("hit")).isZero();
+    }
+
+    @Test
+    void ignoresBuffersItCouldNotHaveHandedOut() {
+        pool.release(new byte[10_000]);
+        pool.release(new byte[4 * 1024]);
+        pool.release(new byte[128 * 1024]);
+
+        assertThat(retained()).isZero();
+    }
+
+    @Test
+    void retainsIdleBuffersOnlyUpToTheLimit() {
+        byte[] first = pool.acquire(64 * 1024);
+        byte[] second = pool.acquire(64 * 1024);
+        byte[] small = pool.acquire(32 * 1024);
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(small);
+
+        assertThat(retained()).isEqualTo(96 * 1024);
+        assertThat(pool.acquire(64 * 1024)).isSameAs(first);
+        assertThat(pool.acquire(64 * 1024)).isNotSameAs(second);
+        assertThat(pool.acquire(32 * 1024)).isSameAs(small);
+        assertThat(retained()).isZero();
+    }
+
+    @Test
+    void pooledBytesGrowAcrossClassesAndKeepTheirContent() throws IOException {
+        byte[] content = new byte[50_000];
+        new Random(42).nextBytes(content);
+
+        byte[] firstArray;
+        try (PooledBytes bytes = pool.allocate(1_000)) {
+            firstArray = bytes.array();
+            bytes.readFrom(new ByteArrayInputStream(content));
+
+            assertThat(bytes.length()).isEqualTo(content.length);
+            assertThat(bytes.array()).hasSize(64 * 1024);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            bytes.writeTo(out);
+            assertThat(out.toByteArray()).isEqualTo(content);
+        }
+
+        // The outgrown 8, 16 and 32 KB arrays went back; the final 64 KB one did not fit the limit
+        assertThat(retained()).isEqualTo(56 * 1024);
+        assertThat(pool.acquire(1)).isSameAs(firstArray);
+    }
+
+    private double acquired(String result) {
+        return meterRegistry.get("processing.buffers.acquired").tag("result", result).counter().count();
+    }
+
+    private double retained() {
+        return meterRegistry.get("processing.buffers.retained").gauge().value();
+    }
+}
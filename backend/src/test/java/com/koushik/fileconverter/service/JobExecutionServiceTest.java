@@ -0,0 +1,139 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import com.koushik.fileconverter.constant.JobKind;
+import com.koushik.fileconverter.exception.GlobalExceptionHandler;
+import com.koushik.fileconverter.exception.JobRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class JobExecutionServiceTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private JobExecutionService service;
+
+    @BeforeEach
+    void setUp() {
+        JobExecutorProperties properties = new JobExecutorProperties();
+        properties.setHeavy(new JobExecutorProperties.Pool(1, 2));
+        properties.setMinRetryAfterSeconds(7);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new JobExecutionService(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void rejectsJobsOnceTheQueueIsFull() throws InterruptedException {
+        fillHeavyPool();
+
+        JobRejectedException rejected = catchThrowableOfType(
+                () -> service.submit("job-4", JobKind.HEAVY, 1, () -> { }), JobRejectedException.class);
+
+        assertThat(rejected).isNotNull();
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(rejected.getRetryAfterSeconds()).isGreaterThanOrEqualTo(7);
+        assertThat(meterRegistry.get("processing.jobs.rejected").tag("kind", JobKind.HEAVY.getTag())
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void queueCapIsPerKind() throws InterruptedException {
+        fillHeavyPool();
+
+        CountDownLatch ran = new CountDownLatch(1);
+        service.submit("light", JobKind.LIGHT, 1, ran::countDown);
+
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void acceptsJobsAgainOnceTheQueueDrains() throws InterruptedException {
+        fillHeavyPool();
+        assertThatThrownBy(() -> service.submit("job-4", JobKind.HEAVY, 1, () -> { }))
+                .isInstanceOf(JobRejectedException.class);
+
+        release.countDown();
+        CountDownLatch ran = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try {
+                service.submit("job-5", JobKind.HEAVY, 1, ran::countDown);
+                break;
+            } catch (JobRejectedException e) {
+                assertThat(System.nanoTime()).isLessThan(deadline);
+                Thread.sleep(10);
+            }
+        }
+
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void keepsAJobOffTheWorkersUntilItIsReady() throws InterruptedException {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        CountDownLatch waited = new CountDownLatch(1);
+        service.submit("job-1", JobKind.HEAVY, 1, ready, waited::countDown);
+
+        // The single heavy worker is free for the job behind it
+        CountDownLatch ran = new CountDownLatch(1);
+        service.submit("job-2", JobKind.HEAVY, 1, ran::countDown);
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(waited.getCount()).isEqualTo(1);
+
+        ready.complete(null);
+        assertThat(waited.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void rejectionIsAnsweredWith429AndRetryAfter() {
+        JobRejectedException rejected = JobRejectedException.queueFull(JobKind.HEAVY, 2, 12);
+
+        ResponseEntity<?> response = new GlobalExceptionHandler()
+                .handleJobRejectedException(rejected, new MockHttpServletRequest("POST", "/api/v1/compress"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("12");
+    }
+
+    /**
+     * Occupies the single heavy worker and both queue slots.
+     */
+    private void fillHeavyPool() throws InterruptedException {
+        service.submit("job-1", JobKind.HEAVY, 1, () -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        service.submit("job-2", JobKind.HEAVY, 1, this::awaitRelease);
+        service.submit("job-3", JobKind.HEAVY, 1, this::awaitRelease);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
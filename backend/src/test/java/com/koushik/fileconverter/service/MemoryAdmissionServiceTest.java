@@ -0,0 +1,148 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.MemoryAdmissionProperties;
+import com.koushik.fileconverter.exception.FileValidationException;
+import com.koushik.fileconverter.exception.JobRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryAdmissionServiceTest {
+
+    private static final long KB = 1024;
+
+    private final MemoryAdmissionProperties properties = new MemoryAdmissionProperties();
+    private SimpleMeterRegistry meterRegistry;
+    private MemoryAdmissionService service;
+
+    @BeforeEach
+    void setUp() {
+        properties.setBudget(DataSize.ofKilobytes(100));
+        meterRegistry = new SimpleMeterRegistry();
+        service = new MemoryAdmissionService(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void grantsRightAwayWhileTheBudgetHasRoom() {
+        MemoryAdmissionService.Admission admission = service.admit("job-1", 60 * KB, new CancellationToken());
+
+        assertThat(admission.decided().toCompletableFuture()).isDone();
+        admission.reservation().close();
+        assertThat(reservedBytes()).isZero();
+    }
+
+    @Test
+    void decidesAJobThatDoesNotFitOnceMemoryIsReleased() {
+        MemoryAdmissionService.Reservation running =
+                service.admit("job-1", 60 * KB, new CancellationToken()).reservation();
+
+        MemoryAdmissionService.Admission waiting = service.admit("job-2", 60 * KB, new CancellationToken());
+        assertThat(waiting.decided().toCompletableFuture()).isNotDone();
+        assertThat(waitingJobs()).isEqualTo(1);
+
+        running.close();
+
+        assertThat(waiting.decided().toCompletableFuture()).isDone();
+        assertThat(reservedBytes()).isEqualTo(60 * KB);
+        waiting.reservation().close();
+        assertThat(reservedBytes()).isZero();
+    }
+
+    @Test
+    void grantsInArrivalOrder() {
+        MemoryAdmissionService.Reservation running =
+                service.admit("job-1", 60 * KB, new CancellationToken()).reservation();
+        MemoryAdmissionService.Admission large = service.admit("job-2", 90 * KB, new CancellationToken());
+
+        // Would fit, but must not overtake the large job ahead of it
+        MemoryAdmissionService.Admission small = service.admit("job-3", 10 * KB, new CancellationToken());
+        assertThat(small.decided().toCompletableFuture()).isNotDone();
+
+        running.close();
+        assertThat(large.decided().toCompletableFuture()).isDone();
+        assertThat(small.decided().toCompletableFuture()).isDone();
+        assertThat(reservedBytes()).isEqualTo(100 * KB);
+    }
+
+    @Test
+    void rejectsAJobWhoseMemoryDoesNotFreeUpInTime() throws InterruptedException {
+        service.shutdown();
+        properties.setMaxWait(Duration.ofMillis(50));
+        meterRegistry = new SimpleMeterRegistry();
+        service = new MemoryAdmissionService(properties, meterRegistry);
+        service.admit("job-1", 60 * KB, new CancellationToken());
+
+        MemoryAdmissionService.Admission waiting = service.admit("job-2", 60 * KB, new CancellationToken());
+
+        assertThatThrownBy(waiting::reservation).isInstanceOf(JobRejectedException.class);
+        awaitTrue(() -> waitingJobs() == 0);
+        awaitTrue(() -> meterRegistry.get("processing.memory.rejected").tag("reason", "timeout")
+                .counter().count() == 1);
+    }
+
+    @Test
+    void dropsAJobCancelledWhileWaitingSoTheNextOneMovesUp() {
+        MemoryAdmissionService.Reservation running =
+                service.admit("job-1", 60 * KB, new CancellationToken()).reservation();
+        CancellationToken cancellation = new CancellationToken();
+        MemoryAdmissionService.Admission cancelled = service.admit("job-2", 90 * KB, cancellation);
+        MemoryAdmissionService.Admission next = service.admit("job-3", 30 * KB, new CancellationToken());
+
+        cancellation.cancel();
+
+        assertThatThrownBy(cancelled::reservation).isInstanceOf(CancellationException.class);
+        assertThat(next.decided().toCompletableFuture()).isDone();
+        running.close();
+        next.reservation().close();
+        assertThat(reservedBytes()).isZero();
+    }
+
+    @Test
+    void givesBackAWithdrawnAdmission() {
+        MemoryAdmissionService.Admission granted = service.admit("job-1", 60 * KB, new CancellationToken());
+        MemoryAdmissionService.Admission waiting = service.admit("job-2", 60 * KB, new CancellationToken());
+
+        waiting.withdraw();
+        granted.withdraw();
+
+        assertThat(reservedBytes()).isZero();
+        assertThat(waitingJobs()).isZero();
+    }
+
+    @Test
+    void rejectsAJobLargerThanTheWholeBudgetUpFront() {
+        assertThatThrownBy(() -> service.admit("job-1", 101 * KB, new CancellationToken()))
+                .isInstanceOf(FileValidationException.class);
+    }
+
+    private double reservedBytes() {
+        return meterRegistry.get("processing.memory.reserved").gauge().value();
+    }
+
+    private double waitingJobs() {
+        return meterRegistry.get("processing.memory.waiting").gauge().value();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 5 seconds").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
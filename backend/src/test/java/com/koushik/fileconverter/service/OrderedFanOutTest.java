@@ -0,0 +1,157 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class OrderedFanOutTest {
+
+    private static final Duration NO_HANG = Duration.ofSeconds(5);
+
+    private FanOutExecutor executor;
+    private final List<Handle> opened = new CopyOnWriteArrayList<>();
+    private final List<String> released = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        executor = new FanOutExecutor(new JobExecutorProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void hasPartsTakenInOrderAndClosesTheHandlesItOpened() throws IOException {
+        Handle shared = new Handle();
+        OrderedFanOut<Handle, String> job = fanOut(20, 3);
+
+        job.start(shared, this::open, handle -> index -> "part-" + index);
+        for (int i = 0; i < 20; i++) {
+            assertThat(job.take(i)).isEqualTo("part-" + i);
+        }
+        job.finish();
+
+        assertThat(opened).hasSize(2).allMatch(handle -> handle.closed);
+        assertThat(shared.closed).isFalse();
+        assertThat(released).isEmpty();
+    }
+
+    @Test
+    void failsTheTakeWhenTheOnlyWorkerCannotBeSetUp() {
+        OrderedFanOut<Handle, String> job = fanOut(5, 1);
+
+        job.start(new Handle(), this::open, handle -> {
+            throw new IllegalStateException("no renderer");
+        });
+
+        assertTimeoutPreemptively(NO_HANG, () -> assertThatThrownBy(() -> job.take(0))
+                .isInstanceOf(IOException.class)
+                .hasMessage("no renderer"));
+        job.finish();
+    }
+
+    @Test
+    void failsTheTakeWhenNoWorkerCanBeSetUp() {
+        OrderedFanOut<Handle, String> job = fanOut(5, 3);
+
+        job.start(new Handle(), this::open, handle -> {
+            throw new IllegalStateException("no renderer");
+        });
+
+        assertTimeoutPreemptively(NO_HANG, () -> assertThatThrownBy(() -> job.take(0))
+                .isInstanceOf(IOException.class));
+        job.finish();
+        assertThat(opened).allMatch(handle -> handle.closed);
+    }
+
+    @Test
+    void rethrowsAFailedPartAndStopsTheOthers() throws IOException {
+        OrderedFanOut<Handle, String> job = fanOut(10, 2);
+
+        job.start(new Handle(), this::open, handle -> index -> {
+            if (index == 3) {
+                throw new IOException("page 4 is broken");
+            }
+            return "part-" + index;
+        });
+
+        assertTimeoutPreemptively(NO_HANG, () -> {
+            for (int i = 0; i < 3; i++) {
+                job.take(i);
+            }
+            assertThatThrownBy(() -> job.take(3)).hasMessage("page 4 is broken");
+            // Parts after the failure are failed too, not left waiting
+            assertThatThrownBy(() -> job.take(9)).isInstanceOf(IOException.class);
+        });
+        job.finish();
+        assertThat(job.isStopped()).isTrue();
+    }
+
+    @Test
+    void releasesPartsProducedButNeverTaken() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        OrderedFanOut<Handle, String> job = fanOut(4, 2);
+
+        job.start(new Handle(), this::open, handle -> index -> {
+            produced.incrementAndGet();
+            return "part-" + index;
+        });
+        assertThat(job.take(0)).isEqualTo("part-0");
+        long deadline = System.nanoTime() + NO_HANG.toNanos();
+        while (produced.get() < 4 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        job.finish();
+
+        assertThat(released).containsExactlyInAnyOrder("part-1", "part-2", "part-3");
+    }
+
+    @Test
+    void cancelsTheTakeOnceTheJobIsCancelled() {
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel();
+        OrderedFanOut<Handle, String> job = new OrderedFanOut<>(executor, "doc.pdf", 5, 2, 4, cancellation,
+                released::add);
+
+        job.start(new Handle(), this::open, handle -> index -> "part-" + index);
+
+        assertTimeoutPreemptively(NO_HANG, () -> assertThatThrownBy(() -> job.take(0))
+                .isInstanceOf(CancellationException.class));
+        job.finish();
+    }
+
+    private OrderedFanOut<Handle, String> fanOut(int count, int parallelism) {
+        return new OrderedFanOut<>(executor, "doc.pdf", count, parallelism, 4, new CancellationToken(),
+                released::add);
+    }
+
+    private Handle open() {
+        Handle handle = new Handle();
+        opened.add(handle);
+        return handle;
+    }
+
+    private static final class Handle implements AutoCloseable {
+        private volatile boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.ProgressTrackingProperties;
+import com.koushik.fileconverter.dto.response.FileResponseDTO.ProcessingStatus;
+import com.koushik.fileconverter.dto.response.ProgressResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProgressTrackingServiceTest {
+
+    private static final String JOB_ID = "job-1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JobStateStore store;
+    private ProgressTrackingService service;
+
+    @BeforeEach
+    void setUp() {
+        ProgressTrackingProperties properties = new ProgressTrackingProperties();
+        // One event per 200 ms, so a burst of updates always lands within one interval
+        properties.setMaxUpdatesPerSecond(5);
+        // A single sender, so one stalled client would hold up every other one until it is dropped
+        properties.setSenderThreads(1);
+        properties.setSendTimeout(Duration.ofMillis(300));
+        store = new JobStateStore(properties, meterRegistry);
+        service = new ProgressTrackingService(store, properties, meterRegistry);
+        service.startDispatcher();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopDispatcher();
+    }
+
+    @Test
+    void coalescesBurstsIntoTheLatestValue() throws InterruptedException {
+        service.markAsQueued(JOB_ID);
+
+        for (int progress = 1; progress <= 50; progress++) {
+            service.updateProgress(JOB_ID, progress);
+        }
+
+        awaitTrue(() -> progressOf(JOB_ID) == 50);
+        assertThat(service.getProgress(JOB_ID).getStatus()).isEqualTo(ProcessingStatus.PROCESSING);
+        double published = meterRegistry.get("processing.progress.updates").tag("result", "published")
+                .counter().count();
+        double coalesced = meterRegistry.get("processing.progress.updates").tag("result", "coalesced")
+                .counter().count();
+        assertThat(published).isLessThanOrEqualTo(2);
+        assertThat(coalesced).isGreaterThanOrEqualTo(48);
+    }
+
+    @Test
+    void stateChangesAreRecordedImmediately() {
+        service.markAsQueued(JOB_ID);
+        assertThat(service.getProgress(JOB_ID).getStatus()).isEqualTo(ProcessingStatus.QUEUED);
+
+        service.markAsCompleted(JOB_ID, "done");
+
+        assertThat(service.getProgress(JOB_ID).getStatus()).isEqualTo(ProcessingStatus.COMPLETED);
+        assertThat(service.getProgress(JOB_ID).getMessage()).isEqualTo("done");
+    }
+
+    @Test
+    void pendingProgressNeverReplacesAFinishedJob() throws InterruptedException {
+        service.markAsQueued(JOB_ID);
+        service.updateProgress(JOB_ID, 10);
+        awaitTrue(() -> progressOf(JOB_ID) == 10);
+
+        // Held back by the rate limit until after the job has finished
+        service.updateProgress(JOB_ID, 60);
+        service.markAsCompleted(JOB_ID);
+        TimeUnit.MILLISECONDS.sleep(400);
+
+        ProgressResponseDTO state = service.getProgress(JOB_ID);
+        assertThat(state.getStatus()).isEqualTo(ProcessingStatus.COMPLETED);
+        assertThat(state.getProgress()).isEqualTo(100);
+    }
+
+    @Test
+    void progressAfterCompletionIsIgnored() throws InterruptedException {
+        service.markAsFailed(JOB_ID, "broken");
+
+        service.updateProgress(JOB_ID, 40);
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertThat(service.getProgress(JOB_ID).getStatus()).isEqualTo(ProcessingStatus.FAILED);
+    }
+
+    @Test
+    void dropsASubscriberWhoseSendStallsSoOthersStillGetEvents() throws InterruptedException {
+        StalledEmitter stalled = new StalledEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        service.subscribe("stalled-job", stalled);
+        service.subscribe(JOB_ID, other);
+
+        service.markAsQueued("stalled-job");
+        awaitTrue(stalled.sending::get);
+        service.markAsQueued(JOB_ID);
+
+        awaitTrue(() -> other.sent.get() == 1);
+        assertThat(stalled.interrupted.get()).isTrue();
+        assertThat(stalled.completed.get()).isTrue();
+        assertThat(other.sentOnVirtualThread.get()).isFalse();
+        assertThat(meterRegistry.get("processing.progress.subscribers.dropped").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("processing.progress.subscribers").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void storeOnlyReplacesUnfinishedStates() {
+        assertThat(store.putIfUnfinished(JOB_ID, state(ProcessingStatus.PROCESSING, 30))).isTrue();
+        assertThat(store.putIfUnfinished(JOB_ID, state(ProcessingStatus.PROCESSING, 40))).isTrue();
+        store.put(JOB_ID, state(ProcessingStatus.CANCELLED, 40));
+
+        assertThat(store.putIfUnfinished(JOB_ID, state(ProcessingStatus.PROCESSING, 50))).isFalse();
+        assertThat(store.get(JOB_ID).getStatus()).isEqualTo(ProcessingStatus.CANCELLED);
+    }
+
+    private int progressOf(String jobId) {
+        ProgressResponseDTO state = service.getProgress(jobId);
+        return state != null ? state.getProgress() : -1;
+    }
+
+    private static ProgressResponseDTO state(ProcessingStatus status, int progress) {
+        return ProgressResponseDTO.builder()
+                .jobId(JOB_ID)
+                .progress(progress)
+                .status(status)
+                .build();
+    }
+
+    /**
+     * Blocks in every send, holding the emitter's monitor as Spring's does,
+     * until the sending thread is interrupted.
+     */
+    private static final class StalledEmitter extends SseEmitter {
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean interrupted = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) throws IOException {
+            sending.set(true);
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw new InterruptedIOException("Send interrupted");
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.set(true);
+        }
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicBoolean sentOnVirtualThread = new AtomicBoolean();
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) {
+            sentOnVirtualThread.set(Thread.currentThread().isVirtual());
+            sent.incrementAndGet();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 5 seconds").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.DocxProcessingProperties;
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.config.PdfProcessingProperties;
+import com.koushik.fileconverter.config.ResultCacheProperties;
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.constant.FileFormat;
+import com.koushik.fileconverter.constant.PdfCompressionMode;
+import com.koushik.fileconverter.strategy.compressor.DocxCompressor;
+import com.koushik.fileconverter.strategy.compressor.ImageCompressor;
+import com.koushik.fileconverter.strategy.compressor.PdfCompressor;
+import com.koushik.fileconverter.strategy.converter.ImageFormatConverter;
+import com.koushik.fileconverter.strategy.image.ImageDecoder;
+import com.koushik.fileconverter.strategy.image.QualitySearch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResultCacheServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final StorageService storageService = mock(StorageService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResultCacheService cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        doAnswer(invocation -> Files.copy(invocation.<Path>getArgument(0), invocation.<Path>getArgument(1)))
+                .when(storageService).linkOrCopy(any(), any());
+        when(storageService.linkProcessedFile(any(), anyString()))
+                .thenAnswer(invocation -> invocation.<Path>getArgument(0).toFile());
+
+        ResultCacheProperties properties = new ResultCacheProperties();
+        properties.setDir(tempDir.resolve("cache").toString());
+        properties.setMaxSize(DataSize.ofBytes(250));
+        cache = new ResultCacheService(properties, storageService, meterRegistry);
+        cache.loadExistingEntries();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedResultsToStayWithinTheByteLimit() throws IOException {
+        cache.store("a", result("a", 100));
+        cache.store("b", result("b", 100));
+        // Touching "a" leaves "b" as the least recently used
+        assertThat(cache.lookup("a", "job/a")).isPresent();
+
+        cache.store("c", result("c", 100));
+
+        assertThat(cache.getTotalBytes()).isEqualTo(200);
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+        assertThat(cache.lookup("b", "job/b")).isEmpty();
+        assertThat(cache.lookup("a", "job/a")).isPresent();
+        assertThat(cache.lookup("c", "job/c")).isPresent();
+        assertThat(meterRegistry.get("processing.cache.evictions").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("processing.cache.size").gauge().value()).isEqualTo(200);
+    }
+
+    @Test
+    void neverCachesAResultLargerThanTheWholeCache() throws IOException {
+        cache.store("a", result("a", 100));
+
+        cache.store("huge", result("huge", 300));
+
+        assertThat(cache.lookup("huge", "job/huge")).isEmpty();
+        assertThat(cache.lookup("a", "job/a")).isPresent();
+        assertThat(cache.getTotalBytes()).isEqualTo(100);
+    }
+
+    @Test
+    void countsHitsAndMisses() throws IOException {
+        cache.store("a", result("a", 10));
+
+        cache.lookup("a", "job/a");
+        cache.lookup("a", "job/a");
+        cache.lookup("missing", "job/missing");
+
+        assertThat(meterRegistry.get("processing.cache.requests").tag("result", "hit").counter().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("processing.cache.requests").tag("result", "miss").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void treatsADeletedResultAsAMiss() throws IOException {
+        cache.store("a", result("a", 10));
+        Files.delete(tempDir.resolve("cache").resolve("a"));
+
+        assertThat(cache.lookup("a", "job/a")).isEmpty();
+        assertThat(cache.getEntryCount()).isZero();
+        assertThat(cache.getTotalBytes()).isZero();
+    }
+
+    @Test
+    void reindexesResultsLeftByAPreviousRun() throws IOException {
+        cache.store("a", result("a", 100));
+        cache.store("b", result("b", 100));
+
+        ResultCacheProperties properties = new ResultCacheProperties();
+        properties.setDir(tempDir.resolve("cache").toString());
+        properties.setMaxSize(DataSize.ofBytes(250));
+        ResultCacheService restarted = new ResultCacheService(properties, storageService, new SimpleMeterRegistry());
+        restarted.loadExistingEntries();
+
+        assertThat(restarted.getEntryCount()).isEqualTo(2);
+        assertThat(restarted.getTotalBytes()).isEqualTo(200);
+        assertThat(restarted.lookup("b", "job/b")).isPresent();
+    }
+
+    @Test
+    void missesOnceASettingTheStrategyReadsChanges() throws IOException {
+        PdfProcessingProperties pdfProperties = new PdfProcessingProperties();
+        ImageProcessingProperties imageProperties = new ImageProcessingProperties();
+        QualitySearch qualitySearch = new QualitySearch(imageProperties, null);
+        PdfCompressor compressor = new PdfCompressor(pdfProperties, null, null, null, null, qualitySearch);
+        String before = cache.compressionKey("sha", CompressionLevel.MEDIUM, compressor);
+        cache.store(before, result("pdf", 10));
+
+        pdfProperties.setCompressionMode(PdfCompressionMode.RASTERIZE);
+        String after = cache.compressionKey("sha", CompressionLevel.MEDIUM, compressor);
+
+        assertThat(after).isNotEqualTo(before);
+        assertThat(cache.lookup(after, "job/pdf")).isEmpty();
+        pdfProperties.setCompressionMode(PdfCompressionMode.AUTO);
+        assertThat(cache.compressionKey("sha", CompressionLevel.MEDIUM, compressor)).isEqualTo(before);
+    }
+
+    @Test
+    void keysDependOnTheDecoderAndQualitySearchSettings() {
+        ImageProcessingProperties properties = new ImageProcessingProperties();
+        ImageDecoder imageDecoder = new ImageDecoder(properties, null);
+        ImageCompressor compressor = new ImageCompressor(imageDecoder, null, new QualitySearch(properties, null));
+        ImageFormatConverter converter = new ImageFormatConverter(imageDecoder, null);
+        String compression = cache.compressionKey("sha", 50_000, compressor);
+        String conversion = cache.conversionKey("sha", FileFormat.JPG, converter);
+
+        properties.setSubsampleOversized(true);
+
+        assertThat(cache.compressionKey("sha", 50_000, compressor)).isNotEqualTo(compression);
+        assertThat(cache.conversionKey("sha", FileFormat.JPG, converter)).isNotEqualTo(conversion);
+        String subsampled = cache.compressionKey("sha", 50_000, compressor);
+        properties.setTargetSizeTrials(3);
+        // Read when the search is built, as the application does at startup
+        compressor = new ImageCompressor(imageDecoder, null, new QualitySearch(properties, null));
+        assertThat(cache.compressionKey("sha", 50_000, compressor)).isNotEqualTo(subsampled);
+    }
+
+    @Test
+    void keysDependOnTheDocxSettings() {
+        DocxProcessingProperties properties = new DocxProcessingProperties();
+        DocxCompressor compressor = new DocxCompressor(properties, null, null, null, null);
+        String before = cache.compressionKey("sha", CompressionLevel.HIGH, compressor);
+
+        properties.setXmlDeflateLevel(9);
+
+        assertThat(cache.compressionKey("sha", CompressionLevel.HIGH, compressor)).isNotEqualTo(before);
+    }
+
+    private File result(String name, int size) throws IOException {
+        Path file = tempDir.resolve(name + ".out");
+        Files.write(file, new byte[size]);
+        return file.toFile();
+    }
+}
@@ -0,0 +1,75 @@
+package com.koushik.fileconverter.service;
+
+import com.koushik.fileconverter.config.StorageConfig;
+import com.koushik.fileconverter.exception.StorageException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StorageServiceTest {
+
+    private static final byte[] PDF = "%PDF-1.7\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path tempDir;
+
+    private Path uploadDir;
+    private StorageService storageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        uploadDir = Files.createDirectories(tempDir.resolve("uploads"));
+        StorageConfig storageConfig = mock(StorageConfig.class);
+        when(storageConfig.getUploadDir()).thenReturn(uploadDir.toString());
+        storageService = new StorageService(storageConfig, new MultipartProperties());
+    }
+
+    @Test
+    void storesAnUploadUnderItsBatchDirectory() {
+        storageService.storeOriginalFile(new MockMultipartFile("file", "report.pdf", null, PDF), "batch-1/report.pdf");
+
+        assertThat(uploadDir.resolve("batch-1/report.pdf")).hasBinaryContent(PDF);
+    }
+
+    @Test
+    void rejectsAnUploadNamedToClimbOutOfTheUploadsDirectory() {
+        MockMultipartFile file = new MockMultipartFile("file", "../../x.pdf", null, PDF);
+
+        assertThatThrownBy(() -> storageService.storeOriginalFile(file))
+                .isInstanceOf(StorageException.class)
+                .hasMessage("Cannot store file outside of the designated directory.");
+        assertThat(tempDir.resolve("x.pdf")).doesNotExist();
+        assertThat(tempDir.getParent().resolve("x.pdf")).doesNotExist();
+    }
+
+    @Test
+    void rejectsAnArchiveEntryClimbingOutOfItsBatchDirectory() {
+        assertThatThrownBy(() -> storageService.storeOriginalFile(
+                new ByteArrayInputStream(PDF), "batch-1/../../x.pdf", Long.MAX_VALUE))
+                .isInstanceOf(StorageException.class);
+        assertThat(tempDir.resolve("x.pdf")).doesNotExist();
+    }
+
+    @Test
+    void rejectsAnAbsoluteName() {
+        Path outside = tempDir.resolve("x.pdf").toAbsolutePath();
+
+        assertThatThrownBy(() -> storageService.storeOriginalFile(
+                new ByteArrayInputStream(PDF), outside.toString(), Long.MAX_VALUE))
+                .isInstanceOf(StorageException.class);
+        assertThat(outside).doesNotExist();
+    }
+}
@@ -0,0 +1,208 @@
+package com.koushik.fileconverter.strategy.compressor;
+
+import com.koushik.fileconverter.config.BufferPoolProperties;
+import com.koushik.fileconverter.config.DocxProcessingProperties;
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.FanOutExecutor;
+import com.koushik.fileconverter.strategy.image.ImageCodecPool;
+import com.koushik.fileconverter.strategy.image.JpegEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.xwpf.usermodel.Document;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocxCompressorTest {
+
+    private static final String PHOTO = "word/media/image1.jpeg";
+    private static final String ICON = "word/media/image2.png";
+
+    @TempDir
+    Path tempDir;
+
+    private final DocxProcessingProperties properties = new DocxProcessingProperties();
+    private FanOutExecutor fanOutExecutor;
+    private DocxCompressor compressor;
+    private File source;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fanOutExecutor = new FanOutExecutor(new JobExecutorProperties());
+        ImageCodecPool codecPool = new ImageCodecPool(new ImageProcessingProperties());
+        BufferPool bufferPool = new BufferPool(new BufferPoolProperties(), new SimpleMeterRegistry());
+        compressor = new DocxCompressor(properties, fanOutExecutor, codecPool, bufferPool,
+                new JpegEncoder(codecPool, bufferPool));
+        source = sampleDocument();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanOutExecutor.shutdown();
+    }
+
+    @Test
+    void rewritesThePackageKeepingEveryOtherPartAsIs() throws IOException {
+        File target = compress();
+
+        Map<String, byte[]> before = entries(source);
+        Map<String, byte[]> after = entries(target);
+        assertThat(new ArrayList<>(after.keySet())).containsExactlyElementsOf(before.keySet());
+        assertThat(after.get(PHOTO).length).isLessThan(before.get(PHOTO).length);
+        before.forEach((name, data) -> {
+            if (!name.equals(PHOTO)) {
+                assertThat(after.get(name)).as(name).isEqualTo(data);
+            }
+        });
+        assertThat(ImageIO.read(new ByteArrayInputStream(after.get(PHOTO)))).isNotNull();
+    }
+
+    @Test
+    void outputStillOpensAsADocument() throws Exception {
+        File target = compress();
+
+        try (InputStream in = new FileInputStream(target);
+             XWPFDocument document = new XWPFDocument(in)) {
+            assertThat(document.getParagraphs().get(0).getText()).isEqualTo("Quarterly report");
+            assertThat(document.getAllPictures()).hasSize(2);
+        }
+    }
+
+    @Test
+    void redeflatesXmlPartsWhenALevelIsSet() throws Exception {
+        properties.setXmlDeflateLevel(9);
+
+        File target = compress();
+
+        Map<String, byte[]> before = entries(source);
+        Map<String, byte[]> after = entries(target);
+        assertThat(after.get("word/document.xml")).isEqualTo(before.get("word/document.xml"));
+        try (ZipFile zip = new ZipFile(target)) {
+            assertThat(zip.getEntry("word/document.xml").getMethod()).isEqualTo(ZipEntry.DEFLATED);
+        }
+    }
+
+    @Test
+    void fallsBackToPoiWhenDisabled() throws Exception {
+        properties.setRawPackageRewrite(false);
+
+        File target = compress();
+
+        try (InputStream in = new FileInputStream(target);
+             XWPFDocument document = new XWPFDocument(in)) {
+            assertThat(document.getParagraphs().get(0).getText()).isEqualTo("Quarterly report");
+            assertThat(document.getAllPictures()).hasSize(2);
+        }
+        assertThat(entries(target).get(PHOTO).length).isLessThan(entries(source).get(PHOTO).length);
+    }
+
+    @Test
+    void poiPathStaysCancelledWithASmallPictureWaiting() {
+        properties.setRawPackageRewrite(false);
+        properties.setMaxPicturesInFlight(1);
+        CancellationToken cancellation = new CancellationToken();
+        File target = tempDir.resolve("cancelled.docx").toFile();
+
+        // Cancelled once the photo is written back, with the icon, which is not recompressed, still waiting
+        assertThatThrownBy(() -> compressor.compress(source, target, CompressionLevel.HIGH, progress -> {
+            if (progress > 20) {
+                cancellation.cancel();
+            }
+        }, cancellation)).isInstanceOf(CancellationException.class);
+    }
+
+    private File compress() throws IOException {
+        File target = tempDir.resolve("compressed.docx").toFile();
+        compressor.compress(source, target, CompressionLevel.HIGH, progress -> { }, new CancellationToken());
+        return target;
+    }
+
+    /**
+     * A document with a large, barely compressed photo and an icon below the
+     * minimum picture size.
+     */
+    private File sampleDocument() throws Exception {
+        File file = tempDir.resolve("report.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream out = new FileOutputStream(file)) {
+            XWPFRun run = document.createParagraph().createRun();
+            run.setText("Quarterly report");
+            byte[] photo = jpeg(gradient(640, 480), 1.0f);
+            run.addPicture(new ByteArrayInputStream(photo), Document.PICTURE_TYPE_JPEG, "photo.jpg", 640, 480);
+            ByteArrayOutputStream icon = new ByteArrayOutputStream();
+            ImageIO.write(gradient(16, 16), "png", icon);
+            run.addPicture(new ByteArrayInputStream(icon.toByteArray()), Document.PICTURE_TYPE_PNG, "icon.png", 16, 16);
+            document.write(out);
+        }
+        assertThat(entries(file)).containsKeys(PHOTO, ICON);
+        return file;
+    }
+
+    private static BufferedImage gradient(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | ((x ^ y) & 0xff));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] jpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, byte[]> entries(File file) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(file)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (InputStream in = zip.getInputStream(entry)) {
+                    entries.put(entry.getName(), in.readAllBytes());
+                }
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,175 @@
+package com.koushik.fileconverter.strategy.compressor;
+
+import com.koushik.fileconverter.config.BufferPoolProperties;
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.config.JobExecutorProperties;
+import com.koushik.fileconverter.config.PdfProcessingProperties;
+import com.koushik.fileconverter.constant.CompressionLevel;
+import com.koushik.fileconverter.constant.PdfCompressionMode;
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.FanOutExecutor;
+import com.koushik.fileconverter.strategy.image.ImageCodecPool;
+import com.koushik.fileconverter.strategy.image.JpegEncoder;
+import com.koushik.fileconverter.strategy.image.QualitySearch;
+import com.koushik.fileconverter.strategy.pdf.PdfDocumentLoader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PdfCompressorTest {
+
+    private static final int PAGES = 9;
+    private static final int ROTATED_PAGE = 4;
+
+    @TempDir
+    Path tempDir;
+
+    private final PdfProcessingProperties properties = new PdfProcessingProperties();
+    private FanOutExecutor fanOutExecutor;
+    private PdfCompressor compressor;
+    private File source;
+    private File target;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setCompressionMode(PdfCompressionMode.RASTERIZE);
+        properties.setRenderDpi(36);
+        properties.setRenderParallelism(3);
+        properties.setMaxPagesInFlight(4);
+        properties.setScratchDir(tempDir.resolve("scratch").toString());
+
+        fanOutExecutor = new FanOutExecutor(new JobExecutorProperties());
+        ImageProcessingProperties imageProperties = new ImageProcessingProperties();
+        BufferPool bufferPool = new BufferPool(new BufferPoolProperties(), new SimpleMeterRegistry());
+        JpegEncoder jpegEncoder = new JpegEncoder(new ImageCodecPool(imageProperties), bufferPool);
+        compressor = new PdfCompressor(properties, fanOutExecutor, new PdfDocumentLoader(properties), jpegEncoder,
+                bufferPool, new QualitySearch(imageProperties, jpegEncoder));
+
+        source = tempDir.resolve("source.pdf").toFile();
+        target = tempDir.resolve("target.pdf").toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < PAGES; i++) {
+                PDPage page = new PDPage(new PDRectangle(200 + 10 * i, 300));
+                if (i == ROTATED_PAGE) {
+                    page.setRotation(90);
+                }
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.setNonStrokingColor(colour(i));
+                    content.addRect(0, 0, page.getMediaBox().getWidth(), page.getMediaBox().getHeight());
+                    content.fill();
+                }
+            }
+            document.save(source);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanOutExecutor.shutdown();
+    }
+
+    @Test
+    void assemblesPagesRenderedInParallelInTheirOriginalOrder() throws IOException {
+        List<Integer> progress = new ArrayList<>();
+
+        compressor.compress(source, target, CompressionLevel.MEDIUM, progress::add, new CancellationToken());
+
+        try (PDDocument compressed = Loader.loadPDF(target)) {
+            assertThat(compressed.getNumberOfPages()).isEqualTo(PAGES);
+            for (int i = 0; i < PAGES; i++) {
+                PDPage page = compressed.getPage(i);
+                float width = 200 + 10 * i;
+                if (i == ROTATED_PAGE) {
+                    assertThat(page.getMediaBox().getWidth()).isEqualTo(300);
+                    assertThat(page.getMediaBox().getHeight()).isEqualTo(width);
+                } else {
+                    assertThat(page.getMediaBox().getWidth()).as("page %d width", i).isEqualTo(width);
+                    assertThat(page.getMediaBox().getHeight()).isEqualTo(300);
+                }
+                assertSimilarColour(centre(picture(page)), colour(i), i);
+            }
+        }
+        assertThat(progress).isSorted().startsWith(20).endsWith(100);
+    }
+
+    @Test
+    void encodesEveryPageToFitItsShareOfATargetSize() throws IOException {
+        long targetBytes = source.length() - 1;
+
+        compressor.compressToSize(source, target, targetBytes, progress -> { }, new CancellationToken());
+
+        try (PDDocument compressed = Loader.loadPDF(target)) {
+            assertThat(compressed.getNumberOfPages()).isEqualTo(PAGES);
+            for (int i = 0; i < PAGES; i++) {
+                assertThat(picture(compressed.getPage(i)).getSuffix()).isEqualTo("jpg");
+            }
+        }
+    }
+
+    @Test
+    void copiesADocumentAlreadyWithinTheTargetSize() throws IOException {
+        compressor.compressToSize(source, target, source.length(), progress -> { }, new CancellationToken());
+
+        assertThat(Files.readAllBytes(target.toPath())).isEqualTo(Files.readAllBytes(source.toPath()));
+    }
+
+    @Test
+    void stopsRenderingWhenCancelled() {
+        CancellationToken cancellation = new CancellationToken();
+
+        // Cancelled once the first page is in, with later pages still rendering
+        assertThatThrownBy(() -> compressor.compress(source, target, CompressionLevel.MEDIUM, progress -> {
+            if (progress > 20) {
+                cancellation.cancel();
+            }
+        }, cancellation)).isInstanceOf(CancellationException.class);
+        assertThat(target).doesNotExist();
+    }
+
+    private static PDImageXObject picture(PDPage page) throws IOException {
+        COSName name = page.getResources().getXObjectNames().iterator().next();
+        return (PDImageXObject) page.getResources().getXObject(name);
+    }
+
+    private static Color centre(PDImageXObject picture) throws IOException {
+        BufferedImage image = picture.getImage();
+        return new Color(image.getRGB(image.getWidth() / 2, image.getHeight() / 2));
+    }
+
+    private static void assertSimilarColour(Color actual, Color expected, int page) {
+        assertThat(Math.abs(actual.getRed() - expected.getRed())).as("page %d red", page).isLessThan(16);
+        assertThat(Math.abs(actual.getGreen() - expected.getGreen())).as("page %d green", page).isLessThan(16);
+        assertThat(Math.abs(actual.getBlue() - expected.getBlue())).as("page %d blue", page).isLessThan(16);
+    }
+
+    /**
+     * A different fill on every page, so a page assembled out of order shows.
+     */
+    private static Color colour(int page) {
+        return new Color(25 * page, 255 - 25 * page, page % 2 == 0 ? 64 : 192);
+    }
+}
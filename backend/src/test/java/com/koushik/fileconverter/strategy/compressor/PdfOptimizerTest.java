@@ -0,0 +1,223 @@
+package com.koushik.fileconverter.strategy.compressor;
+
+import com.koushik.fileconverter.config.BufferPoolProperties;
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.strategy.image.ImageCodecPool;
+import com.koushik.fileconverter.strategy.image.JpegEncoder;
+import com.koushik.fileconverter.strategy.image.QualitySearch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfOptimizerTest {
+
+    private PDDocument document;
+    private PdfOptimizer optimizer;
+
+    @BeforeEach
+    void setUp() {
+        document = new PDDocument();
+        ImageCodecPool codecPool = new ImageCodecPool(new ImageProcessingProperties());
+        BufferPool bufferPool = new BufferPool(new BufferPoolProperties(), new SimpleMeterRegistry());
+        JpegEncoder jpegEncoder = new JpegEncoder(codecPool, bufferPool);
+        QualitySearch qualitySearch = new QualitySearch(new ImageProcessingProperties(), jpegEncoder);
+        optimizer = new PdfOptimizer(document, jpegEncoder, bufferPool, qualitySearch,
+                0.75f, 150, 0, new CancellationToken());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Test
+    void dropsResourcesNoPageDraws() throws IOException {
+        PDPage page = addPage();
+        PDResources resources = page.getResources();
+        COSName unusedPicture = resources.add(picture(2));
+        COSName unusedFont = resources.add(new PDType1Font(Standard14Fonts.FontName.COURIER));
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.drawImage(picture(1), 0, 0, 100, 100);
+            write(content, "Caption", 700);
+        }
+        assertThat(resources.getXObjectNames()).hasSize(2);
+        assertThat(resources.getFontNames()).hasSize(2);
+
+        optimizer.optimize(progress -> { });
+
+        assertThat(resources.getXObjectNames()).hasSize(1).doesNotContain(unusedPicture);
+        assertThat(resources.getFontNames()).hasSize(1).doesNotContain(unusedFont);
+        assertThat(text()).contains("Caption");
+    }
+
+    @Test
+    void keepsWhatAnyPageSharingTheResourcesDraws() throws IOException {
+        PDPage first = addPage();
+        PDPage second = addPage();
+        PDResources resources = first.getResources();
+        second.setResources(resources);
+        PDImageXObject firstPicture = picture(1);
+        PDImageXObject secondPicture = picture(2);
+        COSName unusedPicture = resources.add(picture(3));
+        draw(first, firstPicture);
+        draw(second, secondPicture);
+
+        optimizer.optimize(progress -> { });
+
+        assertThat(resources.getXObjectNames()).hasSize(2).doesNotContain(unusedPicture);
+    }
+
+    @Test
+    void storesIdenticalFontsOnce() throws IOException {
+        PDPage first = addPage();
+        PDPage second = addPage();
+        for (PDPage page : new PDPage[] {first, second}) {
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                write(content, "Same font, separate copy", 700);
+            }
+        }
+        assertThat(font(first)).isNotSameAs(font(second));
+
+        optimizer.optimize(progress -> { });
+
+        assertThat(font(first)).isSameAs(font(second));
+        assertThat(text()).contains("Same font, separate copy");
+    }
+
+    @Test
+    void deflatesUnfilteredContent() throws IOException {
+        PDPage page = addPage();
+        try (PDPageContentStream content =
+                     new PDPageContentStream(document, page, PDPageContentStream.AppendMode.OVERWRITE, false)) {
+            for (int i = 0; i < 20; i++) {
+                write(content, "Uncompressed line " + i, 700 - 20 * i);
+            }
+        }
+        COSStream stream = (COSStream) page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        assertThat(stream.getFilters()).isNull();
+
+        optimizer.optimize(progress -> { });
+
+        assertThat(stream.getFilters()).isEqualTo(COSName.FLATE_DECODE);
+        assertThat(text()).contains("Uncompressed line 19");
+    }
+
+    @Test
+    void reencodesLargePicturesAsSmallerJpegs() throws IOException {
+        PDPage page = addPage();
+        PDImageXObject picture = picture(1);
+        long before = picture.getCOSObject().getLength();
+        draw(page, picture);
+
+        optimizer.optimize(progress -> { });
+
+        COSStream stream = picture.getCOSObject();
+        assertThat(stream.getFilters()).isEqualTo(COSName.DCT_DECODE);
+        assertThat(stream.getLength()).isLessThan(before);
+        assertThat(picture.getImage().getWidth()).isEqualTo(640);
+    }
+
+    @Test
+    void reencodesAPictureEmbeddedAnewOnEveryPageOnce() throws IOException {
+        PDPage[] pages = {addPage(), addPage(), addPage()};
+        for (PDPage page : pages) {
+            draw(page, picture(1));
+        }
+        assertThat(pictureOn(pages[0])).isNotSameAs(pictureOn(pages[1]));
+
+        optimizer.optimize(progress -> { });
+
+        COSStream shared = pictureOn(pages[0]);
+        assertThat(pictureOn(pages[1])).isSameAs(shared);
+        assertThat(pictureOn(pages[2])).isSameAs(shared);
+        assertThat(shared.getFilters()).isEqualTo(COSName.DCT_DECODE);
+    }
+
+    @Test
+    void keepsDifferentPicturesApart() throws IOException {
+        PDPage first = addPage();
+        PDPage second = addPage();
+        draw(first, picture(1));
+        draw(second, picture(2));
+
+        optimizer.optimize(progress -> { });
+
+        assertThat(pictureOn(first)).isNotSameAs(pictureOn(second));
+        assertThat(pictureOn(first).getFilters()).isEqualTo(COSName.DCT_DECODE);
+        assertThat(pictureOn(second).getFilters()).isEqualTo(COSName.DCT_DECODE);
+    }
+
+    private PDPage addPage() {
+        PDPage page = new PDPage();
+        page.setResources(new PDResources());
+        document.addPage(page);
+        return page;
+    }
+
+    private void draw(PDPage page, PDImageXObject picture) throws IOException {
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.drawImage(picture, 0, 0, 100, 100);
+        }
+    }
+
+    private static void write(PDPageContentStream content, String text, float y) throws IOException {
+        content.beginText();
+        content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+        content.newLineAtOffset(50, y);
+        content.showText(text);
+        content.endText();
+    }
+
+    private static COSDictionary font(PDPage page) {
+        COSDictionary fonts = page.getResources().getCOSObject().getCOSDictionary(COSName.FONT);
+        COSBase font = fonts.getDictionaryObject(fonts.keySet().iterator().next());
+        return (COSDictionary) font;
+    }
+
+    private static COSStream pictureOn(PDPage page) {
+        COSDictionary xObjects = page.getResources().getCOSObject().getCOSDictionary(COSName.XOBJECT);
+        return (COSStream) xObjects.getDictionaryObject(xObjects.keySet().iterator().next());
+    }
+
+    private String text() throws IOException {
+        return new PDFTextStripper().getText(document);
+    }
+
+    /**
+     * A noisy, photo-like 640 x 480 picture stored losslessly, different for
+     * every {@code seed}.
+     */
+    private PDImageXObject picture(int seed) throws IOException {
+        Random noise = new Random(seed);
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int grain = noise.nextInt(32);
+                image.setRGB(x, y, (x * 223 / 640 + grain) << 16 | (y * 223 / 480 + grain) << 8 | 128 + grain);
+            }
+        }
+        return LosslessFactory.createFromImage(document, image);
+    }
+}
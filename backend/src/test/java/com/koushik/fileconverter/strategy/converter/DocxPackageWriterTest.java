@@ -0,0 +1,95 @@
+package com.koushik.fileconverter.strategy.converter;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocxPackageWriterTest {
+
+    @Test
+    void writesParagraphsLinesAndPageBreaks() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DocxPackageWriter docx = new DocxPackageWriter(out)) {
+            docx.startParagraph();
+            docx.text("First line");
+            docx.lineBreak();
+            docx.text("second line");
+            docx.endParagraph();
+            docx.pageBreak();
+            docx.startParagraph();
+            docx.text("Next page");
+        }
+
+        try (XWPFDocument document = read(out)) {
+            List<XWPFParagraph> paragraphs = document.getParagraphs();
+            assertThat(paragraphs).hasSize(3);
+            assertThat(paragraphs.get(0).getText()).isEqualTo("First line\nsecond line");
+            assertThat(paragraphs.get(1).getRuns().get(0).getCTR().getBrArray(0).getType().toString())
+                    .isEqualTo("page");
+            assertThat(paragraphs.get(2).getText()).isEqualTo("Next page");
+        }
+    }
+
+    @Test
+    void escapesMarkupInText() throws IOException {
+        String text = "<w:p>a & b</w:p> \"quoted\" 'single' ]]> <!-- x -->";
+
+        try (XWPFDocument document = read(write(text))) {
+            assertThat(document.getParagraphs().get(0).getText()).isEqualTo(text);
+        }
+    }
+
+    @Test
+    void dropsCharactersXmlCannotCarry() throws IOException {
+        String text = "a\u0000b\u0007c\u000Bd\uFFFEe\uFFFFf\uD800g\uDC00h";
+
+        try (XWPFDocument document = read(write(text))) {
+            assertThat(document.getParagraphs().get(0).getText()).isEqualTo("abcdefgh");
+        }
+    }
+
+    @Test
+    void keepsTabsAndCharactersOutsideTheBasicPlane() throws IOException {
+        String text = "col1\tcol2 📄 café  spaced  ";
+
+        try (XWPFDocument document = read(write(text))) {
+            assertThat(document.getParagraphs().get(0).getText()).isEqualTo(text);
+        }
+    }
+
+    @Test
+    void ignoresBreaksOutsideAParagraph() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DocxPackageWriter docx = new DocxPackageWriter(out)) {
+            docx.lineBreak();
+            docx.endParagraph();
+            docx.text("Only paragraph");
+        }
+
+        try (XWPFDocument document = read(out)) {
+            assertThat(document.getParagraphs()).hasSize(1);
+            assertThat(document.getParagraphs().get(0).getText()).isEqualTo("Only paragraph");
+        }
+    }
+
+    private static ByteArrayOutputStream write(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DocxPackageWriter docx = new DocxPackageWriter(out)) {
+            docx.startParagraph();
+            docx.text(text);
+            docx.endParagraph();
+        }
+        return out;
+    }
+
+    private static XWPFDocument read(ByteArrayOutputStream out) throws IOException {
+        return new XWPFDocument(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,145 @@
+package com.koushik.fileconverter.strategy.converter;
+
+import com.koushik.fileconverter.strategy.pdf.FontMetrics;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfTextLayoutTest {
+
+    private static final PDRectangle PAGE = new PDRectangle(200, 200);
+    private static final float MARGIN = 20;
+    private static final float LEADING = 12;
+    // The first line sits at the top margin, each further one a leading lower
+    private static final int LINES_PER_PAGE = 1 + (int) ((PAGE.getHeight() - 2 * MARGIN) / LEADING);
+
+    private PDDocument pdf;
+    private FontMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        pdf = new PDDocument();
+        metrics = new FontMetrics(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pdf.close();
+    }
+
+    @Test
+    void wrapsParagraphsAtWordBoundariesWithinTheMargins() throws IOException {
+        String paragraph = "The quick brown fox jumps over the lazy dog and keeps running far beyond "
+                + "the edge of the page until the line has to wrap several times";
+
+        try (PdfTextLayout layout = layout()) {
+            layout.startParagraph();
+            layout.text(paragraph);
+            layout.endParagraph();
+        }
+
+        List<String> lines = lines(1, 1);
+        assertThat(lines).hasSizeGreaterThan(2);
+        for (String line : lines) {
+            assertThat(metrics.width(line)).as(line).isLessThanOrEqualTo(PAGE.getWidth() - 2 * MARGIN);
+        }
+        assertThat(String.join(" ", lines)).isEqualTo(paragraph);
+    }
+
+    @Test
+    void breaksAWordWiderThanALine() throws IOException {
+        String word = "x".repeat(100);
+
+        try (PdfTextLayout layout = layout()) {
+            layout.text(word);
+        }
+
+        List<String> lines = lines(1, 1);
+        assertThat(lines).hasSizeGreaterThan(1);
+        assertThat(String.join("", lines)).isEqualTo(word);
+    }
+
+    @Test
+    void startsANewPageWhenTheCurrentOneIsFull() throws IOException {
+        int paragraphs = 2 * LINES_PER_PAGE + 1;
+
+        try (PdfTextLayout layout = layout()) {
+            for (int i = 1; i <= paragraphs; i++) {
+                layout.startParagraph();
+                layout.text("Line " + i);
+                layout.endParagraph();
+            }
+        }
+
+        assertThat(pdf.getNumberOfPages()).isEqualTo(3);
+        assertThat(lines(1, 1)).hasSize(LINES_PER_PAGE).startsWith("Line 1");
+        assertThat(lines(2, 2)).hasSize(LINES_PER_PAGE).startsWith("Line " + (LINES_PER_PAGE + 1));
+        assertThat(lines(3, 3)).containsExactly("Line " + paragraphs);
+    }
+
+    @Test
+    void pageBreakStartsANewPageWithoutBlankOnes() throws IOException {
+        try (PdfTextLayout layout = layout()) {
+            layout.text("Before");
+            layout.pageBreak();
+            layout.pageBreak();
+            layout.text("After");
+        }
+
+        assertThat(pdf.getNumberOfPages()).isEqualTo(2);
+        assertThat(lines(1, 1)).containsExactly("Before");
+        assertThat(lines(2, 2)).containsExactly("After");
+    }
+
+    @Test
+    void lineFeedsAndLineBreaksEndTheLine() throws IOException {
+        try (PdfTextLayout layout = layout()) {
+            layout.text("one\ntwo");
+            layout.lineBreak();
+            layout.text("three");
+        }
+
+        assertThat(lines(1, 1)).containsExactly("one", "two", "three");
+    }
+
+    @Test
+    void replacesCharactersTheFontCannotShow() throws IOException {
+        try (PdfTextLayout layout = layout()) {
+            layout.text("café 中文");
+        }
+
+        assertThat(lines(1, 1)).containsExactly("café ??");
+    }
+
+    @Test
+    void emptyDocumentStillHasAPage() throws IOException {
+        layout().close();
+
+        assertThat(pdf.getNumberOfPages()).isEqualTo(1);
+    }
+
+    private PdfTextLayout layout() {
+        return new PdfTextLayout(pdf, metrics, PAGE, MARGIN, LEADING);
+    }
+
+    private List<String> lines(int startPage, int endPage) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(startPage);
+        stripper.setEndPage(endPage);
+        return Arrays.stream(stripper.getText(pdf).split("\\R"))
+                .map(String::strip)
+                .filter(line -> !line.isEmpty())
+                .toList();
+    }
+}
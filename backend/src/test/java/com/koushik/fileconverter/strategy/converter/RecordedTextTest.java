@@ -0,0 +1,95 @@
+package com.koushik.fileconverter.strategy.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordedTextTest {
+
+    @Test
+    void replaysEventsInOrder() throws IOException {
+        RecordedText recorded = new RecordedText();
+        recorded.startParagraph();
+        recorded.text("Hello");
+        recorded.lineBreak();
+        recorded.text("world");
+        recorded.endParagraph();
+        recorded.pageBreak();
+        recorded.startParagraph();
+        recorded.text("Second page");
+        recorded.endParagraph();
+
+        EventLog events = new EventLog();
+        recorded.replay(events);
+
+        assertThat(events.events).containsExactly(
+                "start", "text:Hello", "line", "text:world", "end", "page", "start", "text:Second page", "end");
+    }
+
+    @Test
+    void mergesAdjacentTextIntoOneRun() throws IOException {
+        RecordedText recorded = new RecordedText();
+        recorded.text("one");
+        recorded.text(" ");
+        recorded.text("two");
+
+        EventLog events = new EventLog();
+        recorded.replay(events);
+
+        assertThat(events.events).containsExactly("text:one two");
+    }
+
+    @Test
+    void dropsControlCharactersButKeepsTabs() throws IOException {
+        RecordedText recorded = new RecordedText();
+        recorded.startParagraph();
+        recorded.text("a\u0001b\u0004c\td\u0000");
+        recorded.endParagraph();
+
+        EventLog events = new EventLog();
+        recorded.replay(events);
+
+        assertThat(events.events).containsExactly("start", "text:abc\td", "end");
+    }
+
+    @Test
+    void replaysNothingWhenEmpty() throws IOException {
+        EventLog events = new EventLog();
+        new RecordedText().replay(events);
+
+        assertThat(events.events).isEmpty();
+    }
+
+    private static final class EventLog implements TextSink {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void startParagraph() {
+            events.add("start");
+        }
+
+        @Override
+        public void text(String text) {
+            events.add("text:" + text);
+        }
+
+        @Override
+        public void lineBreak() {
+            events.add("line");
+        }
+
+        @Override
+        public void endParagraph() {
+            events.add("end");
+        }
+
+        @Override
+        public void pageBreak() {
+            events.add("page");
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.config.BufferPoolProperties;
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.PooledBytes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageCodecPoolTest {
+
+    private final ImageProcessingProperties properties = new ImageProcessingProperties();
+    private ImageCodecPool pool;
+
+    @BeforeEach
+    void setUp() {
+        properties.setCodecPoolSize(1);
+        pool = new ImageCodecPool(properties);
+    }
+
+    @Test
+    void lendsAReturnedWriterAgainUnderEitherJpegName() throws IOException {
+        ImageWriter first;
+        try (PooledImageWriter pooled = pool.writer("jpg")) {
+            first = pooled.writer();
+        }
+
+        try (PooledImageWriter pooled = pool.writer("JPEG")) {
+            assertThat(pooled.writer()).isSameAs(first);
+        }
+    }
+
+    @Test
+    void neverLendsOneWriterToTwoBorrowers() throws IOException {
+        try (PooledImageWriter first = pool.writer("jpeg"); PooledImageWriter second = pool.writer("jpeg")) {
+            assertThat(second.writer()).isNotSameAs(first.writer());
+        }
+    }
+
+    @Test
+    void keepsNoMoreIdleWritersThanThePoolSize() throws IOException {
+        ImageWriter kept;
+        ImageWriter extra;
+        try (PooledImageWriter first = pool.writer("jpeg"); PooledImageWriter second = pool.writer("jpeg")) {
+            // Closed in reverse order, so the second is kept and the first disposed
+            kept = second.writer();
+            extra = first.writer();
+        }
+
+        try (PooledImageWriter first = pool.writer("jpeg"); PooledImageWriter second = pool.writer("jpeg")) {
+            assertThat(first.writer()).isSameAs(kept);
+            assertThat(second.writer()).isNotSameAs(kept).isNotSameAs(extra);
+        }
+    }
+
+    @Test
+    void resetsTheWriteParamWhenAWriterIsReturned() throws IOException {
+        int defaultMode;
+        try (PooledImageWriter pooled = pool.writer("jpeg")) {
+            defaultMode = pooled.param().getCompressionMode();
+            pooled.param(0.2f).setSourceSubsampling(2, 2, 0, 0);
+        }
+
+        try (PooledImageWriter pooled = pool.writer("jpeg")) {
+            ImageWriteParam param = pooled.param();
+            assertThat(param.getCompressionMode()).isEqualTo(defaultMode);
+            assertThat(param.getSourceXSubsampling()).isEqualTo(1);
+            assertThat(param.getSourceYSubsampling()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void encodesTheSameBytesWithAReusedWriter() throws IOException {
+        BufferPool bufferPool = new BufferPool(new BufferPoolProperties(), new SimpleMeterRegistry());
+        JpegEncoder encoder = new JpegEncoder(pool, bufferPool);
+        BufferedImage image = gradient();
+
+        byte[] first = bytes(encoder.encode(image, 0.9f));
+        bytes(encoder.encode(image, 0.2f));
+        byte[] again = bytes(encoder.encode(image, 0.9f));
+
+        assertThat(again).isEqualTo(first);
+    }
+
+    @Test
+    void picksAReaderByTheImageSignature() throws IOException {
+        for (String format : new String[] {"png", "jpeg"}) {
+            byte[] encoded = encode(gradient(), format);
+            ImageReader reader;
+            try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded));
+                 PooledImageReader pooled = pool.reader(input)) {
+                reader = pooled.reader();
+                assertThat(reader.getFormatName()).isEqualToIgnoringCase(format);
+                assertThat(reader.read(0).getWidth()).isEqualTo(64);
+            }
+
+            // Returned without its input, ready for the next image
+            try (PooledImageReader pooled = pool.reader(format)) {
+                assertThat(pooled.reader()).isSameAs(reader);
+                assertThat(pooled.reader().getInput()).isNull();
+            }
+        }
+    }
+
+    @Test
+    void rejectsAFormatWithoutACodec() {
+        assertThatThrownBy(() -> pool.writer("no-such-format")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> pool.reader("no-such-format")).isInstanceOf(IOException.class);
+    }
+
+    private static byte[] bytes(PooledBytes data) {
+        try (data) {
+            return Arrays.copyOf(data.array(), data.length());
+        }
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage gradient() {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x * 4 << 16 | y * 5 << 8 | 128);
+            }
+        }
+        return image;
+    }
+}
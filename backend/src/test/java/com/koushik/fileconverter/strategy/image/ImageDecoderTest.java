@@ -0,0 +1,137 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.service.CancellationToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageDecoderTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    @TempDir
+    Path tempDir;
+
+    private final ImageProcessingProperties properties = new ImageProcessingProperties();
+    private final BufferedImage original = pattern();
+    private File png;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        png = tempDir.resolve("pattern.png").toFile();
+        ImageIO.write(original, "png", png);
+    }
+
+    @Test
+    void decodesAnImageWithinTheBudgetInOnePiece() throws IOException {
+        try (ImageSource source = decoder().open(png)) {
+            assertThat(source.getDecodedSize()).isEqualTo((long) WIDTH * HEIGHT * 3);
+            assertThat(source.readStriped()).isInstanceOf(BufferedImage.class);
+        }
+    }
+
+    @Test
+    void decodesAnOversizedImageInStripsWithEveryPixelIntact() throws IOException {
+        properties.setDecodeBudget(DataSize.ofBytes(WIDTH * 3 * 40));
+
+        try (ImageSource source = decoder().open(png)) {
+            RenderedImage striped = source.readStriped();
+
+            assertThat(striped).isNotInstanceOf(BufferedImage.class);
+            assertThat(striped.getTileHeight()).isEqualTo(40);
+            assertThat(striped.getNumYTiles()).isEqualTo(4);
+            assertSamePixels(reencode(striped), original);
+        }
+    }
+
+    @Test
+    void returnsRowsSpanningTwoStrips() throws IOException {
+        properties.setDecodeBudget(DataSize.ofBytes(WIDTH * 3 * 40));
+
+        try (ImageSource source = decoder().open(png)) {
+            RenderedImage striped = source.readStriped();
+            Rectangle rows = new Rectangle(10, 35, 50, 10);
+            int[] expected = original.getData(rows).getPixels(10, 35, 50, 10, (int[]) null);
+
+            assertThat(striped.getData(rows).getPixels(10, 35, 50, 10, (int[]) null)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void keepsTheFullResolutionUnlessSubsamplingIsEnabled() throws IOException {
+        properties.setDecodeBudget(DataSize.ofBytes(WIDTH * HEIGHT));
+        CancellationToken cancellation = new CancellationToken();
+
+        try (ImageSource source = decoder().open(png)) {
+            assertThat(source.subsamplingStep()).isEqualTo(1);
+            BufferedImage image = source.readWhole(cancellation);
+            assertThat(image.getWidth()).isEqualTo(WIDTH);
+            assertThat(image.getHeight()).isEqualTo(HEIGHT);
+        }
+        assertThat(cancellation.notes()).isNull();
+    }
+
+    @Test
+    void subsamplesAnOversizedImageToFitTheBudgetAndSaysSo() throws IOException {
+        properties.setDecodeBudget(DataSize.ofBytes(WIDTH * HEIGHT));
+        properties.setSubsampleOversized(true);
+        CancellationToken cancellation = new CancellationToken();
+
+        try (ImageSource source = decoder().open(png)) {
+            assertThat(source.subsamplingStep()).isEqualTo(2);
+            BufferedImage image = source.readWhole(cancellation);
+            assertThat(image.getWidth()).isEqualTo(WIDTH / 2);
+            assertThat(image.getHeight()).isEqualTo(HEIGHT / 2);
+            assertThat((long) image.getWidth() * image.getHeight() * 3).isLessThanOrEqualTo(WIDTH * HEIGHT);
+        }
+        assertThat(cancellation.notes()).contains("pattern.png was downscaled from 200x150 to 100x75");
+    }
+
+    private ImageDecoder decoder() {
+        return new ImageDecoder(properties, new ImageCodecPool(properties));
+    }
+
+    private static BufferedImage reencode(RenderedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        assertThat(actual.getWidth()).isEqualTo(expected.getWidth());
+        assertThat(actual.getHeight()).isEqualTo(expected.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertThat(actual.getRGB(x, y)).as("pixel %d,%d", x, y).isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+
+    /**
+     * Every row different, so a strip decoded at the wrong offset shows.
+     */
+    private static BufferedImage pattern() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, y << 16 | x << 8 | (x * y) & 0xFF);
+            }
+        }
+        return image;
+    }
+}
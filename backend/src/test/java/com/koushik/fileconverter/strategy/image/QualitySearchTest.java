@@ -0,0 +1,110 @@
+package com.koushik.fileconverter.strategy.image;
+
+import com.koushik.fileconverter.config.BufferPoolProperties;
+import com.koushik.fileconverter.config.ImageProcessingProperties;
+import com.koushik.fileconverter.service.BufferPool;
+import com.koushik.fileconverter.service.CancellationToken;
+import com.koushik.fileconverter.service.PooledBytes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class QualitySearchTest {
+
+    private final ImageProcessingProperties properties = new ImageProcessingProperties();
+    private final BufferedImage image = photo(640, 480);
+    private JpegEncoder jpegEncoder;
+    private QualitySearch search;
+
+    @BeforeEach
+    void setUp() {
+        BufferPool bufferPool = new BufferPool(new BufferPoolProperties(), new SimpleMeterRegistry());
+        jpegEncoder = spy(new JpegEncoder(new ImageCodecPool(properties), bufferPool));
+        search = new QualitySearch(properties, jpegEncoder);
+    }
+
+    @Test
+    void convergesOnAQualityThatFitsCloseToTheTarget() throws IOException {
+        int target = sizeAt(0.6f);
+
+        try (QualitySearch.Result result = search.encode(image, target, new CancellationToken())) {
+            assertThat(result.fits()).isTrue();
+            assertThat(result.data().length()).isLessThanOrEqualTo(target).isGreaterThan(target * 9 / 10);
+            assertThat(result.quality()).isBetween(0.55f, 0.62f);
+        }
+    }
+
+    @Test
+    void encodesFullSizeAtMostTheConfiguredNumberOfTimes() throws IOException {
+        properties.setTargetSizeTrials(3);
+        search = new QualitySearch(properties, jpegEncoder);
+        int target = sizeAt(0.42f);
+
+        try (QualitySearch.Result result = search.encode(image, target, new CancellationToken())) {
+            assertThat(result.fits()).isTrue();
+        }
+        // Probes encode a downscaled copy and sizeAt an encoder of its own, so only full-size trials count
+        verify(jpegEncoder, atMost(3)).encode(same(image), anyFloat());
+    }
+
+    @Test
+    void usesTheHighestQualityWhenEverythingFits() throws IOException {
+        try (QualitySearch.Result result = search.encode(image, Long.MAX_VALUE, new CancellationToken())) {
+            assertThat(result.fits()).isTrue();
+            assertThat(result.quality()).isEqualTo(QualitySearch.MAX_QUALITY);
+        }
+    }
+
+    @Test
+    void reportsATargetNothingFits() throws IOException {
+        try (QualitySearch.Result result = search.encode(image, 100, new CancellationToken())) {
+            assertThat(result.fits()).isFalse();
+            assertThat(result.quality()).isEqualTo(QualitySearch.MIN_QUALITY);
+            assertThat(result.data().length()).isEqualTo(sizeAt(QualitySearch.MIN_QUALITY));
+        }
+    }
+
+    @Test
+    void stopsWhenCancelled() {
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel();
+
+        assertThatThrownBy(() -> search.encode(image, sizeAt(0.5f), cancellation))
+                .isInstanceOf(CancellationException.class);
+    }
+
+    private int sizeAt(float quality) throws IOException {
+        BufferPool bufferPool = new BufferPool(new BufferPoolProperties(), new SimpleMeterRegistry());
+        try (PooledBytes data = new JpegEncoder(new ImageCodecPool(properties), bufferPool).encode(image, quality)) {
+            return data.length();
+        }
+    }
+
+    /**
+     * Smooth gradients with grain, which compress about as a photograph does.
+     */
+    private static BufferedImage photo(int width, int height) {
+        Random noise = new Random(7);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int grain = noise.nextInt(24);
+                image.setRGB(x, y, (x * 231 / width + grain) << 16 | (y * 231 / height + grain) << 8 | 96 + grain);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,122 @@
+package com.koushik.fileconverter.strategy.pdf;
+
+import com.koushik.fileconverter.config.FontProperties;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FontCacheTest {
+
+    // A TrueType font PDFBox ships, so the test does not depend on system fonts
+    private static final String TRUE_TYPE_FONT = "/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf";
+
+    @TempDir
+    Path tempDir;
+
+    private final FontProperties properties = new FontProperties();
+    private Path fontFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fontFile = tempDir.resolve("text.ttf");
+        try (InputStream in = FontCacheTest.class.getResourceAsStream(TRUE_TYPE_FONT)) {
+            Files.copy(in, fontFile);
+        }
+        properties.setTextFont(fontFile.toString());
+    }
+
+    @Test
+    void embedsOnlyTheGlyphsADocumentUses() throws IOException {
+        FontCache fontCache = new FontCache(properties);
+        File output = tempDir.resolve("out.pdf").toFile();
+
+        try (PDDocument document = new PDDocument()) {
+            PDFont font = fontCache.textFont(document);
+            assertThat(font).isInstanceOf(PDType0Font.class);
+            write(document, font, "Hello");
+            document.save(output);
+        }
+
+        assertThat(output.length()).isLessThan(Files.size(fontFile) / 10);
+        try (PDDocument saved = Loader.loadPDF(output)) {
+            PDFont font = saved.getPage(0).getResources().getFont(COSName.getPDFName("F1"));
+            assertThat(font.getName()).matches("[A-Z]{6}\\+LiberationSans");
+            assertThat(font.isEmbedded()).isTrue();
+            assertThat(new PDFTextStripper().getText(saved)).contains("Hello");
+        }
+    }
+
+    @Test
+    void parsesTheFontOnceForAllDocuments() throws IOException {
+        FontCache fontCache = new FontCache(properties);
+
+        try (PDDocument first = new PDDocument(); PDDocument second = new PDDocument()) {
+            PDType0Font firstFont = (PDType0Font) fontCache.textFont(first);
+            PDType0Font secondFont = (PDType0Font) fontCache.textFont(second);
+
+            assertThat(firstFont).isNotSameAs(secondFont);
+            assertThat(trueType(secondFont).getTrueTypeFont()).isSameAs(trueType(firstFont).getTrueTypeFont());
+        }
+    }
+
+    @Test
+    void usesTheStandardFontWhenEmbeddingIsOff() throws IOException {
+        properties.setEmbedTextFont(false);
+        FontCache fontCache = new FontCache(properties);
+
+        try (PDDocument document = new PDDocument()) {
+            assertThat(fontCache.textFont(document)).isInstanceOf(PDType1Font.class)
+                    .extracting(PDFont::getName).isEqualTo("Times-Roman");
+        }
+        assertThat(fontCache.cacheFingerprint()).isEqualTo("text-font=Times-Roman");
+    }
+
+    @Test
+    void usesTheStandardFontWhenTheConfiguredOneIsMissing() throws IOException {
+        properties.setTextFont(tempDir.resolve("missing.ttf").toString());
+        FontCache fontCache = new FontCache(properties);
+
+        try (PDDocument document = new PDDocument()) {
+            assertThat(fontCache.textFont(document)).isInstanceOf(PDType1Font.class);
+        }
+    }
+
+    @Test
+    void namesTheEmbeddedFontInTheCacheFingerprint() {
+        assertThat(new FontCache(properties).cacheFingerprint()).isEqualTo("text-font=LiberationSans,embedded");
+    }
+
+    private static PDCIDFontType2 trueType(PDType0Font font) {
+        return (PDCIDFontType2) font.getDescendantFont();
+    }
+
+    private static void write(PDDocument document, PDFont font, String text) throws IOException {
+        PDPage page = new PDPage();
+        document.addPage(page);
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.beginText();
+            content.setFont(font, 12);
+            content.newLineAtOffset(50, 700);
+            content.showText(text);
+            content.endText();
+        }
+    }
+}
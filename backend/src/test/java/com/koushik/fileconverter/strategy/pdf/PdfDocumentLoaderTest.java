@@ -0,0 +1,105 @@
+package com.koushik.fileconverter.strategy.pdf;
+
+import com.koushik.fileconverter.config.PdfProcessingProperties;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PdfDocumentLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final PdfProcessingProperties properties = new PdfProcessingProperties();
+    private Path scratchDir;
+    private File source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        scratchDir = tempDir.resolve("scratch");
+        properties.setScratchDir(scratchDir.toString());
+        source = tempDir.resolve("source.pdf").toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= 3; i++) {
+                addPage(document, "Page " + i);
+            }
+            document.save(source);
+        }
+    }
+
+    @Test
+    void keepsASmallDocumentOnTheHeap() throws IOException {
+        try (PDDocument document = new PdfDocumentLoader(properties).load(source)) {
+            addPage(document, "Page 4");
+            assertThat(text(document)).contains("Page 1", "Page 4");
+        }
+        assertThat(scratchDir).doesNotExist();
+    }
+
+    @Test
+    void spillsALargeDocumentToScratchFiles() throws IOException {
+        properties.setMemoryOnlyThreshold(DataSize.ofBytes(source.length() - 1));
+        properties.setMaxMainMemoryPerDocument(DataSize.ofBytes(0));
+
+        try (PDDocument document = new PdfDocumentLoader(properties).load(source)) {
+            // The cache is set up once the document first buffers a stream
+            addPage(document, "Page 4");
+            assertThat(scratchDir).isDirectory();
+            assertThat(text(document)).contains("Page 1", "Page 4");
+        }
+    }
+
+    @Test
+    void buildsALargeOutputDocumentWithScratchFiles() throws IOException {
+        properties.setMaxMainMemoryPerDocument(DataSize.ofBytes(0));
+        File output = tempDir.resolve("output.pdf").toFile();
+
+        try (PDDocument document = new PdfDocumentLoader(properties).create(Long.MAX_VALUE)) {
+            addPage(document, "Written through scratch files");
+            document.save(output);
+            assertThat(scratchDir).isDirectory();
+        }
+
+        try (PDDocument reloaded = new PdfDocumentLoader(properties).load(output)) {
+            assertThat(text(reloaded)).contains("Written through scratch files");
+        }
+    }
+
+    @Test
+    void rejectsAFileThatIsNotAPdf() throws IOException {
+        File notPdf = Files.writeString(tempDir.resolve("not.pdf"), "plain text").toFile();
+
+        assertThatThrownBy(() -> new PdfDocumentLoader(properties).load(notPdf)).isInstanceOf(IOException.class);
+    }
+
+    private static void addPage(PDDocument document, String text) throws IOException {
+        PDPage page = new PDPage();
+        document.addPage(page);
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.beginText();
+            content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+            content.newLineAtOffset(50, 700);
+            content.showText(text);
+            content.endText();
+        }
+    }
+
+    private static String text(PDDocument document) throws IOException {
+        return new PDFTextStripper().getText(document);
+    }
+}